@@ -0,0 +1,48 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.utmstack.opensearch_connector.parsers.DateHistogramAggregateParser;
+import com.utmstack.opensearch_connector.parsers.TermAggregateParser;
+import com.utmstack.opensearch_connector.types.BucketAggregation;
+import org.openjdk.jmh.annotations.*;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.opensearch._types.aggregations.Aggregate;
+import org.opensearch.client.opensearch.core.SearchResponse;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the buckets of {@code terms} and {@code date_histogram} aggregations, already deserialized
+ * by the client, to {@link BucketAggregation}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AggregationParserBenchmark {
+    @Param({"10000"})
+    public int buckets;
+
+    private Aggregate terms;
+    private Aggregate dateHistogram;
+
+    @Setup
+    public void setup() {
+        SearchResponse<Object> response = Fixtures.deserialize(Fixtures.searchAggregations(buckets),
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Object.class)));
+        terms = response.aggregations().get("by_host");
+        dateHistogram = response.aggregations().get("per_minute");
+    }
+
+    @Benchmark
+    public List<BucketAggregation> termsParse() {
+        return TermAggregateParser.parse(terms);
+    }
+
+    @Benchmark
+    public List<BucketAggregation> dateHistogramParse() {
+        return DateHistogramAggregateParser.parse(dateHistogram);
+    }
+}
@@ -0,0 +1,22 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options, always with the GC profiler, so every result
+ * has its allocation rate ({@code gc.alloc.rate.norm} is the bytes allocated per operation).
+ * <br>
+ * Example: {@code java -jar target/benchmarks.jar SqlMapping -rf json -rff baseline.json}
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
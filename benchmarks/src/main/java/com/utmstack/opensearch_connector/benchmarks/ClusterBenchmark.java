@@ -0,0 +1,36 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.utmstack.opensearch_connector.types.ElasticCluster;
+import org.openjdk.jmh.annotations.*;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.opensearch.cat.nodes.NodesRecord;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of {@link ElasticCluster}, with its nodes and its {@code ClusterResume}, from the records
+ * of {@code _cat/nodes}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ClusterBenchmark {
+    @Param({"3", "50", "500"})
+    public int nodes;
+
+    private List<NodesRecord> records;
+
+    @Setup
+    public void setup() {
+        records = Fixtures.deserialize(Fixtures.catNodes(nodes), JsonpDeserializer.arrayDeserializer(NodesRecord._DESERIALIZER));
+    }
+
+    @Benchmark
+    public ElasticCluster newElasticCluster() {
+        return new ElasticCluster(records);
+    }
+}
@@ -0,0 +1,406 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.utmstack.opensearch_connector.metrics.Instrumentation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for an OpenSearch node, to measure the whole connector without a cluster. It answers
+ * with the recorded responses of {@code src/main/resources/fixtures} after the configured latency, and fails
+ * the configured fraction of the requests with 429 (rejected execution) or 500.
+ * <br>
+ * Requests are routed by the API they call: {@code _search}, {@code _msearch}, {@code _bulk}, {@code _sql},
+ * {@code _cat/nodes}, {@code _cat/indices}, {@code _nodes} (stats), {@code _mapping}, {@code _doc} and
+ * {@code _resolve} (every index exists).
+ * Any route can be replaced with {@link Builder#withResponse(String, int, String)}, others answer 404.
+ * <br>
+ * Example:
+ * <pre>{@code
+ * try (FakeOpenSearch server = FakeOpenSearch.builder()
+ *         .withLatency(Duration.ofMillis(5), Duration.ofMillis(2))
+ *         .withRejectionRate(0.05)
+ *         .build();
+ *      OpenSearch openSearch = OpenSearch.builder()
+ *         .withHost("127.0.0.1", server.getPort(), HttpScheme.http)
+ *         .build()) {
+ *     openSearch.search(request, Event.class);
+ * }
+ * }</pre>
+ */
+public class FakeOpenSearch implements Closeable {
+    private static final String CLASSNAME = "FakeOpenSearch";
+    private static final byte[] REJECTED = error(429, "es_rejected_execution_exception",
+            "rejected execution of coordinating operation [coordinating_and_primary_bytes=0]");
+    private static final byte[] FAILED = error(500, "exception", "injected failure");
+
+    static {
+        // The JDK server writes the headers and the body of a response apart, with Nagle every response
+        // would wait for the delayed ACK of the client, about 40 ms. Read once, when the server is loaded.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Reply> replies;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double rejectionRate;
+    private final double errorRate;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private FakeOpenSearch(Builder builder) throws IOException {
+        this.latencyNanos = builder.latency.toNanos();
+        this.jitterNanos = builder.jitter.toNanos();
+        this.rejectionRate = builder.rejectionRate;
+        this.errorRate = builder.errorRate;
+        this.replies = defaultReplies();
+        this.replies.putAll(builder.replies);
+        this.executor = Executors.newFixedThreadPool(builder.capacity);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return Requests received, including the failed ones
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return Requests answered with 429
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Requests answered with 500
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            requests.increment();
+            pause();
+
+            double dice = ThreadLocalRandom.current().nextDouble();
+            if (dice < rejectionRate) {
+                rejected.increment();
+                send(exchange, 429, REJECTED);
+                return;
+            }
+            if (dice < rejectionRate + errorRate) {
+                failed.increment();
+                send(exchange, 500, FAILED);
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Reply reply = replies.get(route(method, path));
+            if (reply == null)
+                send(exchange, 404, error(404, "illegal_argument_exception", "no handler found for uri ["
+                        + path + "] and method [" + method + "]"));
+            else
+                send(exchange, reply.status, reply.fixed != null ? reply.fixed
+                        : reply.responder.respond(path, new String(body, StandardCharsets.UTF_8))
+                        .getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Waits the latency of the node, as the service time of a real one it holds a thread of the server
+     */
+    private void pause() {
+        long nanos = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return The API of the request, {@code _cat} with its report as {@code _cat/nodes}, or the method
+     * for the requests to an index
+     */
+    static String route(String method, String path) {
+        String endpoint = Instrumentation.endpoint(method, path);
+        if (!"_cat".equals(endpoint))
+            return endpoint;
+        int start = path.indexOf("_cat/");
+        if (start < 0)
+            return endpoint;
+        int end = path.indexOf('/', start + 5);
+        return path.substring(start, end < 0 ? path.length() : end);
+    }
+
+    private Map<String, Reply> defaultReplies() {
+        Map<String, Reply> result = new HashMap<>();
+        String search = Fixtures.text("search-hits.json");
+        JsonObject msearchItem = JsonParser.parseString(search).getAsJsonObject();
+        msearchItem.addProperty("status", 200);
+        String msearchItemJson = msearchItem.toString();
+
+        result.put("_search", new Reply(200, search));
+        result.put("_sql", new Reply(200, Fixtures.text("sql-response.json")));
+        result.put("_mapping", new Reply(200, Fixtures.text("mapping.json")));
+        result.put("_cat/nodes", new Reply(200, Fixtures.text("cat-nodes.json")));
+        result.put("_cat/indices", new Reply(200, Fixtures.text("cat-indices.json")));
+        result.put("_nodes", new Reply(200, Fixtures.text("nodes-stats.json")));
+        result.put("_resolve", new Reply(200, (path, body) -> resolved(segment(path, 2))));
+        result.put("_msearch", new Reply(200, (path, body) -> msearch(body, msearchItemJson)));
+        result.put("_bulk", new Reply(200, this::bulk));
+        result.put("_doc", new Reply(201, (path, body) -> indexed(segment(path, 0), segment(path, 2)).toString()));
+        return result;
+    }
+
+    private static String msearch(String body, String item) {
+        StringBuilder result = new StringBuilder("{\"took\":4,\"responses\":[");
+        long searches = body.lines().filter(line -> !line.isBlank()).count() / 2;
+        for (long i = 0; i < searches; i++)
+            result.append(i > 0 ? "," : "").append(item);
+        return result.append("]}").toString();
+    }
+
+    private String bulk(String path, String body) {
+        String defaultIndex = path.startsWith("/_bulk") ? null : segment(path, 0);
+        JsonArray items = new JsonArray();
+        boolean source = false;
+        for (String line : (Iterable<String>) body.lines()::iterator) {
+            if (line.isBlank())
+                continue;
+            if (source) {
+                source = false;
+                continue;
+            }
+            JsonObject action = JsonParser.parseString(line).getAsJsonObject();
+            String operation = action.keySet().iterator().next();
+            JsonObject metadata = action.getAsJsonObject(operation);
+            String index = metadata.has("_index") ? metadata.get("_index").getAsString() : defaultIndex;
+            String id = metadata.has("_id") ? metadata.get("_id").getAsString() : null;
+            JsonObject result = indexed(index, id);
+            result.addProperty("status", "delete".equals(operation) || "update".equals(operation) ? 200 : 201);
+            JsonObject item = new JsonObject();
+            item.add(operation, result);
+            items.add(item);
+            source = !"delete".equals(operation);
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("took", 3);
+        response.addProperty("errors", false);
+        response.add("items", items);
+        return response.toString();
+    }
+
+    private static String resolved(String name) {
+        JsonObject index = new JsonObject();
+        index.addProperty("name", name);
+        JsonArray attributes = new JsonArray();
+        attributes.add("open");
+        index.add("attributes", attributes);
+        JsonArray indices = new JsonArray();
+        indices.add(index);
+        JsonObject response = new JsonObject();
+        response.add("indices", indices);
+        response.add("aliases", new JsonArray());
+        response.add("data_streams", new JsonArray());
+        return response.toString();
+    }
+
+    private JsonObject indexed(String index, String id) {
+        long seqNo = sequence.getAndIncrement();
+        JsonObject shards = new JsonObject();
+        shards.addProperty("total", 2);
+        shards.addProperty("successful", 2);
+        shards.addProperty("failed", 0);
+        JsonObject result = new JsonObject();
+        result.addProperty("_index", index);
+        result.addProperty("_id", id != null ? id : "fake-" + seqNo);
+        result.addProperty("_version", 1);
+        result.addProperty("result", "created");
+        result.add("_shards", shards);
+        result.addProperty("_seq_no", seqNo);
+        result.addProperty("_primary_term", 1);
+        return result;
+    }
+
+    private static String segment(String path, int position) {
+        String[] segments = path.substring(1).split("/");
+        return position < segments.length ? segments[position] : null;
+    }
+
+    private static byte[] error(int status, String type, String reason) {
+        JsonObject cause = new JsonObject();
+        cause.addProperty("type", type);
+        cause.addProperty("reason", reason);
+        JsonArray rootCause = new JsonArray();
+        rootCause.add(cause.deepCopy());
+        cause.add("root_cause", rootCause);
+        JsonObject response = new JsonObject();
+        response.add("error", cause);
+        response.addProperty("status", status);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds the body of a response from the path and the body of the request
+     */
+    @FunctionalInterface
+    public interface Responder {
+        String respond(String path, String body);
+    }
+
+    private static class Reply {
+        private final int status;
+        private final byte[] fixed;
+        private final Responder responder;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.fixed = body.getBytes(StandardCharsets.UTF_8);
+            this.responder = null;
+        }
+
+        private Reply(int status, Responder responder) {
+            this.status = status;
+            this.fixed = null;
+            this.responder = responder;
+        }
+    }
+
+    public static class Builder {
+        private Duration latency = Duration.ZERO;
+        private Duration jitter = Duration.ZERO;
+        private double rejectionRate;
+        private double errorRate;
+        private int capacity = 64;
+        private final Map<String, Reply> replies = new HashMap<>();
+
+        /**
+         * @param latency Time every request takes (none by default)
+         * @param jitter  Random time added to the latency, from 0 to this value (none by default)
+         */
+        public Builder withLatency(Duration latency, Duration jitter) {
+            this.latency = latency;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param rejectionRate Fraction of the requests rejected with 429, from 0 to 1 (none by default)
+         */
+        public Builder withRejectionRate(double rejectionRate) {
+            this.rejectionRate = rejectionRate;
+            return this;
+        }
+
+        /**
+         * @param errorRate Fraction of the requests failed with 500, from 0 to 1 (none by default)
+         */
+        public Builder withErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param capacity Requests served at the same time (64 by default), the others wait in a queue
+         *                 as in the search thread pool of a node
+         */
+        public Builder withCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Replaces or adds the response of a route
+         *
+         * @param route  API of the request, as {@code _search} or {@code _cat/nodes}, see {@link FakeOpenSearch}
+         * @param status HTTP status of the response
+         * @param body   Body of the response
+         */
+        public Builder withResponse(String route, int status, String body) {
+            replies.put(route, new Reply(status, body));
+            return this;
+        }
+
+        /**
+         * Replaces or adds the response of a route, built from every request
+         */
+        public Builder withResponder(String route, int status, Responder responder) {
+            replies.put(route, new Reply(status, responder));
+            return this;
+        }
+
+        public FakeOpenSearch build() {
+            final String ctx = CLASSNAME + ".build";
+            if (latency == null || jitter == null || latency.isNegative() || jitter.isNegative())
+                throw new RuntimeException(ctx + ": The latency and the jitter must be 0 or greater");
+            if (rejectionRate < 0 || errorRate < 0 || rejectionRate + errorRate > 1)
+                throw new RuntimeException(ctx + ": The rejection and error rates must be between 0 and 1");
+            if (capacity < 1)
+                throw new RuntimeException(ctx + ": The capacity must be greater than 0");
+            try {
+                return new FakeOpenSearch(this);
+            } catch (IOException e) {
+                throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+}
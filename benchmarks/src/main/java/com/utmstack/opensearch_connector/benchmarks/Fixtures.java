@@ -0,0 +1,151 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payloads recorded from a cluster, in {@code src/main/resources/fixtures}, grown to the size of the benchmark
+ * by repeating their rows, buckets, fields or nodes with different keys. The shape of every item is the
+ * recorded one, so the parsers see the same structures as in production.
+ */
+final class Fixtures {
+    private static final String CLASSNAME = "Fixtures";
+    static final JsonpMapper MAPPER = new JacksonJsonpMapper();
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return A {@code _plugins/_sql} response in jdbc format with the given number of rows
+     */
+    static String sqlResponse(int rows) {
+        JsonObject response = read("sql-response.json").getAsJsonObject();
+        JsonArray recorded = response.getAsJsonArray("datarows");
+        JsonArray datarows = new JsonArray(rows);
+        for (int i = 0; i < rows; i++) {
+            JsonArray row = recorded.get(i % recorded.size()).deepCopy().getAsJsonArray();
+            row.set(4, new JsonPrimitive(row.get(4).getAsLong() + i));
+            datarows.add(row);
+        }
+        response.add("datarows", datarows);
+        response.addProperty("total", rows);
+        response.addProperty("size", rows);
+        return response.toString();
+    }
+
+    /**
+     * @return A search response with a {@code terms} and a {@code date_histogram} aggregation of the given
+     * number of buckets each
+     */
+    static String searchAggregations(int buckets) {
+        JsonObject response = read("search-aggregations.json").getAsJsonObject();
+        JsonObject aggregations = response.getAsJsonObject("aggregations");
+
+        JsonObject terms = aggregations.getAsJsonObject("sterms#by_host");
+        terms.add("buckets", repeat(terms.getAsJsonArray("buckets"), buckets, (bucket, i) ->
+                bucket.addProperty("key", bucket.get("key").getAsString() + "-" + i)));
+
+        JsonObject histogram = aggregations.getAsJsonObject("date_histogram#per_minute");
+        long start = histogram.getAsJsonArray("buckets").get(0).getAsJsonObject().get("key").getAsLong();
+        histogram.add("buckets", repeat(histogram.getAsJsonArray("buckets"), buckets, (bucket, i) -> {
+            long key = start + i * 60_000L;
+            bucket.addProperty("key", key);
+            bucket.addProperty("key_as_string", Instant.ofEpochMilli(key).toString());
+        }));
+        return response.toString();
+    }
+
+    /**
+     * @return The properties of an index mapping with about the given number of leaf fields, the recorded
+     * properties are repeated under objects {@code group0}, {@code group1}...
+     */
+    static String mappingProperties(int fields) {
+        JsonObject index = read("mapping.json").getAsJsonObject().entrySet().iterator().next().getValue().getAsJsonObject();
+        JsonObject recorded = index.getAsJsonObject("mappings").getAsJsonObject("properties");
+        int perGroup = countLeaves(recorded);
+        JsonObject properties = new JsonObject();
+        for (int group = 0; group * perGroup < fields; group++) {
+            JsonObject object = new JsonObject();
+            object.add("properties", recorded.deepCopy());
+            properties.add("group" + group, object);
+        }
+        JsonObject mapping = new JsonObject();
+        mapping.add("properties", properties);
+        return mapping.toString();
+    }
+
+    /**
+     * @return A {@code _cat/nodes} response in JSON format with the given number of nodes
+     */
+    static String catNodes(int nodes) {
+        return repeat(read("cat-nodes.json").getAsJsonArray(), nodes, (node, i) -> {
+            node.addProperty("name", "opensearch-node-" + i);
+            node.addProperty("ip", "10.0." + (i / 250) + "." + (i % 250 + 1));
+            if (i > 0)
+                node.addProperty("cluster_manager", "-");
+        }).toString();
+    }
+
+    static <T> T deserialize(String json, JsonpDeserializer<T> deserializer) {
+        try (InputStream in = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))) {
+            return deserializer.deserialize(MAPPER.jsonProvider().createParser(in), MAPPER);
+        } catch (IOException e) {
+            throw new RuntimeException(CLASSNAME + ".deserialize: " + e.getLocalizedMessage());
+        }
+    }
+
+    private static JsonArray repeat(JsonArray recorded, int size, ItemChanger changer) {
+        JsonArray result = new JsonArray(size);
+        for (int i = 0; i < size; i++) {
+            JsonObject item = recorded.get(i % recorded.size()).deepCopy().getAsJsonObject();
+            changer.change(item, i);
+            result.add(item);
+        }
+        return result;
+    }
+
+    private static int countLeaves(JsonObject properties) {
+        int count = 0;
+        for (Map.Entry<String, JsonElement> entry : properties.entrySet()) {
+            JsonObject property = entry.getValue().getAsJsonObject();
+            count += property.has("properties") ? countLeaves(property.getAsJsonObject("properties")) : 1;
+        }
+        return count;
+    }
+
+    /**
+     * @return The recorded payload, as is
+     */
+    static String text(String name) {
+        final String ctx = CLASSNAME + ".text";
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null)
+                throw new IOException("Fixture " + name + " not found");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private static JsonElement read(String name) {
+        return JsonParser.parseString(text(name));
+    }
+
+    @FunctionalInterface
+    private interface ItemChanger {
+        void change(JsonObject item, int index);
+    }
+}
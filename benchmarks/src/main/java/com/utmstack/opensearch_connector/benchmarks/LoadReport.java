@@ -0,0 +1,90 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.utmstack.opensearch_connector.types.HistogramSnapshot;
+
+import java.util.Map;
+
+/**
+ * Result of a {@link LoadRunner} run, measured after the warmup
+ */
+public class LoadReport {
+    private final String operation;
+    private final int callers;
+    private final long nanos;
+    private final long operations;
+    private final long errors;
+    private final Map<String, Long> errorClasses;
+    private final HistogramSnapshot latency;
+
+    public LoadReport(String operation, int callers, long nanos, long operations, long errors,
+                      Map<String, Long> errorClasses, HistogramSnapshot latency) {
+        this.operation = operation;
+        this.callers = callers;
+        this.nanos = nanos;
+        this.operations = operations;
+        this.errors = errors;
+        this.errorClasses = errorClasses;
+        this.latency = latency;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public int getCallers() {
+        return callers;
+    }
+
+    /**
+     * @return Duration of the measurement in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return Successful operations
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return Operations that failed, after the retries of the connector
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return Failed operations by error class, see {@link com.utmstack.opensearch_connector.metrics.Instrumentation#errorClass(Throwable)}
+     */
+    public Map<String, Long> getErrorClasses() {
+        return errorClasses;
+    }
+
+    /**
+     * @return Latency of the successful operations in microseconds
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Successful operations per second
+     */
+    public double getThroughput() {
+        return nanos > 0 ? operations * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s with %d callers in %.1f s%n"
+                        + "  throughput  %.1f ops/s%n"
+                        + "  operations  %d ok, %d failed %s%n"
+                        + "  latency     p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                operation, callers, nanos / 1e9, getThroughput(), operations, errors, errorClasses,
+                latency.getP50() / 1e3, latency.getP90() / 1e3, latency.getP99() / 1e3, latency.getP999() / 1e3,
+                latency.getMax() / 1e3);
+    }
+}
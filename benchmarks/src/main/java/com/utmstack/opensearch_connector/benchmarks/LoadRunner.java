@@ -0,0 +1,309 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.utmstack.opensearch_connector.OpenSearch;
+import com.utmstack.opensearch_connector.clients.RetryPolicy;
+import com.utmstack.opensearch_connector.enums.HttpScheme;
+import com.utmstack.opensearch_connector.enums.OperationType;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.metrics.ConnectorMetrics;
+import com.utmstack.opensearch_connector.metrics.Instrumentation;
+import com.utmstack.opensearch_connector.metrics.LatencyHistogram;
+import com.utmstack.opensearch_connector.types.SqlQueryRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives the {@link OpenSearch} facade with concurrent callers, each one calling the operation in a loop
+ * as soon as the previous call ends, and reports the throughput and the latency of the calls.
+ * <br>
+ * Its {@link #main(String[])} runs it offline against a {@link FakeOpenSearch}, and fails when the results
+ * are worse than the given thresholds, so it can be used as a performance regression test in CI:
+ * <pre>{@code
+ * java -cp target/benchmarks.jar com.utmstack.opensearch_connector.benchmarks.LoadRunner \
+ *     --operation search --callers 32 --duration 20 --latency-ms 5 --rejection-rate 0.02 --max-p99-ms 40
+ * }</pre>
+ */
+public class LoadRunner {
+    private static final String CLASSNAME = "LoadRunner";
+    private static final String INDEX_PATTERN = "v11-log-*";
+    private static final Operation[] MIX = {Operation.SEARCH, Operation.SEARCH, Operation.SEARCH,
+            Operation.SEARCH, Operation.SEARCH, Operation.SEARCH, Operation.SQL, Operation.INDEX, Operation.INDEX,
+            Operation.MAPPING};
+
+    private final OpenSearch openSearch;
+    private final Operation operation;
+    private final int callers;
+    private final Duration warmup;
+    private final Duration duration;
+
+    private LoadRunner(Builder builder) {
+        this.openSearch = builder.openSearch;
+        this.operation = builder.operation;
+        this.callers = builder.callers;
+        this.warmup = builder.warmup;
+        this.duration = builder.duration;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs the warmup and the measurement, blocking until both end
+     */
+    public LoadReport run() {
+        final String ctx = CLASSNAME + ".run";
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder operations = new LongAdder();
+        LongAdder errors = new LongAdder();
+        Map<String, LongAdder> errorClasses = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(callers);
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        for (int i = 0; i < callers; i++) {
+            Thread caller = new Thread(() -> {
+                try {
+                    long start;
+                    while ((start = System.nanoTime()) < end) {
+                        try {
+                            operation.call(openSearch);
+                            if (start >= measureFrom) {
+                                latency.record((System.nanoTime() - start) / 1000);
+                                operations.increment();
+                            }
+                        } catch (Exception e) {
+                            if (start >= measureFrom) {
+                                errors.increment();
+                                errorClasses.computeIfAbsent(Instrumentation.errorClass(e), k -> new LongAdder())
+                                        .increment();
+                            }
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-runner-" + i);
+            caller.setDaemon(true);
+            caller.start();
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ctx + ": Interrupted before the end of the run");
+        }
+        Map<String, Long> classes = new TreeMap<>();
+        errorClasses.forEach((name, count) -> classes.put(name, count.sum()));
+        return new LoadReport(operation.name(), callers, duration.toNanos(), operations.sum(), errors.sum(),
+                Collections.unmodifiableMap(classes), latency.snapshot());
+    }
+
+    /**
+     * Options: {@code --operation} (search, sql, index, mapping, nodes, indices, node_metrics or mixed),
+     * {@code --callers}, {@code --duration} and {@code --warmup} in seconds, {@code --latency-ms},
+     * {@code --jitter-ms}, {@code --rejection-rate}, {@code --error-rate} and {@code --capacity} of the fake node,
+     * {@code --retries} (true by default), and the thresholds {@code --max-p99-ms}, {@code --min-throughput}
+     * and {@code --max-error-rate}. Exits with 1 if a threshold isn't met.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        Operation operation = Operation.valueOf(option(options, "operation", "search").toUpperCase());
+        int callers = Integer.parseInt(option(options, "callers", "16"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(option(options, "duration", "20")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(option(options, "warmup", "5")));
+
+        ConnectorMetrics metrics = new ConnectorMetrics();
+        LoadReport report;
+        try (FakeOpenSearch server = FakeOpenSearch.builder()
+                .withLatency(Duration.ofMillis(Long.parseLong(option(options, "latency-ms", "5"))),
+                        Duration.ofMillis(Long.parseLong(option(options, "jitter-ms", "0"))))
+                .withRejectionRate(Double.parseDouble(option(options, "rejection-rate", "0")))
+                .withErrorRate(Double.parseDouble(option(options, "error-rate", "0")))
+                .withCapacity(Integer.parseInt(option(options, "capacity", "64")))
+                .build()) {
+            OpenSearch.Builder builder = OpenSearch.builder()
+                    .withHost("127.0.0.1", server.getPort(), HttpScheme.http)
+                    .withMetrics(metrics);
+            if (Boolean.parseBoolean(option(options, "retries", "true")))
+                builder.withRetryPolicy(OperationType.Read, RetryPolicy.reads())
+                        .withRetryPolicy(OperationType.Write, RetryPolicy.writes());
+            try (OpenSearch openSearch = builder.build()) {
+                report = LoadRunner.builder()
+                        .withOpenSearch(openSearch)
+                        .withOperation(operation)
+                        .withCallers(callers)
+                        .withDuration(warmup, duration)
+                        .build()
+                        .run();
+            }
+            System.out.println(report);
+            System.out.printf("  server      %d requests, %d rejected, %d failed%n", server.getRequests(),
+                    server.getRejected(), server.getFailed());
+            metrics.getEndpoints().values().forEach(endpoint -> System.out.printf(
+                    "  endpoint    %s: %d exchanges, %d retries, statuses %s%n", endpoint.getEndpoint(),
+                    endpoint.getCount(), endpoint.getRetries(), endpoint.getStatuses()));
+        }
+
+        boolean passed = true;
+        if (options.containsKey("max-p99-ms")
+                && report.getLatency().getP99() / 1e3 > Double.parseDouble(options.get("max-p99-ms"))) {
+            System.out.println("FAILED: p99 above " + options.get("max-p99-ms") + " ms");
+            passed = false;
+        }
+        if (options.containsKey("min-throughput")
+                && report.getThroughput() < Double.parseDouble(options.get("min-throughput"))) {
+            System.out.println("FAILED: throughput below " + options.get("min-throughput") + " ops/s");
+            passed = false;
+        }
+        long calls = report.getOperations() + report.getErrors();
+        if (options.containsKey("max-error-rate") && calls > 0
+                && (double) report.getErrors() / calls > Double.parseDouble(options.get("max-error-rate"))) {
+            System.out.println("FAILED: error rate above " + options.get("max-error-rate"));
+            passed = false;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final String ctx = CLASSNAME + ".parseOptions";
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length)
+                throw new RuntimeException(ctx + ": Expected --option value, found " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Calls of the facade, with requests to the indices of {@link FakeOpenSearch}
+     */
+    public enum Operation {
+        SEARCH {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.search(SearchRequest.of(s -> s.index(INDEX_PATTERN).size(10)
+                        .query(q -> q.matchAll(m -> m))), Map.class);
+            }
+        },
+        SQL {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.searchBySqlQuery(new SqlQueryRequest("SELECT * FROM " + INDEX_PATTERN
+                        + " WHERE event.severity > 1", 100), Map.class);
+            }
+        },
+        INDEX {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.index("v11-log-2024.05.01", Map.of("@timestamp", System.currentTimeMillis(),
+                        "message", "Connection denied by rule 104"));
+            }
+        },
+        MAPPING {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.getIndexProperties(INDEX_PATTERN);
+            }
+        },
+        NODES {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.getClusterNodesInfo();
+            }
+        },
+        INDICES {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.getIndices(INDEX_PATTERN, null);
+            }
+        },
+        NODE_METRICS {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                openSearch.getNodeMetrics();
+            }
+        },
+        /**
+         * The calls of a dashboard: mostly searches, some SQL queries and writes, a few reads of metadata
+         */
+        MIXED {
+            @Override
+            void call(OpenSearch openSearch) throws OpenSearchException {
+                MIX[ThreadLocalRandom.current().nextInt(MIX.length)].call(openSearch);
+            }
+        };
+
+        abstract void call(OpenSearch openSearch) throws OpenSearchException;
+    }
+
+    public static class Builder {
+        private OpenSearch openSearch;
+        private Operation operation = Operation.SEARCH;
+        private int callers = 16;
+        private Duration warmup = Duration.ofSeconds(5);
+        private Duration duration = Duration.ofSeconds(20);
+
+        /**
+         * @param openSearch Facade to drive, closed by the caller
+         */
+        public Builder withOpenSearch(OpenSearch openSearch) {
+            this.openSearch = openSearch;
+            return this;
+        }
+
+        /**
+         * @param operation Operation called by every caller ({@link Operation#SEARCH} by default)
+         */
+        public Builder withOperation(Operation operation) {
+            this.operation = operation;
+            return this;
+        }
+
+        /**
+         * @param callers Number of concurrent callers (16 by default)
+         */
+        public Builder withCallers(int callers) {
+            this.callers = callers;
+            return this;
+        }
+
+        /**
+         * @param warmup   Time running before the measurement, not reported (5 s by default)
+         * @param duration Time measured (20 s by default)
+         */
+        public Builder withDuration(Duration warmup, Duration duration) {
+            this.warmup = warmup;
+            this.duration = duration;
+            return this;
+        }
+
+        public LoadRunner build() {
+            final String ctx = CLASSNAME + ".build";
+            if (openSearch == null)
+                throw new RuntimeException(ctx + ": The OpenSearch facade is required");
+            if (operation == null)
+                throw new RuntimeException(ctx + ": The operation is required");
+            if (callers < 1)
+                throw new RuntimeException(ctx + ": The callers must be greater than 0");
+            if (warmup == null || duration == null || warmup.isNegative() || duration.isZero() || duration.isNegative())
+                throw new RuntimeException(ctx + ": The duration must be greater than 0");
+            return new LoadRunner(this);
+        }
+    }
+}
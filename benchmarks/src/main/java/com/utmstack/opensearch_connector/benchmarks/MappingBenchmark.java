@@ -0,0 +1,39 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.utmstack.opensearch_connector.util.IndexUtils;
+import org.openjdk.jmh.annotations.*;
+import org.opensearch.client.opensearch._types.mapping.Property;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattening of the properties of an index mapping into field names and types, as done by
+ * {@code getIndexProperties}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MappingBenchmark {
+    @Param({"1000", "5000"})
+    public int fields;
+
+    private Map<String, Property> properties;
+
+    @Setup
+    public void setup() {
+        properties = Fixtures.deserialize(Fixtures.mappingProperties(fields), TypeMapping._DESERIALIZER).properties();
+    }
+
+    @Benchmark
+    public Map<String, String> propertiesFromMapping() {
+        Map<String, String> result = new HashMap<>();
+        IndexUtils.propertiesFromMapping(properties, result, null);
+        return result;
+    }
+}
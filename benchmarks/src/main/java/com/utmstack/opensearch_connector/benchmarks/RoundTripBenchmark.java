@@ -0,0 +1,56 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.utmstack.opensearch_connector.OpenSearch;
+import com.utmstack.opensearch_connector.enums.HttpScheme;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.types.SearchSqlResponse;
+import com.utmstack.opensearch_connector.types.SqlQueryRequest;
+import org.openjdk.jmh.annotations.*;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole calls of the facade against a {@link FakeOpenSearch} without latency, so the time measured is the
+ * one of the connector: building the request, the HTTP exchange over loopback and the parsing of the response
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(8)
+public class RoundTripBenchmark {
+    private static final SearchRequest SEARCH = SearchRequest.of(s -> s.index("v11-log-*").size(10)
+            .query(q -> q.matchAll(m -> m)));
+    private static final SqlQueryRequest SQL = new SqlQueryRequest("SELECT * FROM v11-log-*", 100);
+
+    private FakeOpenSearch server;
+    private OpenSearch openSearch;
+
+    @Setup
+    public void setup() {
+        server = FakeOpenSearch.builder().build();
+        openSearch = OpenSearch.builder()
+                .withHost("127.0.0.1", server.getPort(), HttpScheme.http)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        openSearch.close();
+        server.close();
+    }
+
+    @Benchmark
+    public SearchResponse<Object> search() throws OpenSearchException {
+        return openSearch.search(SEARCH, Object.class);
+    }
+
+    @Benchmark
+    public SearchSqlResponse<Object> searchBySqlQuery() throws OpenSearchException {
+        return openSearch.searchBySqlQuery(SQL, Object.class);
+    }
+}
@@ -0,0 +1,75 @@
+package com.utmstack.opensearch_connector.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import com.utmstack.opensearch_connector.types.SearchSqlResponse;
+import com.utmstack.opensearch_connector.types.SqlQueryResponse;
+import com.utmstack.opensearch_connector.util.SqlResponseDecoder;
+import com.utmstack.opensearch_connector.util.SqlResponseMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of a {@code _plugins/_sql} response to rows of a class: the key-value mapping plus the Gson
+ * re-mapping of every row of the first versions of {@code searchBySqlQuery}, and the streaming decoder
+ * used now
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SqlMappingBenchmark {
+    private static final Gson GSON = new Gson();
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private String body;
+    private SqlQueryResponse response;
+
+    @Setup
+    public void setup() {
+        body = Fixtures.sqlResponse(rows);
+        response = GSON.fromJson(body, SqlQueryResponse.class);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> toKeyValue() {
+        return SqlResponseMapper.toKeyValue(response);
+    }
+
+    @Benchmark
+    public List<EventRow> keyValueAndGsonRemapping() {
+        List<Map<String, Object>> keyValues = SqlResponseMapper.toKeyValue(GSON.fromJson(body, SqlQueryResponse.class));
+        List<EventRow> result = new ArrayList<>(keyValues.size());
+        for (Map<String, Object> row : keyValues)
+            result.add(GSON.fromJson(GSON.toJsonTree(row), EventRow.class));
+        return result;
+    }
+
+    @Benchmark
+    public SearchSqlResponse<EventRow> streamingDecoder() throws IOException {
+        return new SqlResponseDecoder<>(GSON, EventRow.class).decode(new StringReader(body));
+    }
+
+    public static class EventRow {
+        @SerializedName("@timestamp")
+        private String timestamp;
+        private String ip;
+        @SerializedName("event.severity")
+        private Integer severity;
+        @SerializedName("host.name")
+        private String hostName;
+        @SerializedName("network.bytes")
+        private Long bytes;
+        private String message;
+    }
+}
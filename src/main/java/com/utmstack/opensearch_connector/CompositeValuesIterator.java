@@ -0,0 +1,75 @@
+package com.utmstack.opensearch_connector;
+
+import com.utmstack.opensearch_connector.parsers.CompositeAggregateParser;
+import com.utmstack.opensearch_connector.types.BucketAggregation;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.aggregations.Aggregate;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.SearchResponse;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over all the distinct values of a field with a {@code composite} aggregation, requesting every
+ * page with the {@code after_key} of the previous one. Pages are only requested when the previous one
+ * is consumed, so a consumer that stops early doesn't pay for the rest of the values.
+ */
+class CompositeValuesIterator implements Iterator<BucketAggregation> {
+    private static final String CLASSNAME = "CompositeValuesIterator";
+    private final OpenSearchClient client;
+    private final String field;
+    private final String index;
+    private final Query query;
+    private final int pageSize;
+
+    private Iterator<BucketAggregation> page = Collections.emptyIterator();
+    private Map<String, String> afterKey;
+    private boolean exhausted;
+
+    CompositeValuesIterator(OpenSearchClient client, String field, String index, Query query, int pageSize) {
+        this.client = client;
+        this.field = field;
+        this.index = index;
+        this.query = query;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (exhausted)
+                return false;
+            fetchNextPage();
+        }
+        return true;
+    }
+
+    @Override
+    public BucketAggregation next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return page.next();
+    }
+
+    private void fetchNextPage() {
+        final String ctx = CLASSNAME + ".fetchNextPage";
+        try {
+            SearchResponse<Object> response = client.search(OpenSearchRequests.compositeValuesRequest(field, index,
+                    query, pageSize, afterKey), Object.class);
+            Aggregate aggregate = response.aggregations().get(OpenSearchRequests.FIELD_VALUES_AGG);
+            List<BucketAggregation> buckets = CompositeAggregateParser.parse(aggregate, OpenSearchRequests.FIELD_VALUES_AGG);
+            afterKey = CompositeAggregateParser.afterKey(aggregate);
+            // A page shorter than requested is the last one, it saves the empty request at the end
+            if (afterKey == null || buckets.size() < pageSize)
+                exhausted = true;
+            page = buckets.iterator();
+        } catch (Exception e) {
+            exhausted = true;
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+}
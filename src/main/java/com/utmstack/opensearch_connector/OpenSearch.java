@@ -1,54 +1,133 @@
 package com.utmstack.opensearch_connector;
 
 import com.google.gson.Gson;
-import com.utmstack.opensearch_connector.clients.OpensearchClient;
-import com.utmstack.opensearch_connector.clients.RestClient;
+import com.google.gson.JsonObject;
+import com.utmstack.opensearch_connector.bulk.BulkIngester;
+import com.utmstack.opensearch_connector.clients.*;
+import com.utmstack.opensearch_connector.enums.ByQueryOperation;
 import com.utmstack.opensearch_connector.enums.HttpMethod;
 import com.utmstack.opensearch_connector.enums.HttpScheme;
+import com.utmstack.opensearch_connector.enums.LoadBalancing;
+import com.utmstack.opensearch_connector.enums.OperationType;
 import com.utmstack.opensearch_connector.enums.TermOrder;
 import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
-import com.utmstack.opensearch_connector.parsers.TermAggregateParser;
+import com.utmstack.opensearch_connector.metrics.Instrumentation;
+import com.utmstack.opensearch_connector.metrics.MetricsListener;
+import com.utmstack.opensearch_connector.monitoring.ClusterMonitor;
+import com.utmstack.opensearch_connector.monitoring.NodeStatsTracker;
 import com.utmstack.opensearch_connector.types.*;
-import com.utmstack.opensearch_connector.util.IndexUtils;
-import com.utmstack.opensearch_connector.util.SqlResponseMapper;
+import com.utmstack.opensearch_connector.util.MappingCache;
+import com.utmstack.opensearch_connector.util.NodeStatsDecoder;
+import com.utmstack.opensearch_connector.util.ResultCache;
+import com.utmstack.opensearch_connector.util.SingleFlight;
+import com.utmstack.opensearch_connector.util.SqlColumnarDecoder;
+import com.utmstack.opensearch_connector.util.SqlResponseDecoder;
 import okhttp3.Response;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
+import org.opensearch.client.Request;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
-import org.opensearch.client.opensearch._types.*;
-import org.opensearch.client.opensearch._types.aggregations.Aggregation;
+import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch._types.SortOrder;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
-import org.opensearch.client.opensearch.cat.IndicesRequest;
-import org.opensearch.client.opensearch.cat.NodesRequest;
 import org.opensearch.client.opensearch.cat.indices.IndicesRecord;
 import org.opensearch.client.opensearch.cat.nodes.NodesRecord;
 import org.opensearch.client.opensearch.core.IndexResponse;
 import org.opensearch.client.opensearch.core.SearchRequest;
 import org.opensearch.client.opensearch.core.SearchResponse;
 import org.opensearch.client.opensearch.core.UpdateByQueryResponse;
+import org.opensearch.client.opensearch.core.search.Hit;
 import org.opensearch.client.opensearch.indices.get_mapping.IndexMappingRecord;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.Closeable;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class OpenSearch {
+public class OpenSearch implements Closeable {
     private static final String CLASSNAME = "OpenSearch";
     private final OpenSearchClient client;
     private final RestClient restClient;
+    private final OpenSearchAsyncClient asyncClient;
+    private final OpenSearchAsync async;
+    private final MappingCache mappingCache;
+    private final SearchCoalescer coalescer;
+    private final SingleFlight singleFlight;
+    private final ResultCache resultCache;
+    private final NodeSniffer sniffer;
+    private final NodeRegistry nodes;
+    private final Instrumentation metrics;
+    private final ClusterMonitor monitor;
+    private final NodeStatsTracker nodeStatsTracker = new NodeStatsTracker();
     private final Gson GSON = new Gson();
 
-    private OpenSearch(OpenSearchClient client, RestClient restClient) {
+    private OpenSearch(OpenSearchClient client, RestClient restClient, MappingCache mappingCache,
+                       SearchCoalescer coalescer, SingleFlight singleFlight, ResultCache resultCache,
+                       NodeSniffer sniffer, NodeRegistry nodes, Instrumentation metrics, ClusterMonitor monitor) {
         this.client = client;
+        this.sniffer = sniffer;
+        this.nodes = nodes;
+        this.metrics = metrics;
+        this.monitor = monitor;
         this.restClient = restClient;
+        this.mappingCache = mappingCache;
+        this.coalescer = coalescer;
+        this.singleFlight = singleFlight;
+        this.resultCache = resultCache;
+        this.asyncClient = new OpenSearchAsyncClient(client._transport());
+        this.async = new OpenSearchAsync(asyncClient, restClient, mappingCache, coalescer, singleFlight, resultCache,
+                metrics);
+    }
+
+    /**
+     * Gives access to the non-blocking variant of every operation of this class.
+     * It shares the transport and connection pools of this instance.
+     *
+     * @return The {@link OpenSearchAsync} facade bound to the same cluster
+     */
+    public OpenSearchAsync async() {
+        return async;
+    }
+
+    /**
+     * Stops the sniffer, the cluster monitor and the search coalescer, sending the pending searches, and
+     * releases the connections of this instance
+     */
+    @Override
+    public void close() {
+        final String ctx = CLASSNAME + ".close";
+        if (sniffer != null)
+            sniffer.close();
+        if (monitor != null)
+            monitor.close();
+        if (coalescer != null)
+            coalescer.close();
+        try {
+            // The raw requests share the low-level client of the transport
+            client._transport().close();
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
     }
 
 
     /**
      * Perform a search operation and returns the results in the specified response type.
+     * <br>
+     * If search coalescing was enabled in the {@link Builder}, the search is sent together with the
+     * other searches received in the same window as a single {@code _msearch}.
      *
      * @param request      The search request containing the query parameters.
      * @param responseType The type of object to map the search results into.
@@ -57,10 +136,16 @@ public class OpenSearch {
      */
     public <T> SearchResponse<T> search(SearchRequest request, Class<T> responseType) throws OpenSearchException {
         final String ctx = CLASSNAME + ".search";
+        long start = 0;
         try {
-            return client.search(request, responseType);
+            if (singleFlight != null || coalescer != null || resultCache != null)
+                return join(ctx, async.search(request, responseType));
+            start = metrics.start(ctx);
+            return metrics.success(ctx, start, client.search(request, responseType));
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
@@ -76,19 +161,158 @@ public class OpenSearch {
     public UpdateByQueryResponse updateByQuery(Query query, String index, String script)
             throws OpenSearchException {
         final String ctx = CLASSNAME + ".updateByQuery";
+        long start = metrics.start(ctx);
         try {
-            return client.updateByQuery(u -> u
-                    .index(index)
-                    .query(query)
-                    .script(new Script.Builder()
-                            .inline(new InlineScript.Builder()
-                                    .lang("painless")
-                                    .source(script)
-                                    .build())
-                            .build())
-                    .refresh(true));
+            return metrics.success(ctx, start,
+                    client.updateByQuery(OpenSearchRequests.updateByQueryRequest(query, index, script)));
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
+        }
+    }
+
+    /**
+     * Starts an update-by-query as a background task of the cluster and returns without waiting for it.
+     * The task is sliced and throttled as defined in the options, use {@link #getTaskProgress(ByQueryTask)}
+     * to follow it, {@link #rethrottleTask(ByQueryTask, Float)} to change its speed and
+     * {@link #cancelTask(ByQueryTask)} to stop it.
+     * <br>
+     * Example:
+     * <pre>{@code
+     * ByQueryTask task = openSearch.updateByQueryTask(query, "v11-alert-*", "ctx._source.status = 3",
+     *         ByQueryOptions.builder().withRequestsPerSecond(5000F).build());
+     * TaskProgress progress = openSearch.awaitTask(task, Duration.ofSeconds(5), Duration.ofHours(1));
+     * }</pre>
+     *
+     * @param query   The query to filter documents for the update operation.
+     * @param index   The name of the index where the documents are located.
+     * @param script  The painless script to be executed as part of the update operation.
+     * @param options The {@link ByQueryOptions} with slicing, throttling and conflict handling
+     * @return A {@link ByQueryTask} handle of the running task
+     * @throws OpenSearchException In case of any error
+     */
+    public ByQueryTask updateByQueryTask(Query query, String index, String script, ByQueryOptions options)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".updateByQueryTask";
+        return startByQueryTask(ctx, ByQueryOperation.UpdateByQuery, query, index, script, options);
+    }
+
+    /**
+     * Starts a delete-by-query as a background task of the cluster and returns without waiting for it.
+     * See {@link #updateByQueryTask(Query, String, String, ByQueryOptions)} for how to follow the task.
+     *
+     * @param query   The query to filter the documents to delete.
+     * @param index   The name of the index where the documents are located.
+     * @param options The {@link ByQueryOptions} with slicing, throttling and conflict handling
+     * @return A {@link ByQueryTask} handle of the running task
+     * @throws OpenSearchException In case of any error
+     */
+    public ByQueryTask deleteByQueryTask(Query query, String index, ByQueryOptions options)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".deleteByQueryTask";
+        return startByQueryTask(ctx, ByQueryOperation.DeleteByQuery, query, index, null, options);
+    }
+
+    private ByQueryTask startByQueryTask(String ctx, ByQueryOperation operation, Query query, String index,
+                                         String script, ByQueryOptions options) throws OpenSearchException {
+        try {
+            if (StringUtils.isBlank(index))
+                throw new OpenSearchException(ctx + ": You need to define the index");
+            JsonObject body = OpenSearchRequests.performJson(client._transport(),
+                    OpenSearchRequests.byQueryRequest(operation, query, index, script,
+                            options != null ? options : ByQueryOptions.defaults(), client._transport().jsonpMapper()));
+            if (!body.has("task"))
+                throw new OpenSearchException(ctx + ": Task id not found in the response");
+            return new ByQueryTask(body.get("task").getAsString(), operation);
+        } catch (OpenSearchException e) {
+            throw e;
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+    }
+
+    /**
+     * Gets the progress of a by-query task through the Tasks API
+     *
+     * @param task The handle returned when the task was started
+     * @return A {@link TaskProgress} with the counters of the task, or its final result if it's completed
+     * @throws OpenSearchException In case of any error
+     */
+    public TaskProgress getTaskProgress(ByQueryTask task) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".getTaskProgress";
+        try {
+            Request request = new Request("GET", "/_tasks/" + task.getTaskId());
+            return OpenSearchRequests.toTaskProgress(task.getTaskId(),
+                    OpenSearchRequests.performJson(client._transport(), request));
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+    }
+
+    /**
+     * Changes the throttle of a running by-query task. Speeding up takes effect immediately,
+     * slowing down takes effect after the current batch completes.
+     *
+     * @param task              The handle returned when the task was started
+     * @param requestsPerSecond The new maximum documents per second, null to remove the throttle
+     * @throws OpenSearchException In case of any error
+     */
+    public void rethrottleTask(ByQueryTask task, Float requestsPerSecond) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".rethrottleTask";
+        try {
+            if (requestsPerSecond != null && requestsPerSecond <= 0)
+                throw new OpenSearchException(ctx + ": Requests per second must be greater than 0, use null for unlimited");
+            Request request = new Request("POST", "/" + task.getOperation().endpoint() + "/"
+                    + task.getTaskId() + "/_rethrottle");
+            request.addParameter("requests_per_second", OpenSearchRequests.requestsPerSecond(requestsPerSecond));
+            OpenSearchRequests.performJson(client._transport(), request);
+        } catch (OpenSearchException e) {
+            throw e;
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+    }
+
+    /**
+     * Cancels a running by-query task. The documents already processed are not rolled back.
+     *
+     * @param task The handle returned when the task was started
+     * @throws OpenSearchException In case of any error
+     */
+    public void cancelTask(ByQueryTask task) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".cancelTask";
+        try {
+            OpenSearchRequests.performJson(client._transport(),
+                    new Request("POST", "/_tasks/" + task.getTaskId() + "/_cancel"));
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+    }
+
+    /**
+     * Polls the progress of a by-query task until it completes
+     *
+     * @param task         The handle returned when the task was started
+     * @param pollInterval Time between two progress requests
+     * @param timeout      Maximum time to wait, the task keeps running if it's reached
+     * @return The {@link TaskProgress} of the completed task
+     * @throws OpenSearchException If the timeout is reached, the thread is interrupted or in case of any error
+     */
+    public TaskProgress awaitTask(ByQueryTask task, Duration pollInterval, Duration timeout)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".awaitTask";
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (true) {
+                TaskProgress progress = getTaskProgress(task);
+                if (progress.isCompleted())
+                    return progress;
+                if (System.nanoTime() - deadline >= 0)
+                    throw new OpenSearchException(ctx + ": Task " + task.getTaskId() + " not completed after " + timeout);
+                Thread.sleep(pollInterval.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw OpenSearchException.of(ctx, e);
         }
     }
 
@@ -101,17 +325,55 @@ public class OpenSearch {
      * @throws OpenSearchException In case of any error
      */
     public <T> IndexResponse index(String index, T document) throws OpenSearchException {
+        return index(index, document, Refresh.True);
+    }
+
+    /**
+     * Indexes a document of type T in the specified OpenSearch index using the given refresh policy.
+     * For high ingest rates use {@link #bulkIngester()} instead.
+     *
+     * @param index    The name of the index where the document will be indexed.
+     * @param document The document of type T to be indexed.
+     * @param refresh  The refresh policy, {@link Refresh#False} avoids creating a new segment per document
+     * @return A {@link IndexResponse} object with the results of the performed operation
+     * @throws OpenSearchException In case of any error
+     */
+    public <T> IndexResponse index(String index, T document, Refresh refresh) throws OpenSearchException {
         final String ctx = CLASSNAME + ".index";
+        long start = metrics.start(ctx);
         try {
-            return client.index(i -> i
+            return metrics.success(ctx, start, client.index(i -> i
                     .index(index)
-                    .refresh(Refresh.True)
-                    .document(document));
+                    .refresh(refresh)
+                    .document(document)));
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
+    /**
+     * Creates a builder for a {@link BulkIngester} that sends documents to the {@code _bulk} API
+     * in batches, sharing the connection pool of this instance.
+     * <br>
+     * Example:
+     * <pre>{@code
+     * try (BulkIngester ingester = openSearch.bulkIngester()
+     *         .withMaxActions(5000)
+     *         .withConcurrentRequests(4)
+     *         .withRefresh(Refresh.False)
+     *         .build()) {
+     *     for (Event event : events)
+     *         ingester.add("log-events", event);
+     * }
+     * }</pre>
+     *
+     * @return A {@link BulkIngester.Builder} to configure the batching, concurrency, retries and refresh policy
+     */
+    public BulkIngester.Builder bulkIngester() {
+        return BulkIngester.builder(OpenSearchRequests.lowLevelClient(client._transport()),
+                client._transport().jsonpMapper());
+    }
+
     /**
      * Checks if an OpenSearch index with the specified name exists.
      *
@@ -121,11 +383,12 @@ public class OpenSearch {
      */
     public boolean indexExist(String index) throws OpenSearchException {
         final String ctx = CLASSNAME + ".indexExist";
+        long start = metrics.start(ctx);
         try {
-            return !CollectionUtils.isEmpty(client.indices()
-                    .resolveIndex(e -> e.name(index)).indices());
+            return metrics.success(ctx, start, !CollectionUtils.isEmpty(client.indices()
+                    .resolveIndex(e -> e.name(index)).indices()));
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
@@ -138,10 +401,13 @@ public class OpenSearch {
      */
     public void deleteIndex(List<String> indices) throws OpenSearchException {
         final String ctx = CLASSNAME + ".deleteIndex";
+        long start = metrics.start(ctx);
         try {
-            client.indices().delete(d -> d.index(indices));
+            metrics.success(ctx, start, client.indices().delete(d -> d.index(indices)));
+            if (mappingCache != null)
+                indices.forEach(mappingCache::invalidateMatching);
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
@@ -166,47 +432,158 @@ public class OpenSearch {
     public Map<String, Long> getFieldValues(String field, String index, Query query, Integer top,
                                             TermOrder termOrder, SortOrder sortOrder) throws OpenSearchException {
         final String ctx = CLASSNAME + ".getFieldValues";
+        long start = 0;
         try {
-            final String AGG_NAME = "field_values";
-            Map<String, SortOrder> order = Map.of(termOrder.jsonValue(), sortOrder);
-            Aggregation fieldValuesAgg = Aggregation.of(agg -> agg.terms(t -> t.field(field)
-                    .size(top != null ? top : 5).order(List.of(order))));
-            SearchResponse<Object> response = client.search(s -> s
-                    .query(query).size(0).index(index)
-                    .aggregations(Map.of(AGG_NAME, fieldValuesAgg)), Object.class);
-
-            List<BucketAggregation> list = TermAggregateParser.parse(response.aggregations().get(AGG_NAME));
-            if (CollectionUtils.isEmpty(list))
-                return Collections.emptyMap();
-
-            return list.stream().collect(Collectors.toMap(BucketAggregation::getKey, BucketAggregation::getDocCount, (a, b) -> b, LinkedHashMap::new));
+            if (singleFlight != null || resultCache != null)
+                return join(ctx, async.getFieldValues(field, index, query, top, termOrder, sortOrder));
+            start = metrics.start(ctx);
+            SearchResponse<Object> response = client.search(OpenSearchRequests.fieldValuesRequest(field, index,
+                    query, top, termOrder, sortOrder), Object.class);
+            return OpenSearchRequests.toFieldValues(metrics.success(ctx, start, response));
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
+        } catch (Exception e) {
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
+        }
+    }
 
+    /**
+     * Search for the possible values of many fields in a single round trip. Fields that share the query
+     * are resolved with one terms aggregation each in the same search, when the fields have different
+     * queries one search per query is sent in a single {@code _msearch}.
+     * <br>
+     * Example:
+     * <pre>{@code
+     * Map<String, Map<String, Long>> values = openSearch.getFieldValues("log-*", query, List.of(
+     *         FieldValuesRequest.of("source.ip", 10),
+     *         FieldValuesRequest.of("user.name", 10),
+     *         FieldValuesRequest.builder().withField("event.severity").withOrder(TermOrder.Key, SortOrder.Asc).build()));
+     * }</pre>
+     *
+     * @param index  Index where the action will be performed, you can use a pattern too
+     * @param query  Query shared by all the fields that don't define their own (optional, use null for all documents)
+     * @param fields The fields with their top and order settings
+     * @return A map with the name of every field request as the key and the values of the field, in the
+     * same order as {@link #getFieldValues(String, String, Query, Integer, TermOrder, SortOrder)}, as the value
+     * @throws OpenSearchException In case of any error
+     */
+    public Map<String, Map<String, Long>> getFieldValues(String index, Query query, List<FieldValuesRequest> fields)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".getFieldValues";
+        if (CollectionUtils.isEmpty(fields))
+            return Collections.emptyMap();
+        long start = metrics.start(ctx);
+        try {
+            List<OpenSearchRequests.FieldValuesGroup> groups = OpenSearchRequests.fieldValuesGroups(query, fields,
+                    client._transport().jsonpMapper());
+            if (groups.size() == 1)
+                return OpenSearchRequests.toFieldValues(groups, fields, metrics.success(ctx, start,
+                        client.search(OpenSearchRequests.fieldValuesRequest(index, groups.get(0)), Object.class)));
+            return OpenSearchRequests.toFieldValues(groups, fields, metrics.success(ctx, start,
+                    client.msearch(OpenSearchRequests.fieldValuesRequest(index, groups), Object.class)));
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
+    /**
+     * Streams all the distinct values of a field in the specified index or index pattern, in ascending order.
+     * Unlike {@link #getFieldValues(String, String, Query, Integer, TermOrder, SortOrder)}, the values are
+     * paged with a {@code composite} aggregation, so the count of every value is exact and the cluster never
+     * builds more than a page of buckets. Pages are requested as the stream is consumed, stop early with
+     * {@code limit}, {@code takeWhile} or any short-circuit operation to skip the rest of the pages.
+     * <br>
+     * Example:
+     * <pre>{@code
+     * List<String> ips = openSearch.streamFieldValues("source.ip", "log-*", query, 1000)
+     *         .map(BucketAggregation::getKey)
+     *         .limit(10000)
+     *         .collect(Collectors.toList());
+     * }</pre>
+     *
+     * @param field    The name of the field to retrieve values from, text fields must be used as keyword.
+     * @param index    Index where the action will be performed, you can use a pattern too
+     * @param query    Any query to perform before get the field values (optional, use null for all documents)
+     * @param pageSize The number of values per request (optional, use null for the default of 1000)
+     * @return A lazy {@link Stream} of {@link BucketAggregation} with every value and its amount of documents.
+     * Errors on the pages are thrown as {@link RuntimeException} while consuming the stream
+     */
+    public Stream<BucketAggregation> streamFieldValues(String field, String index, Query query, Integer pageSize) {
+        final String ctx = CLASSNAME + ".streamFieldValues";
+        if (pageSize != null && pageSize < 1)
+            throw new RuntimeException(ctx + ": The page size must be greater than 0");
+        CompositeValuesIterator iterator = new CompositeValuesIterator(client, field, index, query,
+                pageSize != null ? pageSize : OpenSearchRequests.DEFAULT_COMPOSITE_PAGE_SIZE);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /**
      * Retrieves properties and their data types from the mapping of an index.
+     * <br>
+     * When the mapping cache is enabled in the {@link Builder}, the result is served from a cache by pattern,
+     * use {@link #invalidateIndexProperties(String)} after changing the mapping of an index.
      *
      * @param index Index or pattern from which fields will be extracted
-     * @return A map with the name of a field as the key and type of field as the value
+     * @return A map with the name of a field as the key and type of field as the value, immutable when
+     * the mapping cache is enabled
      * @throws OpenSearchException In case of any error
      */
     public Map<String, String> getIndexProperties(String index) throws OpenSearchException {
         final String ctx = CLASSNAME + ".getIndexProperties";
+        long start = 0;
         try {
+            if (mappingCache != null)
+                return join(ctx, async.getIndexProperties(index));
+            start = metrics.start(ctx);
             Map<String, IndexMappingRecord> mapping = client.indices().getMapping(f -> f.index(index)).result();
+            return metrics.success(ctx, start, OpenSearchRequests.toIndexProperties(mapping));
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
+        } catch (Exception e) {
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
+        }
+    }
 
-            if (MapUtils.isEmpty(mapping))
-                return Collections.emptyMap();
+    /**
+     * Removes from the mapping cache every pattern that includes the index.
+     * Call it after creating an index or changing its mapping.
+     *
+     * @param index Name of the created or changed index
+     */
+    public void invalidateIndexProperties(String index) {
+        if (mappingCache != null)
+            mappingCache.invalidateMatching(index);
+    }
 
-            Map<String, String> result = new TreeMap<>();
-            mapping.forEach((k, v) -> IndexUtils.propertiesFromMapping(v.mappings().properties(), result, null));
+    /**
+     * Removes all the entries of the mapping cache. Call it after creating or changing index templates or aliases.
+     */
+    public void invalidateIndexProperties() {
+        if (mappingCache != null)
+            mappingCache.invalidateAll();
+    }
 
-            return result;
+    /**
+     * Discovers the fields of all the indices of a pattern with the {@code _field_caps} API, which is merged
+     * by the cluster and much smaller than the mappings of every index when the pattern matches many indices.
+     * <br>
+     * Every field has its type (or types, when the indices disagree), if it's searchable and aggregatable and,
+     * for text fields, its {@code .keyword} sub-field. Sub-fields are returned as fields too, as in
+     * {@link #getIndexProperties(String)}.
+     *
+     * @param index Index or pattern from which fields will be extracted
+     * @return A map with the name of a field as the key and its {@link FieldCapabilities} as the value
+     * @throws OpenSearchException In case of any error
+     */
+    public Map<String, FieldCapabilities> getFieldCapabilities(String index) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".getFieldCapabilities";
+        long start = metrics.start(ctx);
+        try {
+            return metrics.success(ctx, start, OpenSearchRequests.toFieldCapabilities(
+                    client.fieldCaps(OpenSearchRequests.fieldCapsRequest(index))));
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
@@ -220,27 +597,25 @@ public class OpenSearch {
      */
     public List<IndicesRecord> getIndices(String pattern, IndexSort indexSort) throws OpenSearchException {
         final String ctx = CLASSNAME + ".getIndices";
+        long start = 0;
         try {
-            if (Objects.isNull(indexSort))
-                indexSort = IndexSort.unSorted();
-
-            if (StringUtils.isEmpty(pattern))
-                pattern = "*";
-
-            final String headers = "index,docs.count,health,store.size,status,creation.date.string";
-            IndicesRequest.Builder rq = new IndicesRequest.Builder();
-            rq.index(pattern);
-            rq.headers(headers);
-            rq.sort(indexSort.toString());
-
-            return client.cat().indices(rq.build()).valueBody();
+            if (singleFlight != null)
+                return join(ctx, async.getIndices(pattern, indexSort));
+            start = metrics.start(ctx);
+            return metrics.success(ctx, start,
+                    client.cat().indices(OpenSearchRequests.indicesRequest(pattern, indexSort)).valueBody());
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
     /**
      * Retrieves information about the OpenSearch cluster nodes.
+     * <br>
+     * If the cluster monitor was enabled in the {@link Builder}, its latest sample is returned without
+     * calling the cluster, so the information can be as old as the sample interval.
      *
      * @return An Optional containing an ElasticCluster object representing the cluster nodes' information,
      * or an empty Optional if no nodes are found.
@@ -248,27 +623,67 @@ public class OpenSearch {
      */
     public Optional<ElasticCluster> getClusterNodesInfo() throws OpenSearchException {
         final String ctx = CLASSNAME + ".getNodes";
+        long start = 0;
         try {
-            final String headers = "master,ip,disk.total,disk.used,disk.used_percent,disk.avail,name,ram.percent,ram.current,ram.max,cpu,heap.current,heap.percent,heap.max";
-            NodesRequest.Builder rq = new NodesRequest.Builder();
-            rq.headers(headers);
-            rq.bytes(Bytes.MegaBytes);
-
-            List<NodesRecord> nodes = client.cat().nodes(rq.build()).valueBody();
-            if (CollectionUtils.isEmpty(nodes))
-                return Optional.empty();
+            if (monitor != null) {
+                Optional<ElasticCluster> sampled = monitor.getCluster();
+                if (sampled.isPresent())
+                    return sampled;
+            }
+            if (singleFlight != null)
+                return join(ctx, async.getClusterNodesInfo());
+            start = metrics.start(ctx);
+            List<NodesRecord> nodes = client.cat().nodes(OpenSearchRequests.nodesRequest()).valueBody();
+            return metrics.success(ctx, start, OpenSearchRequests.toCluster(nodes));
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
+        } catch (Exception e) {
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
+        }
+    }
 
-            return Optional.of(new ElasticCluster(nodes));
+    /**
+     * Retrieves the stats of every node from {@code _nodes/stats}: CPU, memory, heap, GC, disk, the queues and
+     * rejections of the thread pools and the indexing, search and query cache counters, with their rates
+     * since the previous call of this method.
+     * <br>
+     * Without the cluster monitor the previous call is the last one made by any caller of this instance, so
+     * callers that sample on their own schedules get the rates since each other's calls, and calls made close
+     * together get rates over an interval near zero, mostly zeros. Enable the cluster monitor for steady rates.
+     * <br>
+     * If the cluster monitor was enabled in the {@link Builder}, its latest sample is returned without
+     * calling the cluster, with the rates between its last two samples.
+     *
+     * @return The metrics of every node
+     * @throws OpenSearchException In case of any error
+     */
+    public List<NodeMetrics> getNodeMetrics() throws OpenSearchException {
+        final String ctx = CLASSNAME + ".getNodeMetrics";
+        long start = 0;
+        try {
+            if (monitor != null && !monitor.getNodeMetrics().isEmpty())
+                return monitor.getNodeMetrics();
+            start = metrics.start(ctx);
+            return metrics.success(ctx, start, nodeStatsTracker.update(readNodeStats(restClient)));
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
         }
     }
 
+    private static List<NodeStats> readNodeStats(RestClient restClient) throws Exception {
+        return OpenSearchRequests.readBody(CLASSNAME + ".readNodeStats",
+                restClient.get(NodeStatsDecoder.ENDPOINT, Map.of("filter_path", NodeStatsDecoder.FILTER_PATH)),
+                NodeStatsDecoder::decode);
+    }
+
     /**
      * You can perform a direct http request to the opensearch instance you are connected
      *
      * @param uri         The URI of the request.
-     * @param queryParams A map with any query parameters needed for the request.
+     * @param queryParams A map with any query parameters needed for the request, names and values are
+     *                    taken as already URL encoded ({@code %2C} is a comma).
      * @param body        The body of the request.
      * @param method      The HTTP method to use. We just allow (GET, PUT, POST).
      *                    The body object will be ignored for GET requests
@@ -277,22 +692,71 @@ public class OpenSearch {
      */
     public Response executeHttpRequest(String uri, Map<String, String> queryParams, Object body, HttpMethod method) {
         final String ctx = CLASSNAME + ".executeHttpRequest";
+        long start = metrics.start(ctx);
         try {
             switch (method) {
                 case GET:
-                    return restClient.get(uri, queryParams);
+                    return metrics.success(ctx, start, restClient.get(uri, queryParams));
                 case PUT:
-                    return restClient.put(uri, queryParams, body);
+                    return metrics.success(ctx, start, restClient.put(uri, queryParams, body));
                 case POST:
-                    return restClient.post(uri, queryParams, body);
+                    return metrics.success(ctx, start, restClient.post(uri, queryParams, body));
                 default:
                     throw new IllegalArgumentException("Unsupported HTTP method");
             }
         } catch (Exception e) {
+            metrics.failure(ctx, start, e);
             throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
         }
     }
 
+    /**
+     * @return The counters of the result cache, null if the cache is disabled
+     */
+    public CacheStats getResultCacheStats() {
+        return resultCache != null ? resultCache.stats() : null;
+    }
+
+    /**
+     * @return The requests in flight to every node and their current concurrency limit
+     */
+    public List<NodeConcurrency> getNodeConcurrency() {
+        List<NodeConcurrency> result = new ArrayList<>();
+        for (NodeRegistry.Node node : nodes.getNodes())
+            result.add(new NodeConcurrency(node.getHost().toURI(), node.getOutstanding(),
+                    node.getLimiter() != null ? node.getLimiter().getLimit() : 0));
+        return result;
+    }
+
+    /**
+     * @return The monitor of the cluster stats, with the latest sample and the recent history of every node,
+     * null if the monitor is disabled
+     */
+    public ClusterMonitor getClusterMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Removes all the responses of the result cache, call it when the cached data is known to be stale
+     */
+    public void invalidateResultCache() {
+        if (resultCache != null)
+            resultCache.invalidateAll();
+    }
+
+    /**
+     * Waits for a call of the async facade and rethrows its failure as it is
+     */
+    private static <R> R join(String ctx, CompletableFuture<R> future) throws OpenSearchException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OpenSearchException)
+                throw (OpenSearchException) e.getCause();
+            throw OpenSearchException.of(ctx, e.getCause());
+        }
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -300,7 +764,25 @@ public class OpenSearch {
     public static class Builder {
         private String user;
         private String password;
-        private HttpHost host;
+        private final List<HttpHost> hosts = new ArrayList<>();
+        private LoadBalancing loadBalancing = LoadBalancing.RoundRobin;
+        private Duration sniffInterval;
+        private HttpPool pool;
+        private RetryPolicy readRetries;
+        private RetryPolicy writeRetries;
+        private CircuitBreaker.Settings circuitBreaker;
+        private ConcurrencyLimiter.Settings concurrencyLimit;
+        private MetricsListener metricsListener;
+        private Duration mappingCacheTtl;
+        private int mappingCacheSize;
+        private Duration coalescingWindow;
+        private int coalescingBatchSize;
+        private boolean singleFlight;
+        private Duration resultCacheTtl;
+        private long resultCacheBytes;
+        private boolean resultCacheOffHeap;
+        private Duration monitorInterval;
+        private int monitorHistorySize;
 
         public Builder withCredentials(String user, String password) {
             this.user = user;
@@ -308,16 +790,203 @@ public class OpenSearch {
             return this;
         }
 
+        /**
+         * Adds a node of the cluster, call it once per node to spread the requests over several nodes.
+         * A node that fails is skipped with an increasing backoff and the request is retried on the next one.
+         */
         public Builder withHost(String hostname, int port, HttpScheme scheme) {
-            host = new HttpHost(hostname, port, scheme.toString());
+            hosts.add(new HttpHost(hostname, port, scheme.toString()));
+            return this;
+        }
+
+        /**
+         * @param loadBalancing How the next node is chosen when there are several, {@link LoadBalancing#RoundRobin} by default
+         */
+        public Builder withLoadBalancing(LoadBalancing loadBalancing) {
+            this.loadBalancing = loadBalancing;
+            return this;
+        }
+
+        /**
+         * Enables the sniffing of the cluster nodes (disabled by default). The HTTP nodes are read from
+         * {@code _nodes/http} at the interval and replace the configured hosts, so nodes added to the cluster
+         * receive requests and removed ones stop receiving them. Dedicated cluster manager nodes are skipped.
+         *
+         * @param interval Time between two sniffs, a few minutes is usually enough
+         */
+        public Builder withSniffing(Duration interval) {
+            this.sniffInterval = interval;
+            return this;
+        }
+
+        /**
+         * Sets the connection settings of this cluster. Typed, SQL and raw requests share a single pool of
+         * connections, configured with these settings. Without them, the defaults of the low-level client are used.
+         *
+         * @param pool Connection pool settings
+         */
+        public Builder withHttpPool(HttpPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Enables the retries of a kind of operation (disabled by default), for typed, SQL and raw requests.
+         * Failed requests are repeated with exponential backoff and jitter, honoring the {@code Retry-After}
+         * sent by the cluster. Use {@link RetryPolicy#reads()} and {@link RetryPolicy#writes()} for sensible
+         * defaults: writes are only retried when the cluster surely didn't run them. This doesn't cover the
+         * failover of the low level client: with several hosts a request that fails with a connection error,
+         * a socket timeout or a 502, 503 or 504 is sent to the next node at once, so a write that timed out can
+         * still run twice. See {@link Retrier}.
+         *
+         * @param type   Kind of operation, see {@link Retrier#operationType(String, String)}
+         * @param policy Retry policy, null to disable the retries of this kind of operation
+         */
+        public Builder withRetryPolicy(OperationType type, RetryPolicy policy) {
+            if (type == OperationType.Read)
+                this.readRetries = policy;
+            else
+                this.writeRetries = policy;
+            return this;
+        }
+
+        /**
+         * Enables a circuit breaker per node (disabled by default). A node that rejects too many requests
+         * (429 or 503) gets no requests for a while, and if all the nodes are saturated the requests fail at
+         * once with a retryable {@link OpenSearchException} instead of adding load to the cluster.
+         *
+         * @param settings Settings of the breakers, see {@link CircuitBreaker.Settings#builder()}
+         */
+        public Builder withCircuitBreaker(CircuitBreaker.Settings settings) {
+            this.circuitBreaker = settings;
+            return this;
+        }
+
+        /**
+         * Enables an adaptive concurrency limit per node (disabled by default) for all the requests. The limit
+         * grows while the node answers quickly and shrinks when it rejects requests or its latency grows, so the
+         * throughput follows what the cluster can take. Blocking requests beyond the limit of every node wait, or
+         * fail at once with a retryable {@link OpenSearchException}; non-blocking requests never wait, they fail at
+         * once. See {@link OpenSearch#getNodeConcurrency()}.
+         *
+         * @param settings Settings of the limiters, see {@link ConcurrencyLimiter.Settings#builder()}
+         */
+        public Builder withConcurrencyLimit(ConcurrencyLimiter.Settings settings) {
+            this.concurrencyLimit = settings;
+            return this;
+        }
+
+        /**
+         * Reports the measurements of every operation and HTTP exchange to a listener (disabled by default):
+         * latency, time reported by the cluster, requests in flight, errors, retries and bytes. Use
+         * {@link com.utmstack.opensearch_connector.metrics.ConnectorMetrics} to keep them in memory.
+         *
+         * @param listener Receiver of the measurements, null to disable them
+         */
+        public Builder withMetrics(MetricsListener listener) {
+            this.metricsListener = listener;
+            return this;
+        }
+
+        /**
+         * Enables the cache of {@link OpenSearch#getIndexProperties(String)} (disabled by default). The cached
+         * maps are shared by every caller of the pattern, so they are immutable.
+         *
+         * @param ttl        How long a mapping is served from the cache, about a minute for most dashboards
+         * @param maxEntries Maximum number of patterns in the cache, the least recently used is evicted
+         */
+        public Builder withMappingCache(Duration ttl, int maxEntries) {
+            this.mappingCacheTtl = ttl;
+            this.mappingCacheSize = maxEntries;
+            return this;
+        }
+
+        /**
+         * Enables the coalescing of concurrent searches (disabled by default). The searches received within
+         * the window are sent as a single {@code _msearch}, so each search waits at most the window before
+         * it's sent. Use it when many independent searches arrive in bursts, such as dashboard loads.
+         *
+         * @param window       How long the first search of a batch waits for others, a few milliseconds
+         * @param maxBatchSize Maximum searches per {@code _msearch}, a full batch is sent without waiting
+         */
+        public Builder withSearchCoalescing(Duration window, int maxBatchSize) {
+            this.coalescingWindow = window;
+            this.coalescingBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Enables single-flight (disabled by default): while a search, field values, indices or nodes request
+         * is in flight, identical requests wait for it and share its result instead of reaching the cluster.
+         * Results already received are never reused, and scroll searches are never shared. Shared results
+         * must be treated as read-only, including the sources of the hits.
+         *
+         * @param singleFlight True to collapse concurrent identical requests
+         */
+        public Builder withSingleFlight(boolean singleFlight) {
+            this.singleFlight = singleFlight;
+            return this;
+        }
+
+        /**
+         * Enables the result cache (disabled by default) of {@link OpenSearch#search(SearchRequest, Class)},
+         * {@link OpenSearch#getFieldValues(String, String, Query, Integer, TermOrder, SortOrder)} and
+         * {@link OpenSearch#searchBySqlQuery(SqlQueryRequest, Class)}. Responses are cached by a hash of the
+         * canonical request, use it for requests that repeat often, like dashboards with rounded time ranges.
+         * Searches that timed out or failed on some shards are returned to their caller but never cached,
+         * and SQL queries with a fetch size, which open a cursor in the cluster, skip the cache.
+         *
+         * @param ttl      How long a response is served from the cache
+         * @param maxBytes Maximum size of the cached responses, the least recently used are evicted
+         * @param offHeap  If true, the responses are kept serialized in direct buffers, out of the heap
+         */
+        public Builder withResultCache(Duration ttl, long maxBytes, boolean offHeap) {
+            this.resultCacheTtl = ttl;
+            this.resultCacheBytes = maxBytes;
+            this.resultCacheOffHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * Enables the cluster monitor (disabled by default). The stats of the nodes are sampled from
+         * {@code _cat/nodes} and {@code _nodes/stats} in the background, and {@link OpenSearch#getClusterNodesInfo()}
+         * and {@link OpenSearch#getNodeMetrics()} return the latest sample instead of calling the cluster.
+         * The recent history of every node is kept in memory, see {@link OpenSearch#getClusterMonitor()}.
+         *
+         * @param interval    Time between two samples, such as 10 seconds
+         * @param historySize Samples kept per node, 360 samples of 10 seconds are one hour
+         */
+        public Builder withClusterMonitor(Duration interval, int historySize) {
+            this.monitorInterval = interval;
+            this.monitorHistorySize = historySize;
             return this;
         }
 
         public OpenSearch build() {
             final String ctx = CLASSNAME + ".build";
             try {
-                return new OpenSearch(OpensearchClient.build(user, password, host),
-                        new RestClient(user, password, host));
+                NodeRegistry nodes = new NodeRegistry(hosts, loadBalancing, circuitBreaker, concurrencyLimit);
+                boolean retries = readRetries != null || writeRetries != null;
+                Retrier retrier = retries ? new Retrier(readRetries, writeRetries, metricsListener) : Retrier.disabled();
+                OpenSearchClient client = OpensearchClient.build(user, password, nodes, pool, retries ? retrier : null,
+                        metricsListener);
+                SearchCoalescer coalescer = coalescingWindow != null
+                        ? new SearchCoalescer(OpenSearchRequests.lowLevelClient(client._transport()), retrier,
+                        client._transport().jsonpMapper(), coalescingWindow, coalescingBatchSize)
+                        : null;
+                NodeSniffer sniffer = sniffInterval != null
+                        ? new NodeSniffer(OpenSearchRequests.lowLevelClient(client._transport()), nodes, sniffInterval)
+                        : null;
+                RestClient restClient = new RestClient(OpenSearchRequests.lowLevelClient(client._transport()), retrier);
+                ClusterMonitor monitor = monitorInterval != null
+                        ? new ClusterMonitor(() -> client.cat().nodes(OpenSearchRequests.nodesRequest()).valueBody(),
+                        () -> readNodeStats(restClient), monitorInterval, monitorHistorySize)
+                        : null;
+                return new OpenSearch(client, restClient,
+                        mappingCacheTtl != null ? new MappingCache(mappingCacheTtl, mappingCacheSize) : null,
+                        coalescer, singleFlight ? new SingleFlight() : null,
+                        resultCacheTtl != null ? new ResultCache(resultCacheTtl, resultCacheBytes, resultCacheOffHeap) : null,
+                        sniffer, nodes, Instrumentation.of(metricsListener), monitor);
             } catch (Exception e) {
                 throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
             }
@@ -338,42 +1007,246 @@ public class OpenSearch {
     public <T> SearchSqlResponse<T> searchBySqlQuery(SqlQueryRequest request, Class<T> responseType)
             throws OpenSearchException {
         final String ctx = CLASSNAME + ".searchBySqlQuery";
+        long start = 0;
         try {
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("query", request.getQuery());
+            if (resultCache != null && request.getFetchSize() == null)
+                return join(ctx, async.searchBySqlQuery(request, responseType));
+            start = metrics.start(ctx);
+            Response response = restClient.post(OpenSearchRequests.SQL_ENDPOINT, null,
+                    OpenSearchRequests.sqlRequestBody(request));
+            return metrics.success(ctx, start, OpenSearchRequests.toSqlResponse(ctx, GSON, response, responseType));
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
+        } catch (Exception e) {
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
+        }
+    }
 
-            if (request.getFetchSize() != null) {
-                requestBody.put("fetch_size", request.getFetchSize());
-            }
+    /**
+     * Executes a SQL query against OpenSearch and streams all the rows of the result, following the
+     * cursor returned by the SQL plugin page after page. Only one page is kept in memory at a time
+     * (two when prefetch is enabled).
+     * <br>
+     * The stream must be closed, preferably with a try-with-resources block, to release the cursor
+     * in the cluster when it isn't fully consumed.
+     * <br>
+     * Example:
+     * <pre>{@code
+     * try (Stream<Event> rows = openSearch.streamBySqlQuery(new SqlQueryRequest(sql, 5000), Event.class, true)) {
+     *     rows.forEach(writer::write);
+     * }
+     * }</pre>
+     *
+     * @param <T>          The type of object to map the rows into.
+     * @param request      The {@link SqlQueryRequest} with the SQL query, the fetch_size is the page size
+     *                     (1000 if not defined).
+     * @param responseType The class type to map each row of the SQL response into.
+     * @param prefetch     If true, the next page is requested in background while the current one is consumed
+     * @return A lazy {@link Stream} over all the rows of the query
+     * @throws OpenSearchException If the first page can't be retrieved, errors on later pages are thrown
+     *                             as {@link RuntimeException} while consuming the stream
+     */
+    public <T> Stream<T> streamBySqlQuery(SqlQueryRequest request, Class<T> responseType, boolean prefetch)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".streamBySqlQuery";
+        try {
+            Map<String, Object> requestBody = OpenSearchRequests.sqlRequestBody(request);
+            requestBody.putIfAbsent("fetch_size", OpenSearchRequests.DEFAULT_SQL_FETCH_SIZE);
 
-            try (Response response = restClient.post("/_plugins/_sql", null, requestBody)) {
-                if (!response.isSuccessful()) {
-                    throw new OpenSearchException(ctx + ": HTTP " + response.code() + " - " + response.message());
-                }
+            SqlResponseDecoder<T> decoder = new SqlResponseDecoder<>(GSON, responseType);
+            SearchSqlResponse<T> firstPage = OpenSearchRequests.readSqlResponse(ctx,
+                    restClient.post(OpenSearchRequests.SQL_ENDPOINT, null, requestBody), decoder);
+
+            SqlCursorIterator<T> iterator = new SqlCursorIterator<>(restClient, decoder, firstPage, prefetch);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(iterator::close);
+        } catch (OpenSearchException e) {
+            throw e;
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+    }
+
+    /**
+     * Executes a SQL query against OpenSearch and returns the results stored by column in primitive arrays,
+     * see {@link SqlColumnarResult}. This is the most compact representation for aggregation queries
+     * returning many rows of numeric columns. If the query is paginated every page is fetched.
+     *
+     * @param request The {@link SqlQueryRequest} containing the SQL query and optional parameters
+     *                (e.g., fetch_size for pagination).
+     * @return A {@link SqlColumnarResult} with all the rows of the query
+     * @throws OpenSearchException In case of any error
+     */
+    public SqlColumnarResult searchBySqlQueryColumnar(SqlQueryRequest request) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".searchBySqlQueryColumnar";
+        long start = metrics.start(ctx);
+        try {
+            SqlColumnarDecoder decoder = new SqlColumnarDecoder(GSON);
+            String cursor = OpenSearchRequests.readBody(ctx, restClient.post(OpenSearchRequests.SQL_ENDPOINT, null,
+                    OpenSearchRequests.sqlRequestBody(request)), decoder::decode);
+
+            while (StringUtils.isNotEmpty(cursor)) {
+                cursor = OpenSearchRequests.readBody(ctx, restClient.post(OpenSearchRequests.SQL_ENDPOINT, null,
+                        OpenSearchRequests.sqlCursorBody(cursor)), decoder::decode);
+            }
+            return metrics.success(ctx, start, decoder.toResult());
+        } catch (OpenSearchException e) {
+            throw metrics.failure(ctx, start, e);
+        } catch (Exception e) {
+            throw metrics.failure(ctx, start, OpenSearchException.of(ctx, e));
+        }
+    }
 
-                String jsonResponse = Optional.ofNullable(response.body())
-                        .map(rb -> {
-                            try {
-                                return rb.string();
-                            } catch (IOException e) {
-                                throw new UncheckedIOException(e);
-                            }
-                        })
-                        .orElseThrow(() -> new OpenSearchException(ctx + ": Response body is null"));
+    /**
+     * Streams all the hits matching a query, without the {@code max_result_window} limit of {@code from/size}
+     * pagination. A Point-in-Time is opened over the index so the results are consistent while the stream is
+     * consumed, and every page is requested with the {@code search_after} values of the previous one, sorted by
+     * the request sort plus a tiebreaker field. With prefetch, the next page is requested in background while
+     * the current one is consumed.
+     * <br>
+     * The stream must be closed, preferably with a try-with-resources block, to release the Point-in-Time.
+     * <br>
+     * Example:
+     * <pre>{@code
+     * SearchStreamRequest request = SearchStreamRequest.builder()
+     *         .withIndex("v11-alert-*")
+     *         .withQuery(query)
+     *         .withPageSize(5000)
+     *         .build();
+     * try (Stream<Hit<Alert>> hits = openSearch.streamSearch(request, Alert.class)) {
+     *     hits.forEach(hit -> exporter.write(hit.source()));
+     * }
+     * }</pre>
+     *
+     * @param request      The {@link SearchStreamRequest} with the index, query, sort and paging options
+     * @param responseType The type of object to map the hits into.
+     * @return A lazy {@link Stream} over all the matching hits
+     * @throws OpenSearchException If the Point-in-Time can't be created, errors on the pages are thrown
+     *                             as {@link RuntimeException} while consuming the stream
+     */
+    public <T> Stream<Hit<T>> streamSearch(SearchStreamRequest request, Class<T> responseType)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".streamSearch";
+        try {
+            String pitId = OpenSearchRequests.openPit(ctx, client._transport(), request.getIndex(), request.getKeepAlive());
+            PitSearchIterator<T> iterator = new PitSearchIterator<>(asyncClient, request, pitId, null, responseType,
+                    () -> OpenSearchRequests.releasePit(ctx, client._transport(), pitId));
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(iterator::close);
+        } catch (OpenSearchException e) {
+            throw e;
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+    }
 
-                SqlQueryResponse sqlQueryResponse = GSON.fromJson(jsonResponse, SqlQueryResponse.class);
-                List<Map<String, Object>> rows = SqlResponseMapper.toKeyValue(sqlQueryResponse);
+    /**
+     * Reads all the hits matching a query in parallel. A Point-in-Time is opened over the index and split
+     * into slices, every slice is read with {@code search_after} in a thread of a bounded pool and its hits
+     * are passed to the consumer. The Point-in-Time is released when all the slices are read or when any
+     * of them fails.
+     *
+     * @param request      The {@link SearchStreamRequest} with the index, query, paging options and the
+     *                     number of slices (by default the number of primary shards of the index)
+     * @param responseType The type of object to map the hits into.
+     * @param consumer     Receives every hit. It's called concurrently from the pool threads, so it must be thread safe
+     * @param parallelism  Maximum number of slices read at the same time, use null for the number of processors
+     * @return The number of hits read
+     * @throws OpenSearchException In case of any error, the read of the pending slices is cancelled
+     */
+    public <T> long parallelScan(SearchStreamRequest request, Class<T> responseType, Consumer<Hit<T>> consumer,
+                                 Integer parallelism) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".parallelScan";
+        String pitId = null;
+        ExecutorService executor = null;
+        OpenSearchException error = null;
+        try {
+            int slices = OpenSearchRequests.scanSlices(client, request);
+            int threads = Math.min(slices, parallelism != null ? Math.max(1, parallelism) : Runtime.getRuntime().availableProcessors());
+            pitId = OpenSearchRequests.openPit(ctx, client._transport(), request.getIndex(), request.getKeepAlive());
 
-                List<T> mappedRows = rows.stream()
-                        .map(row -> GSON.fromJson(GSON.toJsonTree(row), responseType))
-                        .collect(Collectors.toList());
+            SliceSpliterator<T> sliceFactory = new SliceSpliterator<>(asyncClient, request, pitId, responseType, 0, slices, slices);
+            AtomicBoolean failed = new AtomicBoolean();
+            LongAdder count = new LongAdder();
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "opensearch-parallel-scan");
+                t.setDaemon(true);
+                return t;
+            });
 
-                return new SearchSqlResponse<>(mappedRows, sqlQueryResponse.getTotal(), sqlQueryResponse.getSize());
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < slices; i++) {
+                final int slice = i;
+                tasks.add(executor.submit(() -> {
+                    PitSearchIterator<T> iterator = sliceFactory.newSliceIterator(slice);
+                    try {
+                        while (!failed.get() && iterator.hasNext()) {
+                            consumer.accept(iterator.next());
+                            count.increment();
+                        }
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        iterator.close();
+                    }
+                }));
             }
+            for (Future<?> task : tasks)
+                task.get();
+            return count.sum();
+        } catch (ExecutionException e) {
+            throw error = OpenSearchException.of(ctx, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error = OpenSearchException.of(ctx, e);
+        } catch (OpenSearchException e) {
+            throw error = e;
+        } catch (Exception e) {
+            throw error = OpenSearchException.of(ctx, e);
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+            if (pitId != null) {
+                try {
+                    OpenSearchRequests.closePit(ctx, client._transport(), pitId);
+                } catch (RuntimeException e) {
+                    // The Point-in-Time expires with its keep alive anyway, the scan error is the one to report
+                    if (error != null)
+                        error.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #parallelScan(SearchStreamRequest, Class, Consumer, Integer)} but the hits are exposed
+     * as a parallel {@link Stream} whose spliterator splits over the slices of the Point-in-Time, so the
+     * slices are read by the threads of the stream pool. Call {@code sequential()} to read the slices one
+     * after the other instead.
+     * <br>
+     * The stream must be closed, preferably with a try-with-resources block, to release the Point-in-Time.
+     *
+     * @param request      The {@link SearchStreamRequest} with the index, query, paging options and the
+     *                     number of slices (by default the number of primary shards of the index)
+     * @param responseType The type of object to map the hits into.
+     * @return A lazy parallel {@link Stream} over all the matching hits
+     * @throws OpenSearchException If the Point-in-Time can't be created, errors on the pages are thrown
+     *                             as {@link RuntimeException} while consuming the stream
+     */
+    public <T> Stream<Hit<T>> parallelScanStream(SearchStreamRequest request, Class<T> responseType)
+            throws OpenSearchException {
+        final String ctx = CLASSNAME + ".parallelScanStream";
+        try {
+            int slices = OpenSearchRequests.scanSlices(client, request);
+            String pitId = OpenSearchRequests.openPit(ctx, client._transport(), request.getIndex(), request.getKeepAlive());
+            SliceSpliterator<T> spliterator = new SliceSpliterator<>(asyncClient, request, pitId, responseType, 0, slices, slices);
+            return StreamSupport.stream(spliterator, true)
+                    .onClose(() -> OpenSearchRequests.releasePit(ctx, client._transport(), pitId));
         } catch (OpenSearchException e) {
             throw e;
         } catch (Exception e) {
-            throw new OpenSearchException(ctx + ": " + e.getLocalizedMessage());
+            throw OpenSearchException.of(ctx, e);
         }
     }
 }
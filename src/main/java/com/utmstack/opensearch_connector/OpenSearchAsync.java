@@ -0,0 +1,472 @@
+package com.utmstack.opensearch_connector;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.utmstack.opensearch_connector.clients.RestClient;
+import com.utmstack.opensearch_connector.enums.HttpMethod;
+import com.utmstack.opensearch_connector.enums.TermOrder;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.metrics.Instrumentation;
+import com.utmstack.opensearch_connector.types.*;
+import com.utmstack.opensearch_connector.util.JsonpUtils;
+import com.utmstack.opensearch_connector.util.MappingCache;
+import com.utmstack.opensearch_connector.util.ResultCache;
+import com.utmstack.opensearch_connector.util.SingleFlight;
+import com.utmstack.opensearch_connector.util.SqlResponseDecoder;
+import okhttp3.Response;
+import org.apache.commons.collections4.CollectionUtils;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
+import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.cat.IndicesRequest;
+import org.opensearch.client.opensearch.cat.indices.IndicesRecord;
+import org.opensearch.client.opensearch.core.IndexResponse;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.UpdateByQueryResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking variant of {@link OpenSearch}. Every operation returns immediately with a
+ * {@link CompletableFuture} that is completed when the cluster answers, so many requests can be
+ * in flight without holding a thread per call.
+ * <br>
+ * Futures fail with an {@link OpenSearchException} in case of any error. Dependent stages run on the
+ * http client I/O threads, use the {@code *Async} composition methods with your own executor for
+ * any blocking or CPU heavy work.
+ * <br>
+ * Instances are obtained from {@link OpenSearch#async()} and share its connection pools.
+ */
+public class OpenSearchAsync {
+    private static final String CLASSNAME = "OpenSearchAsync";
+    private final OpenSearchAsyncClient client;
+    private final RestClient restClient;
+    private final MappingCache mappingCache;
+    private final SearchCoalescer coalescer;
+    private final SingleFlight singleFlight;
+    private final ResultCache resultCache;
+    private final Instrumentation metrics;
+    private final Gson GSON = new Gson();
+
+    OpenSearchAsync(OpenSearchAsyncClient client, RestClient restClient, MappingCache mappingCache,
+                    SearchCoalescer coalescer, SingleFlight singleFlight, ResultCache resultCache,
+                    Instrumentation metrics) {
+        this.client = client;
+        this.restClient = restClient;
+        this.mappingCache = mappingCache;
+        this.coalescer = coalescer;
+        this.singleFlight = singleFlight;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Perform a search operation and returns the results in the specified response type.
+     *
+     * @param request      The search request containing the query parameters.
+     * @param responseType The type of object to map the search results into.
+     * @return A future with the {@link SearchResponse} containing the search results mapped to the specified type.
+     */
+    public <T> CompletableFuture<SearchResponse<T>> search(SearchRequest request, Class<T> responseType) {
+        final String ctx = CLASSNAME + ".search";
+        // Every scroll search opens its own context on the cluster, so it's never shared with another caller
+        if (request.scroll() != null)
+            return call(ctx, () -> client.search(request, responseType));
+
+        JsonpMapper mapper = client._transport().jsonpMapper();
+        // Point-in-Time pages depend on the state of the cluster, they are never cached
+        ResultCodec<SearchResponse<T>> codec = request.pit() == null
+                ? new ResultCodec<>() {
+            @Override
+            public byte[] encode(SearchResponse<T> value) {
+                return JsonpUtils.toJson(value, mapper).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public SearchResponse<T> decode(InputStream in) {
+                return OpenSearchRequests.readSearchResponse(in, responseType, mapper);
+            }
+
+            @Override
+            public boolean cacheable(SearchResponse<T> value) {
+                // A partial response is served to its own caller but never to the next ones
+                return !value.timedOut() && value.shards().failed().intValue() == 0;
+            }
+        } : null;
+        return execute(() -> OpenSearchRequests.searchKey(request, responseType, mapper), codec,
+                () -> call(ctx, () -> coalescer != null && SearchCoalescer.accepts(request)
+                        ? coalescer.submit(request, responseType)
+                        : client.search(request, responseType)));
+    }
+
+    /**
+     * Performs an update-by-query operation in the OpenSearch engine with the specified query, index, and script.
+     *
+     * @param query  The query to filter documents for the update operation.
+     * @param index  The name of the index where the documents are located.
+     * @param script The painless script to be executed as part of the update operation.
+     * @return A future with the {@link UpdateByQueryResponse} of the performed operation
+     */
+    public CompletableFuture<UpdateByQueryResponse> updateByQuery(Query query, String index, String script) {
+        return call(CLASSNAME + ".updateByQuery",
+                () -> client.updateByQuery(OpenSearchRequests.updateByQueryRequest(query, index, script)));
+    }
+
+    /**
+     * Indexes a document of type T in the specified OpenSearch index and refresh the index.
+     *
+     * @param index    The name of the index where the document will be indexed.
+     * @param document The document of type T to be indexed.
+     * @return A future with the {@link IndexResponse} of the performed operation
+     */
+    public <T> CompletableFuture<IndexResponse> index(String index, T document) {
+        return index(index, document, Refresh.True);
+    }
+
+    /**
+     * Indexes a document of type T in the specified OpenSearch index using the given refresh policy.
+     *
+     * @param index    The name of the index where the document will be indexed.
+     * @param document The document of type T to be indexed.
+     * @param refresh  The refresh policy
+     * @return A future with the {@link IndexResponse} of the performed operation
+     */
+    public <T> CompletableFuture<IndexResponse> index(String index, T document, Refresh refresh) {
+        return call(CLASSNAME + ".index", () -> client.index(i -> i
+                .index(index)
+                .refresh(refresh)
+                .document(document)));
+    }
+
+    /**
+     * Checks if an OpenSearch index with the specified name exists.
+     *
+     * @param index The name of the index to check for existence.
+     * @return A future with true if the index exists, false otherwise.
+     */
+    public CompletableFuture<Boolean> indexExist(String index) {
+        return call(CLASSNAME + ".indexExist", () -> client.indices()
+                .resolveIndex(e -> e.name(index))
+                .thenApply(r -> !CollectionUtils.isEmpty(r.indices())));
+    }
+
+    /**
+     * Deletes one or more OpenSearch indices based on the given list of index names.
+     *
+     * @param indices A list of index names to be deleted.
+     * @return A future completed when the indices are deleted
+     */
+    public CompletableFuture<Void> deleteIndex(List<String> indices) {
+        return call(CLASSNAME + ".deleteIndex", () -> client.indices()
+                .delete(d -> d.index(indices))
+                .thenApply(r -> {
+                    if (mappingCache != null)
+                        indices.forEach(mappingCache::invalidateMatching);
+                    return null;
+                }));
+    }
+
+    /**
+     * Search for the possible values of the field in the specified index or index pattern.
+     * See {@link OpenSearch#getFieldValues(String, String, Query, Integer, TermOrder, SortOrder)}
+     *
+     * @param field     The name of the field to retrieve values from.
+     * @param index     Index where the action will be performed, you can use a pattern too
+     * @param query     Any query to perform before get the field values
+     * @param top       The maximum number of values to retrieve (optional, use null for default).
+     * @param termOrder Order the results alphabetically or by the amount of documents
+     * @param sortOrder The way that you want to sort the results Asc or Desc
+     * @return A future with a map of the values founded for the field and the amount of documents for each value
+     */
+    public CompletableFuture<Map<String, Long>> getFieldValues(String field, String index, Query query, Integer top,
+                                                               TermOrder termOrder, SortOrder sortOrder) {
+        final String ctx = CLASSNAME + ".getFieldValues";
+        SearchRequest request = OpenSearchRequests.fieldValuesRequest(field, index, query, top, termOrder, sortOrder);
+        ResultCodec<Map<String, Long>> codec = new ResultCodec<>() {
+            @Override
+            public byte[] encode(Map<String, Long> value) {
+                return GSON.toJson(value).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public Map<String, Long> decode(InputStream in) {
+                Map<String, Long> values = GSON.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8),
+                        new TypeToken<LinkedHashMap<String, Long>>() {
+                        }.getType());
+                return Collections.unmodifiableMap(values);
+            }
+        };
+        return execute(() -> OpenSearchRequests.fieldValuesKey(request, client._transport().jsonpMapper()), codec,
+                () -> call(ctx, () -> client.search(request, Object.class)
+                        .thenApply(r -> Collections.unmodifiableMap(OpenSearchRequests.toFieldValues(r)))));
+    }
+
+    /**
+     * Search for the possible values of many fields in a single round trip.
+     * See {@link OpenSearch#getFieldValues(String, Query, List)}
+     *
+     * @param index  Index where the action will be performed, you can use a pattern too
+     * @param query  Query shared by all the fields that don't define their own (optional, use null for all documents)
+     * @param fields The fields with their top and order settings
+     * @return A future with a map with the name of every field request as the key and the values of the field as the value
+     */
+    public CompletableFuture<Map<String, Map<String, Long>>> getFieldValues(String index, Query query,
+                                                                          List<FieldValuesRequest> fields) {
+        return call(CLASSNAME + ".getFieldValues", () -> {
+            if (CollectionUtils.isEmpty(fields))
+                return CompletableFuture.completedFuture(Collections.emptyMap());
+            List<OpenSearchRequests.FieldValuesGroup> groups = OpenSearchRequests.fieldValuesGroups(query, fields,
+                    client._transport().jsonpMapper());
+            if (groups.size() == 1)
+                return client.search(OpenSearchRequests.fieldValuesRequest(index, groups.get(0)), Object.class)
+                        .thenApply(r -> OpenSearchRequests.toFieldValues(groups, fields, r));
+            return client.msearch(OpenSearchRequests.fieldValuesRequest(index, groups), Object.class)
+                    .thenApply(r -> OpenSearchRequests.toFieldValues(groups, fields, r));
+        });
+    }
+
+    /**
+     * Retrieves properties and their data types from the mapping of an index.
+     *
+     * @param index Index or pattern from which fields will be extracted
+     * @return A future with a map with the name of a field as the key and type of field as the value
+     */
+    public CompletableFuture<Map<String, String>> getIndexProperties(String index) {
+        final String ctx = CLASSNAME + ".getIndexProperties";
+        if (mappingCache == null)
+            return call(ctx, () -> fetchIndexProperties(index));
+        return call(ctx, () -> mappingCache.get(index, pattern -> {
+            try {
+                return fetchIndexProperties(pattern);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }));
+    }
+
+    private CompletableFuture<Map<String, String>> fetchIndexProperties(String index) throws IOException {
+        return client.indices()
+                .getMapping(f -> f.index(index))
+                .thenApply(r -> OpenSearchRequests.toIndexProperties(r.result()));
+    }
+
+    /**
+     * Discovers the fields of all the indices of a pattern with the {@code _field_caps} API.
+     * See {@link OpenSearch#getFieldCapabilities(String)}
+     *
+     * @param index Index or pattern from which fields will be extracted
+     * @return A future with a map with the name of a field as the key and its {@link FieldCapabilities} as the value
+     */
+    public CompletableFuture<Map<String, FieldCapabilities>> getFieldCapabilities(String index) {
+        return call(CLASSNAME + ".getFieldCapabilities", () -> client
+                .fieldCaps(OpenSearchRequests.fieldCapsRequest(index))
+                .thenApply(OpenSearchRequests::toFieldCapabilities));
+    }
+
+    /**
+     * Retrieves a list of indices based on the provided pattern and sorting criteria.
+     *
+     * @param pattern   The pattern to filter indices (default is "*").
+     * @param indexSort The sorting criteria for the retrieved indices (default is unsorted).
+     * @return A future with a list of ${@link IndicesRecord}
+     */
+    public CompletableFuture<List<IndicesRecord>> getIndices(String pattern, IndexSort indexSort) {
+        final String ctx = CLASSNAME + ".getIndices";
+        IndicesRequest request = OpenSearchRequests.indicesRequest(pattern, indexSort);
+        return execute(() -> OpenSearchRequests.indicesKey(request), null,
+                () -> call(ctx, () -> client.cat().indices(request).thenApply(r -> List.copyOf(r.valueBody()))));
+    }
+
+    /**
+     * Retrieves information about the OpenSearch cluster nodes.
+     *
+     * @return A future with an Optional containing an ElasticCluster object representing the cluster nodes' information,
+     * or an empty Optional if no nodes are found.
+     */
+    public CompletableFuture<Optional<ElasticCluster>> getClusterNodesInfo() {
+        final String ctx = CLASSNAME + ".getNodes";
+        return execute(() -> "nodes", null, () -> call(ctx, () -> client.cat()
+                .nodes(OpenSearchRequests.nodesRequest())
+                .thenApply(r -> OpenSearchRequests.toCluster(r.valueBody()))));
+    }
+
+    /**
+     * You can perform a direct http request to the opensearch instance you are connected
+     *
+     * @param uri         The URI of the request.
+     * @param queryParams A map with any query parameters needed for the request, names and values are
+     *                    taken as already URL encoded ({@code %2C} is a comma).
+     * @param body        The body of the request.
+     * @param method      The HTTP method to use. We just allow (GET, PUT, POST).
+     *                    The body object will be ignored for GET requests
+     * @return A future with the {@link Response} object, the caller is responsible for closing it.
+     */
+    public CompletableFuture<Response> executeHttpRequest(String uri, Map<String, String> queryParams, Object body,
+                                                          HttpMethod method) {
+        return call(CLASSNAME + ".executeHttpRequest", () -> {
+            switch (method) {
+                case GET:
+                    return restClient.getAsync(uri, queryParams);
+                case PUT:
+                    return restClient.putAsync(uri, queryParams, body);
+                case POST:
+                    return restClient.postAsync(uri, queryParams, body);
+                default:
+                    throw new IllegalArgumentException("Unsupported HTTP method");
+            }
+        });
+    }
+
+    /**
+     * Executes a SQL query against OpenSearch and returns the results mapped to the specified type.
+     *
+     * @param <T>          The type of object to map the search results into.
+     * @param request      The {@link SqlQueryRequest} containing the SQL query and optional parameters
+     *                     (e.g., fetch_size for pagination).
+     * @param responseType The class type to map each row of the SQL response into.
+     * @return A future with the {@link SearchSqlResponse} containing the mapped results, size, and total count.
+     */
+    public <T> CompletableFuture<SearchSqlResponse<T>> searchBySqlQuery(SqlQueryRequest request, Class<T> responseType) {
+        final String ctx = CLASSNAME + ".searchBySqlQuery";
+        // A paged query opens a cursor in the cluster, every caller needs its own
+        if (resultCache != null && request.getFetchSize() == null) {
+            // The raw body is cached, so cached and fresh responses go through the same decoder
+            ResultCodec<byte[]> codec = new ResultCodec<>() {
+                @Override
+                public byte[] encode(byte[] value) {
+                    return value;
+                }
+
+                @Override
+                public byte[] decode(InputStream in) throws IOException {
+                    return in.readAllBytes();
+                }
+
+                @Override
+                public boolean cacheable(byte[] value) throws IOException {
+                    return !OpenSearchRequests.hasSqlCursor(value);
+                }
+            };
+            return execute(() -> OpenSearchRequests.sqlKey(request, responseType), codec, () -> call(ctx, () -> restClient
+                    .postAsync(OpenSearchRequests.SQL_ENDPOINT, null, OpenSearchRequests.sqlRequestBody(request))
+                    .thenApply(response -> {
+                        try {
+                            return OpenSearchRequests.readSqlBytes(ctx, response);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    })))
+                    .thenApply(body -> {
+                        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)) {
+                            return new SqlResponseDecoder<>(GSON, responseType).decode(reader);
+                        } catch (Exception e) {
+                            throw new CompletionException(OpenSearchException.of(ctx, e));
+                        }
+                    });
+        }
+        return call(ctx, () -> restClient
+                .postAsync(OpenSearchRequests.SQL_ENDPOINT, null, OpenSearchRequests.sqlRequestBody(request))
+                .thenApply(response -> {
+                    try {
+                        return OpenSearchRequests.toSqlResponse(ctx, GSON, response, responseType);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }));
+    }
+
+    /**
+     * Serves the call from the result cache when the call is cacheable (it has a codec), or joins the
+     * identical call in flight, if single-flight is enabled, instead of starting a new one
+     */
+    private <R> CompletableFuture<R> execute(Supplier<String> key, ResultCodec<R> codec,
+                                             Supplier<CompletableFuture<R>> action) {
+        boolean cached = resultCache != null && codec != null;
+        if (!cached && singleFlight == null)
+            return action.get();
+
+        String canonical = key.get();
+        Supplier<CompletableFuture<R>> loader = action;
+        if (cached) {
+            InputStream in = resultCache.get(canonical);
+            if (in != null) {
+                try {
+                    return CompletableFuture.completedFuture(codec.decode(in));
+                } catch (Exception e) {
+                    // A response that can't be decoded is dropped and requested again
+                    resultCache.invalidate(canonical);
+                }
+            }
+            loader = () -> action.get().thenApply(value -> {
+                try {
+                    if (codec.cacheable(value))
+                        resultCache.put(canonical, codec.encode(value));
+                } catch (Exception e) {
+                    resultCache.invalidate(canonical);
+                }
+                return value;
+            });
+        }
+        return singleFlight != null ? singleFlight.execute(canonical, loader) : loader.get();
+    }
+
+    /**
+     * Starts the call and translates any failure, synchronous or asynchronous, into an {@link OpenSearchException}.
+     * The call is measured from here, results served by the result cache or shared by single-flight are not.
+     */
+    private <R> CompletableFuture<R> call(String ctx, Callable<CompletableFuture<R>> action) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        long start = metrics.start(ctx);
+        try {
+            action.call().whenComplete((value, error) -> {
+                if (error == null)
+                    result.complete(metrics.success(ctx, start, value));
+                else
+                    result.completeExceptionally(metrics.failure(ctx, start, toOpenSearchException(ctx, error)));
+            });
+        } catch (Exception e) {
+            result.completeExceptionally(metrics.failure(ctx, start, toOpenSearchException(ctx, e)));
+        }
+        return result;
+    }
+
+    private interface ResultCodec<R> {
+        byte[] encode(R value) throws Exception;
+
+        R decode(InputStream in) throws Exception;
+
+        /**
+         * @return False if the value must not be served to other callers, it's still returned to its own
+         */
+        default boolean cacheable(R value) throws Exception {
+            return true;
+        }
+    }
+
+    private static OpenSearchException toOpenSearchException(String ctx, Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+            cause = cause.getCause();
+        if (cause instanceof OpenSearchException)
+            return (OpenSearchException) cause;
+        return OpenSearchException.of(ctx, cause);
+    }
+}
@@ -0,0 +1,110 @@
+package com.utmstack.opensearch_connector;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the connections to several clusters used by the same process, each one by name.
+ * <br>
+ * Every cluster is an independent {@link OpenSearch} instance with its own nodes, credentials, caches and
+ * connection pool, tuned with its own {@link com.utmstack.opensearch_connector.clients.HttpPool}, so the
+ * traffic of one cluster never affects the others.
+ * <br>
+ * Example:
+ * <pre>{@code
+ * OpenSearchClusters clusters = new OpenSearchClusters();
+ * clusters.register("hot", OpenSearch.builder().withHost("hot-1", 9200, HttpScheme.https)
+ *         .withHttpPool(HttpPool.builder().withMaxRequestsPerHost(64).build()));
+ * clusters.register("warm", OpenSearch.builder().withHost("warm-1", 9200, HttpScheme.https));
+ * clusters.get("hot").search(request, Map.class);
+ * }</pre>
+ */
+public class OpenSearchClusters implements Closeable {
+    private static final String CLASSNAME = "OpenSearchClusters";
+    private final ConcurrentHashMap<String, OpenSearch> clusters = new ConcurrentHashMap<>();
+
+    /**
+     * Builds and registers the connection to a cluster
+     *
+     * @param name    Unique name of the cluster
+     * @param builder Configuration of the connection
+     * @return The connection to the cluster
+     */
+    public OpenSearch register(String name, OpenSearch.Builder builder) {
+        final String ctx = CLASSNAME + ".register";
+        if (builder == null)
+            throw new RuntimeException(ctx + ": The builder is required");
+        return register(name, builder.build());
+    }
+
+    /**
+     * Registers an existing connection to a cluster, it's closed with this registry
+     *
+     * @param name       Unique name of the cluster
+     * @param openSearch Connection to the cluster
+     * @return The registered connection
+     */
+    public OpenSearch register(String name, OpenSearch openSearch) {
+        final String ctx = CLASSNAME + ".register";
+        if (StringUtils.isBlank(name))
+            throw new RuntimeException(ctx + ": The cluster name is required");
+        if (openSearch == null)
+            throw new RuntimeException(ctx + ": The connection is required");
+        if (clusters.putIfAbsent(name, openSearch) != null) {
+            openSearch.close();
+            throw new RuntimeException(ctx + ": A cluster named " + name + " is already registered");
+        }
+        return openSearch;
+    }
+
+    /**
+     * @param name Name of the cluster
+     * @return The connection to the cluster
+     */
+    public OpenSearch get(String name) {
+        final String ctx = CLASSNAME + ".get";
+        OpenSearch openSearch = clusters.get(name);
+        if (openSearch == null)
+            throw new RuntimeException(ctx + ": No cluster named " + name + " is registered");
+        return openSearch;
+    }
+
+    public boolean contains(String name) {
+        return clusters.containsKey(name);
+    }
+
+    /**
+     * @return The names of the registered clusters, sorted
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(clusters.keySet()));
+    }
+
+    /**
+     * Removes a cluster from the registry and closes its connection
+     *
+     * @param name Name of the cluster
+     * @return True if the cluster was registered
+     */
+    public boolean remove(String name) {
+        OpenSearch openSearch = clusters.remove(name);
+        if (openSearch == null)
+            return false;
+        openSearch.close();
+        return true;
+    }
+
+    /**
+     * Closes the connections of all the registered clusters
+     */
+    @Override
+    public void close() {
+        for (String name : clusters.keySet())
+            remove(name);
+    }
+}
@@ -0,0 +1,549 @@
+package com.utmstack.opensearch_connector;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.utmstack.opensearch_connector.clients.NodeRegistry;
+import com.utmstack.opensearch_connector.clients.ResilientTransport;
+import com.utmstack.opensearch_connector.enums.ByQueryOperation;
+import com.utmstack.opensearch_connector.enums.TermOrder;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.parsers.TermAggregateParser;
+import com.utmstack.opensearch_connector.types.*;
+import com.utmstack.opensearch_connector.util.IndexUtils;
+import com.utmstack.opensearch_connector.util.JsonpUtils;
+import com.utmstack.opensearch_connector.util.SqlResponseDecoder;
+import jakarta.json.stream.JsonGenerator;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.opensearch.client.Request;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.Bytes;
+import org.opensearch.client.opensearch._types.InlineScript;
+import org.opensearch.client.opensearch._types.Script;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.aggregations.Aggregate;
+import org.opensearch.client.opensearch._types.aggregations.Aggregation;
+import org.opensearch.client.opensearch._types.aggregations.CompositeAggregationSource;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.cat.IndicesRequest;
+import org.opensearch.client.opensearch.cat.NodesRequest;
+import org.opensearch.client.opensearch.cat.indices.IndicesRecord;
+import org.opensearch.client.opensearch.cat.nodes.NodesRecord;
+import org.opensearch.client.opensearch.core.FieldCapsRequest;
+import org.opensearch.client.opensearch.core.FieldCapsResponse;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.MsearchResponse;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.UpdateByQueryRequest;
+import org.opensearch.client.opensearch.core.field_caps.FieldCapability;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.opensearch.indices.get_mapping.IndexMappingRecord;
+import org.opensearch.client.transport.OpenSearchTransport;
+import org.opensearch.client.transport.rest_client.RestClientTransport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the requests and maps the responses shared by {@link OpenSearch} and {@link OpenSearchAsync},
+ * so both facades behave exactly the same.
+ */
+final class OpenSearchRequests {
+    static final String FIELD_VALUES_AGG = "field_values";
+    static final String SQL_ENDPOINT = "/_plugins/_sql";
+    static final String SQL_CLOSE_ENDPOINT = "/_plugins/_sql/close";
+    static final int DEFAULT_SQL_FETCH_SIZE = 1000;
+    static final int MAX_SCAN_SLICES = 1024;
+    static final int DEFAULT_COMPOSITE_PAGE_SIZE = 1000;
+
+    private OpenSearchRequests() {
+    }
+
+    static UpdateByQueryRequest updateByQueryRequest(Query query, String index, String script) {
+        return UpdateByQueryRequest.of(u -> u
+                .index(index)
+                .query(query)
+                .script(new Script.Builder()
+                        .inline(new InlineScript.Builder()
+                                .lang("painless")
+                                .source(script)
+                                .build())
+                        .build())
+                .refresh(true));
+    }
+
+    static SearchRequest fieldValuesRequest(String field, String index, Query query, Integer top,
+                                            TermOrder termOrder, SortOrder sortOrder) {
+        Aggregation fieldValuesAgg = fieldValuesAggregation(field, top, termOrder, sortOrder);
+        return SearchRequest.of(s -> s
+                .query(query).size(0).index(index)
+                .aggregations(Map.of(FIELD_VALUES_AGG, fieldValuesAgg)));
+    }
+
+    private static Aggregation fieldValuesAggregation(String field, Integer top, TermOrder termOrder, SortOrder sortOrder) {
+        Map<String, SortOrder> order = Map.of(termOrder.jsonValue(), sortOrder);
+        return Aggregation.of(agg -> agg.terms(t -> t.field(field)
+                .size(top != null ? top : 5).order(List.of(order))));
+    }
+
+    /**
+     * Groups the fields of a batch by their query, the fields of a group are resolved with
+     * one terms aggregation each in the same search
+     */
+    static List<FieldValuesGroup> fieldValuesGroups(Query query, List<FieldValuesRequest> fields, JsonpMapper mapper) {
+        Set<String> names = new HashSet<>();
+        Map<String, FieldValuesGroup> groups = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            FieldValuesRequest field = fields.get(i);
+            if (!names.add(field.getName()))
+                throw new RuntimeException("Duplicated name " + field.getName() + " in the batch, use withName to tell them apart");
+            Query fieldQuery = field.getQuery() != null ? field.getQuery() : query;
+            String key = fieldQuery != null ? JsonpUtils.toJson(fieldQuery, mapper) : "";
+            groups.computeIfAbsent(key, k -> new FieldValuesGroup(fieldQuery))
+                    .fields.put(FIELD_VALUES_AGG + "_" + i, field);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    static SearchRequest fieldValuesRequest(String index, FieldValuesGroup group) {
+        return SearchRequest.of(s -> {
+            s.size(0).index(index).aggregations(group.aggregations());
+            if (group.query != null)
+                s.query(group.query);
+            return s;
+        });
+    }
+
+    static MsearchRequest fieldValuesRequest(String index, List<FieldValuesGroup> groups) {
+        List<RequestItem> searches = new ArrayList<>();
+        for (FieldValuesGroup group : groups)
+            searches.add(RequestItem.of(r -> r
+                    .header(h -> h.index(index))
+                    .body(b -> {
+                        b.size(0).aggregations(group.aggregations());
+                        if (group.query != null)
+                            b.query(group.query);
+                        return b;
+                    })));
+        return MsearchRequest.of(m -> m.searches(searches));
+    }
+
+    static Map<String, Map<String, Long>> toFieldValues(List<FieldValuesGroup> groups, List<FieldValuesRequest> fields,
+                                                        SearchResponse<Object> response) {
+        return toFieldValues(groups, fields, List.of(response.aggregations()));
+    }
+
+    static Map<String, Map<String, Long>> toFieldValues(List<FieldValuesGroup> groups, List<FieldValuesRequest> fields,
+                                                        MsearchResponse<Object> response) {
+        List<Map<String, Aggregate>> aggregations = new ArrayList<>();
+        for (MultiSearchResponseItem<Object> item : response.responses()) {
+            if (item.isFailure())
+                throw new RuntimeException(item.failure().error().reason());
+            aggregations.add(item.result().aggregations());
+        }
+        return toFieldValues(groups, fields, aggregations);
+    }
+
+    private static Map<String, Map<String, Long>> toFieldValues(List<FieldValuesGroup> groups, List<FieldValuesRequest> fields,
+                                                                List<Map<String, Aggregate>> aggregations) {
+        // Keeps the order of the batch, whatever the order of the groups
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        fields.forEach(f -> result.put(f.getName(), Collections.emptyMap()));
+        for (int i = 0; i < groups.size(); i++) {
+            Map<String, Aggregate> aggs = aggregations.get(i);
+            groups.get(i).fields.forEach((aggName, field) ->
+                    result.put(field.getName(), toFieldValues(aggs.get(aggName))));
+        }
+        return result;
+    }
+
+    static SearchRequest compositeValuesRequest(String field, String index, Query query, int pageSize,
+                                                Map<String, String> afterKey) {
+        Aggregation valuesAgg = Aggregation.of(agg -> agg.composite(c -> {
+            c.size(pageSize).sources(List.of(Map.of(FIELD_VALUES_AGG,
+                    CompositeAggregationSource.of(s -> s.terms(t -> t.field(field))))));
+            if (afterKey != null)
+                c.after(afterKey);
+            return c;
+        }));
+        return SearchRequest.of(s -> {
+            s.size(0).index(index).aggregations(Map.of(FIELD_VALUES_AGG, valuesAgg));
+            if (query != null)
+                s.query(query);
+            return s;
+        });
+    }
+
+    static Map<String, Long> toFieldValues(SearchResponse<Object> response) {
+        return toFieldValues(response.aggregations().get(FIELD_VALUES_AGG));
+    }
+
+    private static Map<String, Long> toFieldValues(Aggregate aggregate) {
+        List<BucketAggregation> list = TermAggregateParser.parse(aggregate);
+        if (CollectionUtils.isEmpty(list))
+            return Collections.emptyMap();
+
+        return list.stream().collect(Collectors.toMap(BucketAggregation::getKey, BucketAggregation::getDocCount, (a, b) -> b, LinkedHashMap::new));
+    }
+
+    static Map<String, String> toIndexProperties(Map<String, IndexMappingRecord> mapping) {
+        if (MapUtils.isEmpty(mapping))
+            return Collections.emptyMap();
+
+        Map<String, String> result = new TreeMap<>();
+        mapping.forEach((k, v) -> IndexUtils.propertiesFromMapping(v.mappings().properties(), result, null));
+        return result;
+    }
+
+    static FieldCapsRequest fieldCapsRequest(String index) {
+        return FieldCapsRequest.of(f -> f.index(index).fields("*").ignoreUnavailable(true).allowNoIndices(true));
+    }
+
+    static Map<String, FieldCapabilities> toFieldCapabilities(FieldCapsResponse response) {
+        if (MapUtils.isEmpty(response.fields()))
+            return Collections.emptyMap();
+
+        Map<String, FieldCapabilities> result = new TreeMap<>();
+        response.fields().forEach((name, byType) -> {
+            // Metadata fields and objects are not part of the properties, same as in IndexUtils.propertiesFromMapping
+            if (name.startsWith("_") || byType.values().stream().anyMatch(c -> Boolean.TRUE.equals(c.metadataField())))
+                return;
+
+            Map<String, List<String>> indicesByType = new TreeMap<>();
+            List<String> nonSearchable = new ArrayList<>();
+            List<String> nonAggregatable = new ArrayList<>();
+            boolean searchable = true;
+            boolean aggregatable = true;
+            for (Map.Entry<String, FieldCapability> entry : byType.entrySet()) {
+                if ("object".equals(entry.getKey()))
+                    continue;
+                FieldCapability capability = entry.getValue();
+                indicesByType.put(entry.getKey(), List.copyOf(capability.indices()));
+                searchable &= capability.searchable();
+                aggregatable &= capability.aggregatable();
+                nonSearchable.addAll(capability.nonSearchableIndices());
+                nonAggregatable.addAll(capability.nonAggregatableIndices());
+            }
+            if (indicesByType.isEmpty())
+                return;
+
+            String keyword = name + ".keyword";
+            String keywordField = indicesByType.containsKey("text") && response.fields().containsKey(keyword) ? keyword : null;
+            result.put(name, new FieldCapabilities(name, indicesByType, searchable, aggregatable,
+                    List.copyOf(nonSearchable), List.copyOf(nonAggregatable), keywordField));
+        });
+        return result;
+    }
+
+    static IndicesRequest indicesRequest(String pattern, IndexSort indexSort) {
+        if (Objects.isNull(indexSort))
+            indexSort = IndexSort.unSorted();
+
+        if (StringUtils.isEmpty(pattern))
+            pattern = "*";
+
+        final String headers = "index,docs.count,health,store.size,status,creation.date.string";
+        IndicesRequest.Builder rq = new IndicesRequest.Builder();
+        rq.index(pattern);
+        rq.headers(headers);
+        rq.sort(indexSort.toString());
+        return rq.build();
+    }
+
+    static String searchKey(SearchRequest request, Class<?> responseType, JsonpMapper mapper) {
+        return "search|" + responseType.getName() + "|" + requestKey(request, mapper);
+    }
+
+    /**
+     * Field values are a different result than the search they come from, so they have keys of their own
+     */
+    static String fieldValuesKey(SearchRequest request, JsonpMapper mapper) {
+        return "fieldValues|" + requestKey(request, mapper);
+    }
+
+    private static String requestKey(SearchRequest request, JsonpMapper mapper) {
+        // Every URL parameter of the search is part of the key, sorted, and the body has the rest
+        return String.join(",", request.index())
+                + "|" + new TreeMap<>(SearchRequest._ENDPOINT.queryParameters(request))
+                + "|" + JsonpUtils.toJson(request, mapper);
+    }
+
+    static String sqlKey(SqlQueryRequest request, Class<?> responseType) {
+        return "sql|" + responseType.getName() + "|" + request.getFetchSize() + "|" + request.getQuery();
+    }
+
+    static <T> SearchResponse<T> readSearchResponse(InputStream in, Class<T> responseType, JsonpMapper mapper) {
+        return JsonpUtils.fromJson(in, SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(responseType)), mapper);
+    }
+
+    static String indicesKey(IndicesRequest request) {
+        return "indices|" + String.join(",", request.index()) + "|" + String.join(",", request.sort());
+    }
+
+    static NodesRequest nodesRequest() {
+        final String headers = "master,ip,disk.total,disk.used,disk.used_percent,disk.avail,name,ram.percent,ram.current,ram.max,cpu,heap.current,heap.percent,heap.max";
+        NodesRequest.Builder rq = new NodesRequest.Builder();
+        rq.headers(headers);
+        rq.bytes(Bytes.MegaBytes);
+        return rq.build();
+    }
+
+    static Optional<ElasticCluster> toCluster(List<NodesRecord> nodes) {
+        if (CollectionUtils.isEmpty(nodes))
+            return Optional.empty();
+        return Optional.of(new ElasticCluster(nodes));
+    }
+
+    static Map<String, Object> sqlRequestBody(SqlQueryRequest request) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", request.getQuery());
+
+        if (request.getFetchSize() != null) {
+            requestBody.put("fetch_size", request.getFetchSize());
+        }
+        return requestBody;
+    }
+
+    static Map<String, Object> sqlCursorBody(String cursor) {
+        return Map.of("cursor", cursor);
+    }
+
+    static <T> SearchSqlResponse<T> toSqlResponse(String ctx, Gson gson, Response response, Class<T> responseType)
+            throws Exception {
+        return readSqlResponse(ctx, response, new SqlResponseDecoder<>(gson, responseType));
+    }
+
+    static <T> SearchSqlResponse<T> readSqlResponse(String ctx, Response response, SqlResponseDecoder<T> decoder)
+            throws Exception {
+        return readBody(ctx, response, decoder::decode);
+    }
+
+    static <R> R readBody(String ctx, Response response, BodyReader<R> bodyReader) throws Exception {
+        try (response) {
+            if (!response.isSuccessful()) {
+                ResponseBody error = response.body();
+                throw OpenSearchException.fromResponse(ctx + ": HTTP " + response.code() + " - " + response.message(),
+                        response.code(), response.header("Retry-After"), error != null ? error.string() : null);
+            }
+
+            ResponseBody body = response.body();
+            if (body == null)
+                throw new OpenSearchException(ctx + ": Response body is null");
+
+            return bodyReader.read(body.charStream());
+        }
+    }
+
+    static byte[] readSqlBytes(String ctx, Response response) throws Exception {
+        return readBody(ctx, response, reader -> {
+            StringWriter writer = new StringWriter();
+            reader.transferTo(writer);
+            return writer.toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * @return True if the SQL response has the cursor of a next page, which is kept open in the cluster
+     */
+    static boolean hasSqlCursor(byte[] body) throws IOException {
+        try (JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("cursor".equals(in.nextName()) && in.peek() != JsonToken.NULL)
+                    return true;
+                in.skipValue();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Resolves the number of slices of a parallel scan, by default the number of primary shards of the index
+     */
+    static int scanSlices(OpenSearchClient client, SearchStreamRequest request) throws IOException {
+        if (request.getSlices() != null)
+            return request.getSlices();
+
+        IndicesRequest.Builder rq = new IndicesRequest.Builder();
+        rq.index(request.getIndex());
+        rq.headers("pri");
+        int primaries = client.cat().indices(rq.build()).valueBody().stream()
+                .map(IndicesRecord::pri)
+                .filter(StringUtils::isNumeric)
+                .mapToInt(Integer::parseInt)
+                .sum();
+        return Math.max(1, Math.min(primaries, MAX_SCAN_SLICES));
+    }
+
+    static org.opensearch.client.RestClient lowLevelClient(OpenSearchTransport transport) {
+        if (transport instanceof ResilientTransport)
+            return ((ResilientTransport) transport).restClient();
+        return ((RestClientTransport) transport).restClient();
+    }
+
+    /**
+     * Opens a Point-in-Time over the index
+     *
+     * @return The id of the Point-in-Time
+     */
+    static String openPit(String ctx, OpenSearchTransport transport, String index, String keepAlive) throws Exception {
+        Request request = new Request("POST", "/" + index + "/_search/point_in_time");
+        request.addParameter("keep_alive", keepAlive);
+        org.opensearch.client.Response response = NodeRegistry.blocking(() -> lowLevelClient(transport).performRequest(request));
+        try (Reader reader = new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8)) {
+            JsonObject body = JsonParser.parseReader(reader).getAsJsonObject();
+            if (!body.has("pit_id"))
+                throw new OpenSearchException(ctx + ": Point-in-Time id not found in the response");
+            return body.get("pit_id").getAsString();
+        }
+    }
+
+    static void closePit(String ctx, OpenSearchTransport transport, String pitId) {
+        try {
+            Request request = new Request("DELETE", "/_search/point_in_time");
+            JsonObject body = new JsonObject();
+            JsonArray ids = new JsonArray();
+            ids.add(pitId);
+            body.add("pit_id", ids);
+            request.setJsonEntity(body.toString());
+            NodeRegistry.blocking(() -> lowLevelClient(transport).performRequest(request));
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Closes a Point-in-Time without reporting errors, for the code that releases it after the hits were read.
+     * A Point-in-Time that can't be closed expires with its keep alive.
+     */
+    static void releasePit(String ctx, OpenSearchTransport transport, String pitId) {
+        try {
+            closePit(ctx, transport, pitId);
+        } catch (RuntimeException e) {
+            // Ignored, the hits were already delivered
+        }
+    }
+
+    static Request byQueryRequest(ByQueryOperation operation, Query query, String index, String script,
+                                  ByQueryOptions options, JsonpMapper mapper) {
+        Request request = new Request("POST", "/" + index + "/" + operation.endpoint());
+        request.addParameter("wait_for_completion", "false");
+        request.addParameter("slices", options.getSlices() != null ? String.valueOf(options.getSlices()) : "auto");
+        request.addParameter("requests_per_second", requestsPerSecond(options.getRequestsPerSecond()));
+        request.addParameter("refresh", String.valueOf(options.isRefresh()));
+        if (options.isProceedOnConflicts())
+            request.addParameter("conflicts", "proceed");
+        if (options.getBatchSize() != null)
+            request.addParameter("scroll_size", String.valueOf(options.getBatchSize()));
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(writer)) {
+            generator.writeStartObject();
+            if (query != null) {
+                generator.writeKey("query");
+                query.serialize(generator, mapper);
+            }
+            if (script != null) {
+                generator.writeStartObject("script");
+                generator.write("lang", "painless");
+                generator.write("source", script);
+                generator.writeEnd();
+            }
+            generator.writeEnd();
+        }
+        request.setJsonEntity(writer.toString());
+        return request;
+    }
+
+    static String requestsPerSecond(Float requestsPerSecond) {
+        return requestsPerSecond != null ? String.valueOf(requestsPerSecond) : "-1";
+    }
+
+    static JsonObject performJson(OpenSearchTransport transport, Request request) throws IOException {
+        org.opensearch.client.Response response = NodeRegistry.blocking(() -> lowLevelClient(transport).performRequest(request));
+        try (Reader reader = new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
+
+    static TaskProgress toTaskProgress(String taskId, JsonObject body) {
+        TaskProgress progress = new TaskProgress();
+        progress.setTaskId(taskId);
+        progress.setCompleted(body.has("completed") && body.get("completed").getAsBoolean());
+
+        JsonObject task = body.has("task") ? body.getAsJsonObject("task") : new JsonObject();
+        progress.setAction(jsonString(task, "action"));
+        progress.setDescription(jsonString(task, "description"));
+        progress.setRunningTimeNanos(jsonLong(task, "running_time_in_nanos"));
+
+        // The final response has the definitive counters, the status only what was done so far
+        JsonObject counters = body.has("response") && body.get("response").isJsonObject()
+                ? body.getAsJsonObject("response")
+                : task.has("status") ? task.getAsJsonObject("status") : new JsonObject();
+        progress.setTotal(jsonLong(counters, "total"));
+        progress.setCreated(jsonLong(counters, "created"));
+        progress.setUpdated(jsonLong(counters, "updated"));
+        progress.setDeleted(jsonLong(counters, "deleted"));
+        progress.setBatches(jsonLong(counters, "batches"));
+        progress.setVersionConflicts(jsonLong(counters, "version_conflicts"));
+        progress.setNoops(jsonLong(counters, "noops"));
+        progress.setThrottledMillis(jsonLong(counters, "throttled_millis"));
+        progress.setRequestsPerSecond(counters.has("requests_per_second")
+                ? counters.get("requests_per_second").getAsFloat() : -1F);
+        progress.setCancelled(counters.has("canceled"));
+        if (counters.has("failures") && counters.get("failures").isJsonArray())
+            progress.setFailures(counters.getAsJsonArray("failures").size());
+
+        if (body.has("error") && body.get("error").isJsonObject()) {
+            JsonObject error = body.getAsJsonObject("error");
+            progress.setError(error.has("reason") ? error.get("reason").getAsString() : error.toString());
+        }
+        return progress;
+    }
+
+    private static String jsonString(JsonObject object, String member) {
+        return object.has(member) && !object.get(member).isJsonNull() ? object.get(member).getAsString() : null;
+    }
+
+    private static long jsonLong(JsonObject object, String member) {
+        return object.has(member) && object.get(member).isJsonPrimitive() ? object.get(member).getAsLong() : 0L;
+    }
+
+    static final class FieldValuesGroup {
+        private final Query query;
+        private final Map<String, FieldValuesRequest> fields = new LinkedHashMap<>();
+
+        private FieldValuesGroup(Query query) {
+            this.query = query;
+        }
+
+        private Map<String, Aggregation> aggregations() {
+            Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+            fields.forEach((name, f) -> aggregations.put(name,
+                    fieldValuesAggregation(f.getField(), f.getTop(), f.getTermOrder(), f.getSortOrder())));
+            return aggregations;
+        }
+    }
+
+    interface BodyReader<R> {
+        R read(Reader reader) throws IOException;
+    }
+}
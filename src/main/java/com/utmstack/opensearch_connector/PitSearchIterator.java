@@ -0,0 +1,150 @@
+package com.utmstack.opensearch_connector;
+
+import com.utmstack.opensearch_connector.types.SearchStreamRequest;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
+import org.opensearch.client.opensearch._types.SlicedScroll;
+import org.opensearch.client.opensearch._types.SortOptions;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.search.Hit;
+import org.opensearch.client.opensearch.core.search.Pit;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Iterates over the hits of a Point-in-Time, requesting every page with the {@code search_after}
+ * values of the last hit of the previous page. When prefetch is enabled the next page is requested
+ * as soon as the current one arrives.
+ * <br>
+ * The iterator doesn't own the Point-in-Time, the code that opened it is notified through the
+ * {@code onClose} action, when the iterator is closed or when the last page is consumed. The action
+ * must not throw, a failed release would otherwise surface after every hit was delivered.
+ */
+class PitSearchIterator<T> implements Iterator<Hit<T>>, Closeable {
+    private static final String CLASSNAME = "PitSearchIterator";
+    private final OpenSearchAsyncClient client;
+    private final SearchStreamRequest request;
+    private final String pitId;
+    private final SlicedScroll slice;
+    private final Class<T> responseType;
+    private final List<SortOptions> sort;
+    private final Runnable onClose;
+
+    private Iterator<Hit<T>> page = Collections.emptyIterator();
+    private CompletableFuture<SearchResponse<T>> nextPage;
+    private List<String> searchAfter;
+    private boolean exhausted;
+    private boolean closed;
+
+    PitSearchIterator(OpenSearchAsyncClient client, SearchStreamRequest request, String pitId, SlicedScroll slice,
+                      Class<T> responseType, Runnable onClose) {
+        this.client = client;
+        this.request = request;
+        this.pitId = pitId;
+        this.slice = slice;
+        this.responseType = responseType;
+        this.onClose = onClose;
+        this.sort = withTiebreaker(request.getSort(), request.getTiebreaker());
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (closed)
+                return false;
+            if (exhausted) {
+                // Nothing else to read, release the Point-in-Time without waiting for the stream to be closed
+                close();
+                return false;
+            }
+            accept(fetchNextPage());
+        }
+        return true;
+    }
+
+    @Override
+    public Hit<T> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return page.next();
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        page = Collections.emptyIterator();
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+        if (onClose != null)
+            onClose.run();
+    }
+
+    private void accept(SearchResponse<T> response) {
+        List<Hit<T>> hits = response.hits().hits();
+        if (hits.size() < request.getPageSize())
+            exhausted = true;
+        if (!hits.isEmpty())
+            searchAfter = hits.get(hits.size() - 1).sort();
+        page = hits.iterator();
+
+        if (!exhausted && request.isPrefetch())
+            nextPage = requestPage();
+    }
+
+    private SearchResponse<T> fetchNextPage() {
+        final String ctx = CLASSNAME + ".fetchNextPage";
+        try {
+            CompletableFuture<SearchResponse<T>> pending = nextPage != null ? nextPage : requestPage();
+            nextPage = null;
+            return pending.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException(ctx + ": " + cause.getLocalizedMessage());
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private CompletableFuture<SearchResponse<T>> requestPage() {
+        try {
+            return client.search(buildRequest(searchAfter), responseType);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private SearchRequest buildRequest(List<String> after) {
+        return SearchRequest.of(s -> {
+            s.pit(new Pit.Builder().id(pitId).keepAlive(request.getKeepAlive()).build())
+                    .size(request.getPageSize())
+                    .sort(sort)
+                    .trackTotalHits(t -> t.enabled(false));
+            if (request.getQuery() != null)
+                s.query(request.getQuery());
+            if (request.getSource() != null)
+                s.source(request.getSource());
+            if (slice != null)
+                s.slice(slice);
+            if (after != null)
+                s.searchAfter(after);
+            return s;
+        });
+    }
+
+    private static List<SortOptions> withTiebreaker(List<SortOptions> sort, String tiebreaker) {
+        boolean present = sort.stream().anyMatch(so -> so.isField() && tiebreaker.equals(so.field().field()));
+        if (present)
+            return sort;
+        List<SortOptions> result = new ArrayList<>(sort);
+        result.add(SortOptions.of(so -> so.field(f -> f.field(tiebreaker).order(SortOrder.Asc))));
+        return result;
+    }
+}
@@ -0,0 +1,275 @@
+package com.utmstack.opensearch_connector;
+
+import com.utmstack.opensearch_connector.clients.Retrier;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.util.JsonpUtils;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.ResponseListener;
+import org.opensearch.client.RestClient;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch._types.ExpandWildcard;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the searches that arrive within a short window and sends them to the cluster as a single
+ * {@code _msearch}. A batch is sent when the window of its first search expires or when it reaches the
+ * maximum size, whatever happens first, so no search waits longer than the window before it's sent.
+ * <br>
+ * Every search keeps its own future, completed with its own response or with its own error.
+ * Only searches whose URL parameters all fit in the {@code _msearch} header are accepted, others such as
+ * scroll searches or searches with {@code q}, {@code batched_reduce_size} or {@code pre_filter_shard_size}
+ * must be sent on their own.
+ */
+class SearchCoalescer implements Closeable {
+    private static final String CLASSNAME = "SearchCoalescer";
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+    // URL parameters of a search that the header of an _msearch item can carry
+    private static final Set<String> HEADER_PARAMETERS = Set.of("typed_keys", "routing", "preference",
+            "search_type", "request_cache", "allow_partial_search_results", "ccs_minimize_roundtrips",
+            "ignore_unavailable", "allow_no_indices", "expand_wildcards", "ignore_throttled");
+    private final RestClient restClient;
+    private final Retrier retrier;
+    private final JsonpMapper mapper;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<PendingSearch<?>> batch = new ArrayList<>();
+    private boolean closed;
+
+    SearchCoalescer(RestClient restClient, Retrier retrier, JsonpMapper mapper, Duration window, int maxBatchSize) {
+        final String ctx = CLASSNAME + ".SearchCoalescer";
+        if (window == null || window.isNegative() || window.isZero())
+            throw new RuntimeException(ctx + ": The window must be greater than 0");
+        if (maxBatchSize < 2)
+            throw new RuntimeException(ctx + ": The maximum batch size must be greater than 1");
+        this.restClient = restClient;
+        this.retrier = retrier;
+        this.mapper = mapper;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "opensearch-search-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return True if the search can be sent through {@code _msearch} without losing any of its parameters
+     */
+    static boolean accepts(SearchRequest request) {
+        return HEADER_PARAMETERS.containsAll(SearchRequest._ENDPOINT.queryParameters(request).keySet());
+    }
+
+    /**
+     * Adds a search to the current batch
+     *
+     * @return A future completed with the response of this search
+     */
+    <T> CompletableFuture<SearchResponse<T>> submit(SearchRequest request, Class<T> responseType) {
+        final String ctx = CLASSNAME + ".submit";
+        PendingSearch<T> pending = new PendingSearch<>(request, responseType);
+        List<PendingSearch<?>> full = null;
+        synchronized (lock) {
+            if (closed)
+                return CompletableFuture.failedFuture(new OpenSearchException(ctx + ": The coalescer is closed"));
+            batch.add(pending);
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                batch = new ArrayList<>();
+            } else if (batch.size() == 1) {
+                // The first search of a batch opens its window
+                List<PendingSearch<?>> opened = batch;
+                scheduler.schedule(() -> flush(opened), windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null)
+            send(full);
+        return pending.future;
+    }
+
+    /**
+     * Sends the pending searches and stops accepting new ones
+     */
+    @Override
+    public void close() {
+        List<PendingSearch<?>> remaining;
+        synchronized (lock) {
+            closed = true;
+            remaining = batch;
+            batch = new ArrayList<>();
+        }
+        if (!remaining.isEmpty())
+            send(remaining);
+        scheduler.shutdownNow();
+    }
+
+    private void flush(List<PendingSearch<?>> opened) {
+        synchronized (lock) {
+            // The batch was already sent because it was full
+            if (batch != opened)
+                return;
+            batch = new ArrayList<>();
+        }
+        send(opened);
+    }
+
+    private void send(List<PendingSearch<?>> searches) {
+        final String ctx = CLASSNAME + ".send";
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (PendingSearch<?> search : searches) {
+                writeHeader(search.request, body);
+                body.write(JsonpUtils.toJson(search.request, mapper).getBytes(StandardCharsets.UTF_8));
+                body.write('\n');
+            }
+
+            Request request = new Request("POST", "/_msearch");
+            request.addParameter("typed_keys", "true");
+            request.setEntity(new ByteArrayEntity(body.toByteArray(), NDJSON));
+            retrier.executeAsync(request.getMethod(), request.getEndpoint(), () -> perform(request)).whenComplete((response, error) -> {
+                if (error == null)
+                    complete(searches, response);
+                else
+                    fail(searches, OpenSearchException.of(ctx, error));
+            });
+        } catch (Exception e) {
+            fail(searches, OpenSearchException.of(ctx, e));
+        }
+    }
+
+    private CompletableFuture<Response> perform(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        restClient.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                future.completeExceptionally(exception);
+            }
+        });
+        return future;
+    }
+
+    private void writeHeader(SearchRequest search, ByteArrayOutputStream body) {
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(body)) {
+            generator.writeStartObject();
+            if (!search.index().isEmpty())
+                generator.write("index", String.join(",", search.index()));
+            if (search.routing() != null)
+                generator.write("routing", search.routing());
+            if (search.preference() != null)
+                generator.write("preference", search.preference());
+            if (search.requestCache() != null)
+                generator.write("request_cache", search.requestCache());
+            if (search.searchType() != null)
+                generator.write("search_type", search.searchType().jsonValue());
+            if (search.allowPartialSearchResults() != null)
+                generator.write("allow_partial_search_results", search.allowPartialSearchResults());
+            if (search.ccsMinimizeRoundtrips() != null)
+                generator.write("ccs_minimize_roundtrips", search.ccsMinimizeRoundtrips());
+            if (search.ignoreUnavailable() != null)
+                generator.write("ignore_unavailable", search.ignoreUnavailable());
+            if (search.allowNoIndices() != null)
+                generator.write("allow_no_indices", search.allowNoIndices());
+            if (!search.expandWildcards().isEmpty())
+                generator.write("expand_wildcards", search.expandWildcards().stream()
+                        .map(ExpandWildcard::jsonValue)
+                        .collect(Collectors.joining(",")));
+            if (search.ignoreThrottled() != null)
+                generator.write("ignore_throttled", search.ignoreThrottled());
+            generator.writeEnd();
+        }
+        body.write('\n');
+    }
+
+    private void complete(List<PendingSearch<?>> searches, Response response) {
+        final String ctx = CLASSNAME + ".complete";
+        int next = 0;
+        try (InputStream in = response.getEntity().getContent();
+             JsonParser parser = mapper.jsonProvider().createParser(in)) {
+            expect(parser, JsonParser.Event.START_OBJECT);
+            while (parser.next() == JsonParser.Event.KEY_NAME) {
+                if (!"responses".equals(parser.getString())) {
+                    skipValue(parser);
+                    continue;
+                }
+                expect(parser, JsonParser.Event.START_ARRAY);
+                // Every item is decoded with the document type of its own search
+                for (; next < searches.size(); next++)
+                    searches.get(next).accept(parser, mapper);
+                expect(parser, JsonParser.Event.END_ARRAY);
+            }
+        } catch (Exception e) {
+            fail(searches.subList(next, searches.size()), new OpenSearchException(ctx + ": " + e.getLocalizedMessage()));
+            return;
+        }
+        if (next < searches.size())
+            fail(searches.subList(next, searches.size()), new OpenSearchException(ctx + ": Response not found in the _msearch result"));
+    }
+
+    private static void fail(List<PendingSearch<?>> searches, OpenSearchException error) {
+        searches.forEach(s -> s.future.completeExceptionally(error));
+    }
+
+    private static void expect(JsonParser parser, JsonParser.Event expected) {
+        JsonParser.Event event = parser.next();
+        if (event != expected)
+            throw new IllegalStateException("Expected " + expected + " but found " + event);
+    }
+
+    private static void skipValue(JsonParser parser) {
+        JsonParser.Event event = parser.next();
+        if (event == JsonParser.Event.START_OBJECT)
+            parser.skipObject();
+        else if (event == JsonParser.Event.START_ARRAY)
+            parser.skipArray();
+    }
+
+    private static class PendingSearch<T> {
+        private final SearchRequest request;
+        private final Class<T> responseType;
+        private final CompletableFuture<SearchResponse<T>> future = new CompletableFuture<>();
+
+        PendingSearch(SearchRequest request, Class<T> responseType) {
+            this.request = request;
+            this.responseType = responseType;
+        }
+
+        void accept(JsonParser parser, JsonpMapper mapper) {
+            final String ctx = CLASSNAME + ".accept";
+            MultiSearchResponseItem<T> item = MultiSearchResponseItem
+                    .createMultiSearchResponseItemDeserializer(JsonpDeserializer.of(responseType))
+                    .deserialize(parser, mapper);
+            if (item.isFailure())
+                future.completeExceptionally(new OpenSearchException(ctx + ": " + item.failure().error().reason(),
+                        item.failure().status(), item.failure().error().type(), null));
+            else
+                future.complete(item.result());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.utmstack.opensearch_connector;
+
+import com.utmstack.opensearch_connector.types.SearchStreamRequest;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
+import org.opensearch.client.opensearch._types.SlicedScroll;
+import org.opensearch.client.opensearch.core.search.Hit;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits the read of a Point-in-Time into a range of slices. Every split hands half of the pending
+ * slices to a new spliterator, so a parallel stream reads as many slices at the same time as threads
+ * it has. Inside a spliterator the slices are read one after the other.
+ */
+class SliceSpliterator<T> implements Spliterator<Hit<T>> {
+    private final OpenSearchAsyncClient client;
+    private final SearchStreamRequest request;
+    private final String pitId;
+    private final Class<T> responseType;
+    private final int max;
+    private int slice;
+    private final int end;
+    private PitSearchIterator<T> current;
+
+    SliceSpliterator(OpenSearchAsyncClient client, SearchStreamRequest request, String pitId, Class<T> responseType,
+                     int from, int to, int max) {
+        this.client = client;
+        this.request = request;
+        this.pitId = pitId;
+        this.responseType = responseType;
+        this.slice = from;
+        this.end = to;
+        this.max = max;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Hit<T>> action) {
+        while (true) {
+            if (current == null) {
+                if (slice >= end)
+                    return false;
+                current = newSliceIterator(slice++);
+            }
+            if (current.hasNext()) {
+                action.accept(current.next());
+                return true;
+            }
+            current = null;
+        }
+    }
+
+    @Override
+    public Spliterator<Hit<T>> trySplit() {
+        // Only slices that haven't been started can be handed over
+        int pending = end - slice;
+        if (pending < 2)
+            return null;
+        int middle = slice + pending / 2;
+        SliceSpliterator<T> prefix = new SliceSpliterator<>(client, request, pitId, responseType, slice, middle, max);
+        slice = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+
+    /**
+     * Creates an iterator over a single slice of the Point-in-Time
+     */
+    PitSearchIterator<T> newSliceIterator(int id) {
+        SlicedScroll sliced = max > 1 ? SlicedScroll.of(s -> s.id(id).max(max)) : null;
+        return new PitSearchIterator<>(client, request, pitId, sliced, responseType, null);
+    }
+}
@@ -0,0 +1,133 @@
+package com.utmstack.opensearch_connector;
+
+import com.utmstack.opensearch_connector.clients.RestClient;
+import com.utmstack.opensearch_connector.types.SearchSqlResponse;
+import com.utmstack.opensearch_connector.util.SqlResponseDecoder;
+import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Iterates over all the pages of a {@code _plugins/_sql} query following the {@code cursor}
+ * returned with every page. Pages are fetched lazily, or one page ahead when prefetch is enabled.
+ * <br>
+ * Closing the iterator before the last page releases the cursor in the cluster.
+ */
+class SqlCursorIterator<T> implements Iterator<T>, Closeable {
+    private static final String CLASSNAME = "SqlCursorIterator";
+    private final RestClient restClient;
+    private final SqlResponseDecoder<T> decoder;
+    private final boolean prefetch;
+
+    private Iterator<T> page;
+    private String cursor;
+    private CompletableFuture<SearchSqlResponse<T>> nextPage;
+    private boolean closed;
+
+    SqlCursorIterator(RestClient restClient, SqlResponseDecoder<T> decoder, SearchSqlResponse<T> firstPage,
+                      boolean prefetch) {
+        this.restClient = restClient;
+        this.decoder = decoder;
+        this.prefetch = prefetch;
+        accept(firstPage);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (closed || (nextPage == null && StringUtils.isEmpty(cursor)))
+                return false;
+            accept(fetchNextPage());
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return page.next();
+    }
+
+    /**
+     * Releases the cursor if there are pages left, it is safe to call it more than once
+     */
+    @Override
+    public void close() {
+        final String ctx = CLASSNAME + ".close";
+        if (closed)
+            return;
+        closed = true;
+        page = Collections.emptyIterator();
+
+        if (nextPage != null) {
+            // The pending page carries the cursor to release, close it when it arrives
+            nextPage.thenAccept(p -> {
+                if (StringUtils.isNotEmpty(p.getCursor()))
+                    restClient.postAsync(OpenSearchRequests.SQL_CLOSE_ENDPOINT, null,
+                            OpenSearchRequests.sqlCursorBody(p.getCursor())).thenAccept(Response::close);
+            });
+            nextPage = null;
+        } else if (StringUtils.isNotEmpty(cursor)) {
+            try {
+                closeCursor(cursor);
+            } catch (Exception e) {
+                throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+            } finally {
+                cursor = null;
+            }
+        }
+    }
+
+    private void accept(SearchSqlResponse<T> response) {
+        page = response.getData().iterator();
+        cursor = response.getCursor();
+        if (prefetch && StringUtils.isNotEmpty(cursor)) {
+            nextPage = requestPage(cursor);
+            cursor = null;
+        }
+    }
+
+    private SearchSqlResponse<T> fetchNextPage() {
+        final String ctx = CLASSNAME + ".fetchNextPage";
+        try {
+            if (nextPage != null) {
+                CompletableFuture<SearchSqlResponse<T>> pending = nextPage;
+                nextPage = null;
+                return pending.join();
+            }
+            String current = cursor;
+            cursor = null;
+            return OpenSearchRequests.readSqlResponse(ctx, restClient.post(OpenSearchRequests.SQL_ENDPOINT,
+                    null, OpenSearchRequests.sqlCursorBody(current)), decoder);
+        } catch (CompletionException e) {
+            throw new RuntimeException(ctx + ": " + e.getCause().getLocalizedMessage());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private CompletableFuture<SearchSqlResponse<T>> requestPage(String cursor) {
+        final String ctx = CLASSNAME + ".requestPage";
+        return restClient.postAsync(OpenSearchRequests.SQL_ENDPOINT, null, OpenSearchRequests.sqlCursorBody(cursor))
+                .thenApply(response -> {
+                    try {
+                        return OpenSearchRequests.readSqlResponse(ctx, response, decoder);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private void closeCursor(String cursor) {
+        restClient.post(OpenSearchRequests.SQL_CLOSE_ENDPOINT, null, OpenSearchRequests.sqlCursorBody(cursor)).close();
+    }
+}
@@ -0,0 +1,438 @@
+package com.utmstack.opensearch_connector.bulk;
+
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.ResponseException;
+import org.opensearch.client.ResponseListener;
+import org.opensearch.client.RestClient;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers documents and sends them to the {@code _bulk} API in batches.
+ * <br>
+ * A batch is sent when it reaches the maximum number of documents, the maximum size in bytes
+ * or when the flush interval expires, whatever happens first. Up to {@code concurrentRequests}
+ * bulk requests can be in flight at the same time, when all of them are busy the callers of
+ * {@link #add(String, String, Object)} are blocked until one completes.
+ * <br>
+ * When a bulk request partially fails, only the items rejected with a retryable status
+ * (429 or 503) are sent again, with exponential backoff.
+ * <br>
+ * Instances must be closed to flush the remaining documents and release the flush scheduler.
+ */
+public class BulkIngester implements Closeable {
+    private static final String CLASSNAME = "BulkIngester";
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 503);
+    private static final AtomicLong INGESTER_IDS = new AtomicLong();
+    private static final long RESCHEDULE_MILLIS = 10;
+
+    private final RestClient restClient;
+    private final JsonpMapper mapper;
+    private final int maxActions;
+    private final long maxBytes;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final Refresh refresh;
+    private final BulkListener listener;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong executionIds = new AtomicLong();
+
+    private final Object lock = new Object();
+    private List<BulkItem> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private int pendingBatches;
+    private boolean closed;
+
+    private BulkIngester(Builder builder) {
+        this.restClient = builder.restClient;
+        this.mapper = builder.mapper;
+        this.maxActions = builder.maxActions;
+        this.maxBytes = builder.maxBytes;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMillis = builder.retryBackoff.toMillis();
+        this.refresh = builder.refresh;
+        this.listener = builder.listener;
+        this.inFlight = new Semaphore(builder.concurrentRequests);
+
+        final String threadName = "bulk-ingester-" + INGESTER_IDS.incrementAndGet();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (builder.flushInterval != null && !builder.flushInterval.isZero()) {
+            long interval = builder.flushInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds a document to be indexed with an id generated by OpenSearch.
+     *
+     * @param index    The name of the index where the document will be indexed.
+     * @param document The document to be indexed.
+     * @throws OpenSearchException If the document can't be serialized or the ingester is closed
+     */
+    public void add(String index, Object document) throws OpenSearchException {
+        add(index, null, document);
+    }
+
+    /**
+     * Adds a document to be indexed. This method blocks when a batch is full
+     * and all the concurrent bulk requests are in flight.
+     *
+     * @param index    The name of the index where the document will be indexed.
+     * @param id       The id of the document, use null to let OpenSearch generate it.
+     * @param document The document to be indexed.
+     * @throws OpenSearchException If the document can't be serialized or the ingester is closed
+     */
+    public void add(String index, String id, Object document) throws OpenSearchException {
+        final String ctx = CLASSNAME + ".add";
+        BulkItem item;
+        try {
+            item = new BulkItem(serialize(index, id, document));
+        } catch (Exception e) {
+            throw OpenSearchException.of(ctx, e);
+        }
+
+        List<BulkItem> batch = null;
+        synchronized (lock) {
+            if (closed)
+                throw new OpenSearchException(ctx + ": The ingester is already closed");
+            buffer.add(item);
+            bufferBytes += item.payload.length;
+            if (buffer.size() >= maxActions || bufferBytes >= maxBytes)
+                batch = drain();
+        }
+
+        if (batch != null)
+            send(batch, 0);
+    }
+
+    /**
+     * Sends the buffered documents right away, without waiting for the batch to be full.
+     */
+    public void flush() {
+        List<BulkItem> batch;
+        synchronized (lock) {
+            if (buffer.isEmpty())
+                return;
+            batch = drain();
+        }
+        send(batch, 0);
+    }
+
+    private void scheduledFlush() {
+        List<BulkItem> batch;
+        synchronized (lock) {
+            if (buffer.isEmpty())
+                return;
+            batch = drain();
+        }
+        sendScheduled(batch, 0);
+    }
+
+    /**
+     * Flushes the buffered documents and waits until every bulk request, including its retries, completes.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        flush();
+        try {
+            synchronized (lock) {
+                while (pendingBatches > 0)
+                    lock.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private List<BulkItem> drain() {
+        List<BulkItem> batch = buffer;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+        pendingBatches++;
+        return batch;
+    }
+
+    private void complete() {
+        synchronized (lock) {
+            pendingBatches--;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends a batch from the thread of a caller, waiting for a free request when all of them are in flight
+     */
+    private void send(List<BulkItem> batch, int attempt) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            notifyListener(() -> listener.onBulkFailure(executionIds.incrementAndGet(), batch.size(), e));
+            complete();
+            return;
+        }
+        execute(batch, attempt);
+    }
+
+    /**
+     * Sends a batch from the scheduler, which is never blocked: when all the requests are in flight the
+     * batch is sent again a bit later, so the flushes and retries behind it keep running
+     */
+    private void sendScheduled(List<BulkItem> batch, int attempt) {
+        if (!inFlight.tryAcquire()) {
+            scheduler.schedule(() -> sendScheduled(batch, attempt), RESCHEDULE_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        execute(batch, attempt);
+    }
+
+    /**
+     * Sends a batch holding one of the in flight requests, released when the request completes
+     */
+    private void execute(List<BulkItem> batch, int attempt) {
+        final long executionId = executionIds.incrementAndGet();
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (BulkItem item : batch)
+                body.write(item.payload);
+
+            Request request = new Request("POST", "/_bulk");
+            request.addParameter("refresh", refresh.jsonValue());
+            request.setEntity(new ByteArrayEntity(body.toByteArray(), NDJSON));
+
+            listener.beforeBulk(executionId, batch.size(), body.size());
+            restClient.performRequestAsync(request, new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    onBulkResponse(executionId, batch, attempt, response);
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    onBulkFailure(executionId, batch, attempt, exception);
+                }
+            });
+        } catch (Exception e) {
+            onBulkFailure(executionId, batch, attempt, e);
+        }
+    }
+
+    private void onBulkResponse(long executionId, List<BulkItem> batch, int attempt, Response response) {
+        BulkResponse bulkResponse;
+        try (InputStream in = response.getEntity().getContent();
+             JsonParser parser = mapper.jsonProvider().createParser(in)) {
+            bulkResponse = BulkResponse._DESERIALIZER.deserialize(parser, mapper);
+        } catch (Exception e) {
+            onBulkFailure(executionId, batch, attempt, e);
+            return;
+        }
+
+        inFlight.release();
+        List<BulkItem> retry = new ArrayList<>();
+        int failed = 0;
+        if (bulkResponse.errors()) {
+            List<BulkResponseItem> items = bulkResponse.items();
+            for (int i = 0; i < items.size() && i < batch.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (Objects.isNull(item.error()))
+                    continue;
+                if (attempt < maxRetries && RETRYABLE_STATUS.contains(item.status())) {
+                    retry.add(batch.get(i));
+                } else {
+                    failed++;
+                    notifyListener(() -> listener.onItemFailure(executionId, item));
+                }
+            }
+        }
+
+        final int failedItems = failed;
+        notifyListener(() -> listener.afterBulk(executionId, batch.size(), failedItems, bulkResponse.took()));
+        if (retry.isEmpty())
+            complete();
+        else
+            retry(retry, attempt + 1);
+    }
+
+    private void onBulkFailure(long executionId, List<BulkItem> batch, int attempt, Exception exception) {
+        inFlight.release();
+        boolean retryable = exception instanceof ResponseException
+                && RETRYABLE_STATUS.contains(((ResponseException) exception).getResponse().getStatusLine().getStatusCode());
+        if (retryable && attempt < maxRetries) {
+            retry(batch, attempt + 1);
+        } else {
+            notifyListener(() -> listener.onBulkFailure(executionId, batch.size(), exception));
+            complete();
+        }
+    }
+
+    /**
+     * Runs a callback of the listener. Its errors are dropped: thrown from a response they would reach the
+     * low-level client, which reports the request as failed too, so it would be released and completed twice.
+     */
+    private static void notifyListener(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            // Ignored, the listener can't change the outcome of the request
+        }
+    }
+
+    private void retry(List<BulkItem> batch, int attempt) {
+        long delay = retryBackoffMillis << Math.min(attempt - 1, 16);
+        delay += ThreadLocalRandom.current().nextLong(retryBackoffMillis + 1);
+        scheduler.schedule(() -> sendScheduled(batch, attempt), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private byte[] serialize(String index, String id, Object document) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeKey("index");
+            generator.writeStartObject();
+            generator.write("_index", index);
+            if (id != null)
+                generator.write("_id", id);
+            generator.writeEnd();
+            generator.writeEnd();
+        }
+        out.write('\n');
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(out)) {
+            mapper.serialize(document, generator);
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    private static class BulkItem {
+        private final byte[] payload;
+
+        private BulkItem(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    public static Builder builder(RestClient restClient, JsonpMapper mapper) {
+        return new Builder(restClient, mapper);
+    }
+
+    public static class Builder {
+        private final RestClient restClient;
+        private final JsonpMapper mapper;
+        private int maxActions = 1000;
+        private long maxBytes = 5 * 1024 * 1024;
+        private Duration flushInterval = Duration.ofSeconds(5);
+        private int concurrentRequests = 2;
+        private Refresh refresh = Refresh.False;
+        private int maxRetries = 3;
+        private Duration retryBackoff = Duration.ofMillis(200);
+        private BulkListener listener = new BulkListener() {
+        };
+
+        private Builder(RestClient restClient, JsonpMapper mapper) {
+            this.restClient = restClient;
+            this.mapper = mapper;
+        }
+
+        /**
+         * @param maxActions Maximum number of documents per bulk request (default 1000)
+         */
+        public Builder withMaxActions(int maxActions) {
+            this.maxActions = maxActions;
+            return this;
+        }
+
+        /**
+         * @param maxBytes Maximum size in bytes of a bulk request body (default 5MB)
+         */
+        public Builder withMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @param flushInterval Maximum time a document waits in the buffer (default 5s), use null to disable
+         */
+        public Builder withFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * @param concurrentRequests Maximum number of bulk requests in flight at the same time (default 2)
+         */
+        public Builder withConcurrentRequests(int concurrentRequests) {
+            this.concurrentRequests = concurrentRequests;
+            return this;
+        }
+
+        /**
+         * @param refresh The refresh policy of every bulk request (default {@link Refresh#False})
+         */
+        public Builder withRefresh(Refresh refresh) {
+            this.refresh = refresh;
+            return this;
+        }
+
+        /**
+         * @param maxRetries Maximum number of times a rejected document is sent again (default 3)
+         * @param backoff    Initial wait before a retry, doubled on every attempt (default 200ms)
+         */
+        public Builder withRetries(int maxRetries, Duration backoff) {
+            this.maxRetries = maxRetries;
+            this.retryBackoff = backoff;
+            return this;
+        }
+
+        public Builder withListener(BulkListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public BulkIngester build() {
+            if (maxActions < 1 || maxBytes < 1 || concurrentRequests < 1 || maxRetries < 0)
+                throw new IllegalArgumentException("Bulk limits must be positive numbers");
+            Objects.requireNonNull(refresh, "Refresh policy is required");
+            Objects.requireNonNull(retryBackoff, "Retry backoff is required");
+            Objects.requireNonNull(listener, "Listener is required");
+            return new BulkIngester(this);
+        }
+    }
+}
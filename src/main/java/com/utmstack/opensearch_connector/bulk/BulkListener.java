@@ -0,0 +1,54 @@
+package com.utmstack.opensearch_connector.bulk;
+
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+
+/**
+ * Callbacks fired by a {@link BulkIngester} around each {@code _bulk} request it sends.
+ * All methods have empty default implementations, override only what you need.
+ * <br>
+ * Callbacks are invoked from the http client I/O threads or from the ingester scheduler,
+ * so implementations must be thread safe and must not block.
+ */
+public interface BulkListener {
+
+    /**
+     * Called right before a bulk request is sent.
+     *
+     * @param executionId Unique id of the bulk execution
+     * @param actions     Number of documents in the request
+     * @param bytes       Size in bytes of the request body
+     */
+    default void beforeBulk(long executionId, int actions, long bytes) {
+    }
+
+    /**
+     * Called when a bulk request completes, even if some of its items failed.
+     *
+     * @param executionId Unique id of the bulk execution
+     * @param actions     Number of documents in the request
+     * @param failed      Number of documents that failed and won't be retried anymore
+     * @param tookMillis  Time reported by the cluster to process the request
+     */
+    default void afterBulk(long executionId, int actions, int failed, long tookMillis) {
+    }
+
+    /**
+     * Called for every document that failed definitively, either because the failure
+     * is not retryable or because the maximum number of retries was reached.
+     *
+     * @param executionId Unique id of the bulk execution
+     * @param item        The response item with the failure details
+     */
+    default void onItemFailure(long executionId, BulkResponseItem item) {
+    }
+
+    /**
+     * Called when the whole bulk request failed and won't be retried anymore.
+     *
+     * @param executionId Unique id of the bulk execution
+     * @param actions     Number of documents lost in the request
+     * @param failure     The cause of the failure
+     */
+    default void onBulkFailure(long executionId, int actions, Throwable failure) {
+    }
+}
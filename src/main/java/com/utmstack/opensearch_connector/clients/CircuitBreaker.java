@@ -0,0 +1,250 @@
+package com.utmstack.opensearch_connector.clients;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker of a node. It watches the last responses of the node and, when too many of them are
+ * rejections (429 or 503), it opens: the node gets no requests until the open time expires. Then it's half
+ * open and lets through a single probe request (or the configured number of probes), the next response
+ * decides: a success closes it, a rejection opens it again for twice the time, up to a maximum. A probe that
+ * gets no response within the open time is replaced by a new one. A {@code Retry-After} sent by the node
+ * opens it at once for the asked time.
+ * <br>
+ * Every change of state starts a new generation. The responses are recorded with the generation the breaker
+ * had when their request was sent, so late responses to requests sent before it opened don't decide it.
+ */
+public class CircuitBreaker {
+    private static final String CLASSNAME = "CircuitBreaker";
+
+    public enum State {
+        Closed,
+        Open,
+        HalfOpen
+    }
+
+    private final Settings settings;
+    private final boolean[] window;
+    private int next;
+    private int calls;
+    private int rejections;
+    private State state = State.Closed;
+    private long openUntil;
+    private long openNanos;
+    private int probes;
+    private long probeUntil;
+    private long generation;
+
+    CircuitBreaker(Settings settings) {
+        this.settings = settings;
+        this.window = new boolean[settings.windowSize];
+        this.openNanos = settings.openDuration.toNanos();
+    }
+
+    /**
+     * @return True if the node can get any request now, false while it's open or half open
+     */
+    public synchronized boolean allowsRequests(long now) {
+        expire(now);
+        return state == State.Closed;
+    }
+
+    /**
+     * Takes the place of a probe request when the breaker is half open. The caller must send the request
+     * to the node, its response closes or opens the breaker.
+     *
+     * @return True if the request can be sent to the node as a probe
+     */
+    public synchronized boolean tryProbe(long now) {
+        expire(now);
+        if (state != State.HalfOpen)
+            return false;
+        // Probes that got no response in time are forgotten
+        if (probes > 0 && now - probeUntil >= 0)
+            probes = 0;
+        if (probes >= settings.halfOpenProbes)
+            return false;
+        if (probes++ == 0)
+            probeUntil = now + openNanos;
+        return true;
+    }
+
+    /**
+     * @return Nanoseconds until the breaker lets requests through again, 0 if it does now
+     */
+    public synchronized long remainingNanos(long now) {
+        if (state == State.Open)
+            return Math.max(0, openUntil - now);
+        if (state == State.HalfOpen && probes >= settings.halfOpenProbes)
+            return Math.max(0, probeUntil - now);
+        return 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return The generation of the current state, to be recorded with the response of a request sent now
+     */
+    public synchronized long getGeneration() {
+        expire(System.nanoTime());
+        return generation;
+    }
+
+    /**
+     * Records a response of the node
+     *
+     * @param rejected   True if the node rejected the request because it's saturated
+     * @param retryAfter Delay asked by the node, null if none
+     * @param generation Generation of the breaker when the request was sent, see {@link #getGeneration()}
+     */
+    public void record(boolean rejected, Duration retryAfter, long generation) {
+        record(rejected, retryAfter, generation, System.nanoTime());
+    }
+
+    synchronized void record(boolean rejected, Duration retryAfter, long generation, long now) {
+        expire(now);
+        // Only the probes decide a half open breaker, older requests were sent before it opened
+        if (state == State.HalfOpen && generation != this.generation)
+            return;
+        if (retryAfter != null && rejected) {
+            open(now, Math.max(retryAfter.toNanos(), 1));
+            return;
+        }
+        if (state == State.HalfOpen) {
+            if (rejected) {
+                openNanos = Math.min(openNanos * 2, settings.maxOpenDuration.toNanos());
+                open(now, openNanos);
+            } else {
+                close();
+            }
+            return;
+        }
+        if (state == State.Open)
+            return;
+
+        if (calls == window.length && window[next])
+            rejections--;
+        else if (calls < window.length)
+            calls++;
+        window[next] = rejected;
+        if (rejected)
+            rejections++;
+        next = (next + 1) % window.length;
+
+        if (calls >= settings.minCalls && rejections >= settings.failureRate * calls)
+            open(now, openNanos);
+    }
+
+    private void expire(long now) {
+        if (state == State.Open && now - openUntil >= 0) {
+            state = State.HalfOpen;
+            generation++;
+        }
+    }
+
+    private void open(long now, long nanos) {
+        state = State.Open;
+        openUntil = now + nanos;
+        generation++;
+        resetWindow();
+    }
+
+    private void close() {
+        state = State.Closed;
+        openNanos = settings.openDuration.toNanos();
+        generation++;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        calls = 0;
+        rejections = 0;
+        next = 0;
+        probes = 0;
+    }
+
+    /**
+     * Configuration shared by the circuit breakers of all the nodes
+     */
+    public static class Settings {
+        private final int windowSize;
+        private final int minCalls;
+        private final double failureRate;
+        private final Duration openDuration;
+        private final Duration maxOpenDuration;
+        private final int halfOpenProbes;
+
+        private Settings(Builder builder) {
+            this.windowSize = builder.windowSize;
+            this.minCalls = builder.minCalls;
+            this.failureRate = builder.failureRate;
+            this.openDuration = builder.openDuration;
+            this.maxOpenDuration = builder.maxOpenDuration;
+            this.halfOpenProbes = builder.halfOpenProbes;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static class Builder {
+            private int windowSize = 20;
+            private int minCalls = 10;
+            private double failureRate = 0.5;
+            private Duration openDuration = Duration.ofSeconds(1);
+            private Duration maxOpenDuration = Duration.ofSeconds(30);
+            private int halfOpenProbes = 1;
+
+            /**
+             * @param windowSize Number of recent responses watched (20 by default)
+             * @param minCalls   Responses needed before the breaker can open (10 by default)
+             */
+            public Builder withWindow(int windowSize, int minCalls) {
+                this.windowSize = windowSize;
+                this.minCalls = minCalls;
+                return this;
+            }
+
+            /**
+             * @param failureRate Fraction of rejections in the window that opens the breaker (0.5 by default)
+             */
+            public Builder withFailureRate(double failureRate) {
+                this.failureRate = failureRate;
+                return this;
+            }
+
+            /**
+             * @param openDuration    First time the breaker stays open (1 s by default)
+             * @param maxOpenDuration Maximum time it stays open after failed probes (30 s by default)
+             */
+            public Builder withOpenDuration(Duration openDuration, Duration maxOpenDuration) {
+                this.openDuration = openDuration;
+                this.maxOpenDuration = maxOpenDuration;
+                return this;
+            }
+
+            /**
+             * @param halfOpenProbes Requests let through at once when the breaker is half open (1 by default)
+             */
+            public Builder withHalfOpenProbes(int halfOpenProbes) {
+                this.halfOpenProbes = halfOpenProbes;
+                return this;
+            }
+
+            public Settings build() {
+                final String ctx = CLASSNAME + ".build";
+                if (windowSize < 1 || minCalls < 1 || minCalls > windowSize)
+                    throw new RuntimeException(ctx + ": The minimum calls must be between 1 and the window size");
+                if (failureRate <= 0 || failureRate > 1)
+                    throw new RuntimeException(ctx + ": The failure rate must be greater than 0 and up to 1");
+                if (openDuration == null || maxOpenDuration == null || openDuration.isNegative() || openDuration.isZero()
+                        || maxOpenDuration.compareTo(openDuration) < 0)
+                    throw new RuntimeException(ctx + ": The maximum open duration must be greater than the open duration");
+                if (halfOpenProbes < 1)
+                    throw new RuntimeException(ctx + ": The half open probes must be greater than 0");
+                return new Settings(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.utmstack.opensearch_connector.clients;
+
+import java.time.Duration;
+
+/**
+ * Adaptive limit of the requests in flight to a node, following what the node can take. The limit grows
+ * by one every time a full limit of requests is answered without signs of saturation (additive increase),
+ * and shrinks by the backoff ratio when the node rejects requests (429 or 503) or its latency grows well
+ * over its usual latency (multiplicative decrease). The latency is compared as a gradient: a short average
+ * of the last responses against a long one, so slow queries alone don't lower the limit but a node that
+ * starts queueing does.
+ */
+public class ConcurrencyLimiter {
+    private static final String CLASSNAME = "ConcurrencyLimiter";
+    private static final double SHORT_ALPHA = 0.2;
+    private static final double LONG_ALPHA = 0.02;
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final Settings settings;
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+    private long samples;
+    private long lastDecrease;
+
+    ConcurrencyLimiter(Settings settings) {
+        this.settings = settings;
+        this.limit = settings.initialLimit;
+        this.lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * @return The current maximum of requests in flight to the node
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Adjusts the limit with a response of the node
+     *
+     * @param rttNanos Time from the request to the response, 0 if unknown
+     * @param rejected True if the node rejected the request because it's saturated
+     * @param inFlight Requests in flight to the node when the response arrived, including this one
+     */
+    public synchronized void record(long rttNanos, boolean rejected, int inFlight) {
+        long now = System.nanoTime();
+        if (rttNanos > 0) {
+            if (samples++ == 0) {
+                shortRtt = rttNanos;
+                longRtt = rttNanos;
+            } else {
+                shortRtt += SHORT_ALPHA * (rttNanos - shortRtt);
+                longRtt += LONG_ALPHA * (rttNanos - longRtt);
+            }
+        }
+
+        boolean slow = samples >= WARMUP_SAMPLES && shortRtt > longRtt * settings.latencyTolerance;
+        if (rejected || slow) {
+            // The responses of the same round trip carry the same signal, the limit is lowered once for all of them
+            if (now - lastDecrease >= (long) shortRtt) {
+                limit = Math.max(settings.minLimit, limit * settings.backoffRatio);
+                lastDecrease = now;
+            }
+        } else if (inFlight * 2 >= limit) {
+            // Only grows while it's being used, an idle node keeps its limit
+            limit = Math.min(settings.maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Configuration shared by the limiters of all the nodes
+     */
+    public static class Settings {
+        private final int initialLimit;
+        private final int minLimit;
+        private final int maxLimit;
+        private final double backoffRatio;
+        private final double latencyTolerance;
+        private final Duration maxWait;
+
+        private Settings(Builder builder) {
+            this.initialLimit = builder.initialLimit;
+            this.minLimit = builder.minLimit;
+            this.maxLimit = builder.maxLimit;
+            this.backoffRatio = builder.backoffRatio;
+            this.latencyTolerance = builder.latencyTolerance;
+            this.maxWait = builder.maxWait;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        /**
+         * @return How long a request waits for a node under its limit, zero if it fails at once
+         */
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public static class Builder {
+            private int initialLimit = 20;
+            private int minLimit = 1;
+            private int maxLimit = 200;
+            private double backoffRatio = 0.9;
+            private double latencyTolerance = 2;
+            private Duration maxWait = Duration.ZERO;
+
+            /**
+             * @param initialLimit Limit of a node before any response (20 by default)
+             * @param minLimit     The limit never goes below it (1 by default)
+             * @param maxLimit     The limit never goes above it (200 by default)
+             */
+            public Builder withLimits(int initialLimit, int minLimit, int maxLimit) {
+                this.initialLimit = initialLimit;
+                this.minLimit = minLimit;
+                this.maxLimit = maxLimit;
+                return this;
+            }
+
+            /**
+             * @param backoffRatio Factor applied to the limit when the node is saturated (0.9 by default)
+             */
+            public Builder withBackoffRatio(double backoffRatio) {
+                this.backoffRatio = backoffRatio;
+                return this;
+            }
+
+            /**
+             * @param latencyTolerance How many times over its usual latency a node can answer before its
+             *                         limit is lowered (2 by default)
+             */
+            public Builder withLatencyTolerance(double latencyTolerance) {
+                this.latencyTolerance = latencyTolerance;
+                return this;
+            }
+
+            /**
+             * @param maxWait How long a blocking request waits when all the nodes are at their limit, zero
+             *                (default) to fail at once. Non-blocking requests always fail at once
+             */
+            public Builder withMaxWait(Duration maxWait) {
+                this.maxWait = maxWait;
+                return this;
+            }
+
+            public Settings build() {
+                final String ctx = CLASSNAME + ".build";
+                if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+                    throw new RuntimeException(ctx + ": The initial limit must be between the minimum and the maximum, and the minimum greater than 0");
+                if (backoffRatio <= 0 || backoffRatio >= 1)
+                    throw new RuntimeException(ctx + ": The backoff ratio must be greater than 0 and less than 1");
+                if (latencyTolerance <= 1)
+                    throw new RuntimeException(ctx + ": The latency tolerance must be greater than 1");
+                if (maxWait == null || maxWait.isNegative())
+                    throw new RuntimeException(ctx + ": The maximum wait can't be negative");
+                return new Settings(this);
+            }
+        }
+    }
+}
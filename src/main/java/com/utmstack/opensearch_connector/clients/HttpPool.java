@@ -0,0 +1,176 @@
+package com.utmstack.opensearch_connector.clients;
+
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.opensearch.client.RestClientBuilder;
+
+import java.time.Duration;
+
+/**
+ * Connection settings of a cluster: pooled connections, keep-alive, request concurrency, I/O threads
+ * and timeouts. They apply to the single low-level client that carries the typed, SQL and raw requests
+ * of an {@link com.utmstack.opensearch_connector.OpenSearch} instance. The same settings can be passed
+ * to several instances, each of them still opens its own pool. Unset values keep the defaults of the
+ * low-level client.
+ * <br>
+ * Example:
+ * <pre>{@code
+ * HttpPool pool = HttpPool.builder()
+ *         .withMaxRequests(128)
+ *         .withMaxRequestsPerHost(32)
+ *         .withKeepAlive(Duration.ofMinutes(2))
+ *         .build();
+ * }</pre>
+ */
+public class HttpPool {
+    private static final String CLASSNAME = "HttpPool";
+    private static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Duration keepAlive;
+    private final Integer maxRequests;
+    private final Integer maxRequestsPerHost;
+    private final Integer ioThreads;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+
+    private HttpPool(Builder builder) {
+        this.keepAlive = builder.keepAlive;
+        this.maxRequests = builder.maxRequests;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.ioThreads = builder.ioThreads;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout != null ? builder.readTimeout : DEFAULT_READ_TIMEOUT;
+    }
+
+    /**
+     * @return A pool with the defaults of the low-level client
+     */
+    public static HttpPool defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Applies the settings to the connection pool of the low-level client
+     */
+    HttpAsyncClientBuilder configure(HttpAsyncClientBuilder builder) {
+        if (maxRequests != null)
+            builder.setMaxConnTotal(maxRequests);
+        if (maxRequestsPerHost != null)
+            builder.setMaxConnPerRoute(maxRequestsPerHost);
+        if (keepAlive != null)
+            builder.setKeepAliveStrategy((response, context) -> keepAlive.toMillis());
+        if (ioThreads != null)
+            builder.setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreads).build());
+        return builder;
+    }
+
+    /**
+     * Applies the timeouts to the requests of the low-level client
+     */
+    RestClientBuilder configure(RestClientBuilder builder) {
+        return builder.setRequestConfigCallback(config -> {
+            if (connectTimeout != null)
+                config.setConnectTimeout((int) connectTimeout.toMillis());
+            return config.setSocketTimeout((int) readTimeout.toMillis());
+        });
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public Integer getMaxRequests() {
+        return maxRequests;
+    }
+
+    public Integer getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public Integer getIoThreads() {
+        return ioThreads;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public static class Builder {
+        private Duration keepAlive;
+        private Integer maxRequests;
+        private Integer maxRequestsPerHost;
+        private Integer ioThreads;
+        private Duration connectTimeout;
+        private Duration readTimeout;
+
+        /**
+         * @param keepAlive How long an idle connection is kept open, by default what the server says or forever
+         */
+        public Builder withKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * @param maxRequests Maximum connections, and so concurrent requests, to the whole cluster (default 30)
+         */
+        public Builder withMaxRequests(Integer maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * @param maxRequestsPerHost Maximum connections, and so concurrent requests, to one node (default 10)
+         */
+        public Builder withMaxRequestsPerHost(Integer maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * @param ioThreads Number of threads doing the network I/O, by default one per processor
+         */
+        public Builder withIoThreads(Integer ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public Builder withConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * @param readTimeout Maximum time waiting for data on a connection (30 seconds by default)
+         */
+        public Builder withReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        public HttpPool build() {
+            final String ctx = CLASSNAME + ".build";
+            if (maxRequests != null && maxRequests < 1)
+                throw new RuntimeException(ctx + ": The maximum requests must be greater than 0");
+            if (maxRequestsPerHost != null && maxRequestsPerHost < 1)
+                throw new RuntimeException(ctx + ": The maximum requests per host must be greater than 0");
+            if (ioThreads != null && ioThreads < 1)
+                throw new RuntimeException(ctx + ": The number of I/O threads must be greater than 0");
+            if (isNotPositive(keepAlive) || isNotPositive(connectTimeout) || isNotPositive(readTimeout))
+                throw new RuntimeException(ctx + ": Keep-alive and timeouts must be greater than 0");
+            return new HttpPool(this);
+        }
+
+        private static boolean isNotPositive(Duration duration) {
+            return duration != null && (duration.isNegative() || duration.isZero());
+        }
+    }
+}
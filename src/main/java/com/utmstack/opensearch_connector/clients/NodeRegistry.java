@@ -0,0 +1,314 @@
+package com.utmstack.opensearch_connector.clients;
+
+import com.utmstack.opensearch_connector.enums.LoadBalancing;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.http.HttpHost;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * The nodes of a cluster shared by all the clients of a connection, with the state needed to spread
+ * the requests over them.
+ * <br>
+ * A node that fails is marked dead and skipped until its backoff expires, then it's tried again with
+ * the next request. Every consecutive failure doubles the backoff, up to a maximum. When all the nodes
+ * are dead all of them are tried, so requests are never rejected locally for that. The nodes of every
+ * request are chosen by the node selector of {@link OpensearchClient}, from the state kept here.
+ * <br>
+ * Optionally every node has a circuit breaker and an adaptive concurrency limit, those can reject
+ * requests locally to protect saturated nodes.
+ */
+public class NodeRegistry {
+    private static final String CLASSNAME = "NodeRegistry";
+    private static final long MIN_BACKOFF_NANOS = Duration.ofSeconds(30).toNanos();
+    private static final long MAX_BACKOFF_NANOS = Duration.ofMinutes(30).toNanos();
+    private static final ThreadLocal<Boolean> BLOCKING = new ThreadLocal<>();
+
+    private final LoadBalancing loadBalancing;
+    private final CircuitBreaker.Settings circuitBreaker;
+    private final ConcurrencyLimiter.Settings concurrencyLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile List<Node> nodes;
+
+    public NodeRegistry(List<HttpHost> hosts, LoadBalancing loadBalancing) {
+        this(hosts, loadBalancing, null);
+    }
+
+    /**
+     * @param circuitBreaker Settings of the circuit breaker of every node, null to disable them
+     */
+    public NodeRegistry(List<HttpHost> hosts, LoadBalancing loadBalancing, CircuitBreaker.Settings circuitBreaker) {
+        this(hosts, loadBalancing, circuitBreaker, null);
+    }
+
+    /**
+     * @param circuitBreaker   Settings of the circuit breaker of every node, null to disable them
+     * @param concurrencyLimit Settings of the concurrency limiter of every node, null to disable them
+     */
+    public NodeRegistry(List<HttpHost> hosts, LoadBalancing loadBalancing, CircuitBreaker.Settings circuitBreaker,
+                        ConcurrencyLimiter.Settings concurrencyLimit) {
+        final String ctx = CLASSNAME + ".NodeRegistry";
+        if (CollectionUtils.isEmpty(hosts))
+            throw new RuntimeException(ctx + ": No hosts definition were provided");
+        this.loadBalancing = loadBalancing != null ? loadBalancing : LoadBalancing.RoundRobin;
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimit = concurrencyLimit;
+        this.nodes = hosts.stream().distinct().map(this::newNode).collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Sends a blocking request of the low-level client. Only the requests sent through here wait for a node
+     * under its concurrency limit, any other request fails at once when all the nodes are at their limit.
+     *
+     * @param request Call to the low-level client, made in this thread
+     */
+    public static <T> T blocking(Retrier.IOCallable<T> request) throws IOException {
+        if (BLOCKING.get() != null)
+            return request.call();
+        BLOCKING.set(Boolean.TRUE);
+        try {
+            return request.call();
+        } finally {
+            BLOCKING.remove();
+        }
+    }
+
+    /**
+     * @return True if the current thread is sending a request through {@link #blocking(Retrier.IOCallable)}
+     */
+    static boolean isBlocking() {
+        return BLOCKING.get() != null;
+    }
+
+    /**
+     * Replaces the nodes, usually with the nodes found by sniffing. Nodes already known keep their state.
+     *
+     * @param hosts The current nodes of the cluster, ignored if empty
+     */
+    public void setHosts(List<HttpHost> hosts) {
+        if (CollectionUtils.isEmpty(hosts))
+            return;
+        List<Node> current = nodes;
+        List<Node> updated = new ArrayList<>(hosts.size());
+        for (HttpHost host : hosts.stream().distinct().collect(Collectors.toList()))
+            updated.add(current.stream().filter(n -> n.host.equals(host)).findFirst().orElseGet(() -> newNode(host)));
+        nodes = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * @return The hosts of all the nodes, dead or alive
+     */
+    public List<HttpHost> getHosts() {
+        return nodes.stream().map(Node::getHost).collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * @return True if the host is known and isn't waiting for its backoff to expire
+     */
+    public boolean isAlive(HttpHost host) {
+        long now = System.nanoTime();
+        return nodes.stream().filter(n -> n.host.equals(host)).allMatch(n -> n.isAlive(now));
+    }
+
+    public Node find(HttpHost host) {
+        return nodes.stream().filter(n -> n.host.equals(host)).findFirst().orElse(null);
+    }
+
+    /**
+     * @return All the nodes, dead or alive
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public LoadBalancing getLoadBalancing() {
+        return loadBalancing;
+    }
+
+    /**
+     * @return Settings of the concurrency limiters, null if they are disabled
+     */
+    public ConcurrencyLimiter.Settings getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * @return A counter of the finished requests, to be passed to {@link #awaitRelease(long, long)}
+     */
+    public long releases() {
+        return releases.get();
+    }
+
+    /**
+     * Waits until a request finishes on any node, so another one may fit under the concurrency limits
+     *
+     * @param seen  Value of {@link #releases()} read before checking the limits
+     * @param nanos Maximum time to wait
+     * @return False if the time elapsed without any request finishing
+     */
+    public boolean awaitRelease(long seen, long nanos) throws InterruptedException {
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            while (releases.get() == seen) {
+                if (nanos <= 0)
+                    return false;
+                nanos = released.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void signalRelease() {
+        releases.incrementAndGet();
+        if (waiters.get() == 0)
+            return;
+        lock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Node newNode(HttpHost host) {
+        return new Node(this, host, circuitBreaker != null ? new CircuitBreaker(circuitBreaker) : null,
+                concurrencyLimit != null ? new ConcurrencyLimiter(concurrencyLimit) : null);
+    }
+
+    public static class Node {
+        private final NodeRegistry registry;
+        private final HttpHost host;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicLong deadUntil = new AtomicLong();
+        private final CircuitBreaker circuitBreaker;
+        private final ConcurrencyLimiter limiter;
+
+        Node(NodeRegistry registry, HttpHost host, CircuitBreaker circuitBreaker, ConcurrencyLimiter limiter) {
+            this.registry = registry;
+            this.host = host;
+            this.circuitBreaker = circuitBreaker;
+            this.limiter = limiter;
+        }
+
+        public HttpHost getHost() {
+            return host;
+        }
+
+        /**
+         * @return The number of requests in flight to this node
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public boolean isAlive(long now) {
+            return failures.get() == 0 || now - deadUntil.get() >= 0;
+        }
+
+        /**
+         * @return The circuit breaker of the node, null if they are disabled
+         */
+        public CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        /**
+         * @return False if the circuit breaker of the node is open or half open
+         */
+        public boolean allowsRequests(long now) {
+            return circuitBreaker == null || circuitBreaker.allowsRequests(now);
+        }
+
+        /**
+         * @return True if the next request must be sent to this node to probe its half open circuit breaker
+         */
+        public boolean tryProbe(long now) {
+            return circuitBreaker != null && circuitBreaker.tryProbe(now);
+        }
+
+        /**
+         * @return The concurrency limiter of the node, null if they are disabled
+         */
+        public ConcurrencyLimiter getLimiter() {
+            return limiter;
+        }
+
+        /**
+         * @return False if the node already has as many requests in flight as its concurrency limit allows
+         */
+        public boolean hasCapacity() {
+            return limiter == null || outstanding.get() < limiter.getLimit();
+        }
+
+        /**
+         * Records a response of the node in its circuit breaker and its concurrency limiter, before the
+         * request is released
+         *
+         * @param retryAfter Delay asked by the node, null if none
+         * @param rttNanos   Time from the request to the response, 0 if unknown
+         * @param generation Value returned by {@link #acquire()} when the request was sent
+         */
+        public void recordResponse(int status, Duration retryAfter, long rttNanos, long generation) {
+            boolean rejected = status == 429 || status == 503;
+            if (circuitBreaker != null)
+                circuitBreaker.record(rejected, retryAfter, generation);
+            if (limiter != null)
+                limiter.record(rttNanos, rejected, outstanding.get());
+        }
+
+        /**
+         * Counts a request sent to this node, every call must be followed by exactly one {@link #release()},
+         * whether the request gets a response or fails
+         *
+         * @return The generation of the circuit breaker of the node, to record the response with it
+         */
+        public long acquire() {
+            outstanding.incrementAndGet();
+            return circuitBreaker != null ? circuitBreaker.getGeneration() : 0;
+        }
+
+        public void release() {
+            outstanding.updateAndGet(n -> n > 0 ? n - 1 : 0);
+            registry.signalRelease();
+        }
+
+        /**
+         * Brings the node back to life after a successful request
+         */
+        public void markAlive() {
+            failures.set(0);
+        }
+
+        /**
+         * Marks the node as dead after a failed request, the backoff grows with every consecutive failure.
+         * The requests still in flight to the node keep being counted until they finish.
+         */
+        public void markDead() {
+            int count = failures.incrementAndGet();
+            long backoff = MIN_BACKOFF_NANOS << Math.min(count - 1, 16);
+            deadUntil.set(System.nanoTime() + Math.min(backoff, MAX_BACKOFF_NANOS));
+        }
+
+        @Override
+        public String toString() {
+            return host.toURI();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.utmstack.opensearch_connector.clients;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.http.HttpHost;
+import org.apache.http.util.EntityUtils;
+import org.opensearch.client.Node;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.RestClient;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Discovers the HTTP nodes of the cluster with {@code _nodes/http} at a fixed interval and updates the
+ * registry and the low-level client with them. Dedicated cluster manager nodes are left out, the requests
+ * go to the data and coordinating nodes. A failed sniff keeps the current nodes.
+ */
+public class NodeSniffer implements Closeable {
+    private static final String CLASSNAME = "NodeSniffer";
+    private final RestClient lowLevelClient;
+    private final NodeRegistry nodes;
+    private final String scheme;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param lowLevelClient Client used to sniff, its node list is replaced with the sniffed nodes
+     * @param nodes          Registry updated with the sniffed nodes
+     * @param interval       Time between two sniffs, the first one runs at once
+     */
+    public NodeSniffer(RestClient lowLevelClient, NodeRegistry nodes, Duration interval) {
+        final String ctx = CLASSNAME + ".NodeSniffer";
+        if (interval == null || interval.isNegative() || interval.isZero())
+            throw new RuntimeException(ctx + ": The sniff interval must be greater than 0");
+        this.lowLevelClient = lowLevelClient;
+        this.nodes = nodes;
+        // The publish addresses have no scheme, the nodes are reached the same way as the configured ones
+        this.scheme = nodes.getHosts().get(0).getSchemeName();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "opensearch-node-sniffer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::sniffQuietly, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reads the HTTP nodes of the cluster and updates the registry and the low-level client
+     *
+     * @return The sniffed hosts
+     */
+    public List<HttpHost> sniff() {
+        final String ctx = CLASSNAME + ".sniff";
+        try {
+            Request request = new Request("GET", "/_nodes/http");
+            request.addParameter("timeout", "5s");
+            Response response = NodeRegistry.blocking(() -> lowLevelClient.performRequest(request));
+            JsonObject body = JsonParser.parseString(EntityUtils.toString(response.getEntity())).getAsJsonObject();
+
+            List<HttpHost> hosts = parseHosts(body, scheme);
+            if (!hosts.isEmpty()) {
+                nodes.setHosts(hosts);
+                lowLevelClient.setNodes(hosts.stream().map(Node::new).collect(Collectors.toList()));
+            }
+            return hosts;
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sniffQuietly() {
+        try {
+            sniff();
+        } catch (Exception ignored) {
+            // The current nodes are kept until the next sniff succeeds
+        }
+    }
+
+    static List<HttpHost> parseHosts(JsonObject body, String scheme) {
+        List<HttpHost> hosts = new ArrayList<>();
+        if (!body.has("nodes"))
+            return hosts;
+        for (Map.Entry<String, JsonElement> entry : body.getAsJsonObject("nodes").entrySet()) {
+            JsonObject node = entry.getValue().getAsJsonObject();
+            if (!node.has("http") || isDedicatedManager(node))
+                continue;
+            JsonElement address = node.getAsJsonObject("http").get("publish_address");
+            if (address == null || address.isJsonNull())
+                continue;
+            hosts.add(toHost(address.getAsString(), scheme));
+        }
+        return hosts;
+    }
+
+    private static boolean isDedicatedManager(JsonObject node) {
+        if (!node.has("roles"))
+            return false;
+        List<String> roles = new ArrayList<>();
+        node.getAsJsonArray("roles").forEach(role -> roles.add(role.getAsString()));
+        return roles.size() == 1 && (roles.contains("cluster_manager") || roles.contains("master"));
+    }
+
+    /**
+     * Converts a publish address, {@code hostname/ip:port} or {@code ip:port}, to a host
+     */
+    private static HttpHost toHost(String address, String scheme) {
+        String hostname = null;
+        int slash = address.indexOf('/');
+        if (slash >= 0) {
+            if (slash > 0)
+                hostname = address.substring(0, slash);
+            address = address.substring(slash + 1);
+        }
+        int colon = address.lastIndexOf(':');
+        int port = Integer.parseInt(address.substring(colon + 1));
+        String ip = address.substring(0, colon);
+        if (ip.startsWith("[") && ip.endsWith("]"))
+            ip = ip.substring(1, ip.length() - 1);
+        return new HttpHost(hostname != null ? hostname : ip, port, scheme);
+    }
+}
@@ -1,55 +1,435 @@
 package com.utmstack.opensearch_connector.clients;
 
+import com.utmstack.opensearch_connector.enums.LoadBalancing;
+import com.utmstack.opensearch_connector.exceptions.CircuitOpenException;
+import com.utmstack.opensearch_connector.exceptions.ConcurrencyLimitException;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.metrics.Instrumentation;
+import com.utmstack.opensearch_connector.metrics.MetricsListener;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
+import org.opensearch.client.Node;
+import org.opensearch.client.NodeSelector;
 import org.opensearch.client.RestClient;
+import org.opensearch.client.RestClientBuilder;
 import org.opensearch.client.json.jackson.JacksonJsonpMapper;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.transport.rest_client.RestClientTransport;
 
 import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class OpensearchClient {
     private static final String CLASSNAME = "OpensearchClient";
+    private static final String NODE_ATTRIBUTE = "opensearch-connector.node";
+    private static final String START_ATTRIBUTE = "opensearch-connector.start";
+    private static final String GENERATION_ATTRIBUTE = "opensearch-connector.generation";
+    private static final String EXCHANGE_ATTRIBUTE = "opensearch-connector.exchange";
+    private static final Set<Integer> NODE_FAILURE_STATUS = Set.of(502, 503, 504);
 
     public static OpenSearchClient build(String user, String password, HttpHost host) {
         final String ctx = CLASSNAME + ".build";
+        if (Objects.isNull(host))
+            throw new RuntimeException(ctx + ": No hosts definition were provided");
+        return build(user, password, new NodeRegistry(List.of(host), LoadBalancing.RoundRobin));
+    }
+
+    /**
+     * Builds a client that spreads the requests over the nodes of the registry. The nodes the registry
+     * considers dead are skipped, and the requests in flight and the failures of every node are reported to it.
+     *
+     * @param nodes Registry with the nodes of the cluster
+     */
+    public static OpenSearchClient build(String user, String password, NodeRegistry nodes) {
+        return build(user, password, nodes, null);
+    }
+
+    /**
+     * Same as {@link #build(String, String, NodeRegistry)}, with the connection limits, keep-alive and
+     * timeouts of the pool applied to the low-level client
+     *
+     * @param pool Connection settings, null for the defaults of the low-level client
+     */
+    public static OpenSearchClient build(String user, String password, NodeRegistry nodes, HttpPool pool) {
+        return build(user, password, nodes, pool, null);
+    }
+
+    /**
+     * Same as {@link #build(String, String, NodeRegistry, HttpPool)}, retrying the failed requests
+     *
+     * @param retrier Retry policies by kind of operation, null to disable the retries
+     */
+    public static OpenSearchClient build(String user, String password, NodeRegistry nodes, HttpPool pool,
+                                         Retrier retrier) {
+        return build(user, password, nodes, pool, retrier, null);
+    }
+
+    /**
+     * Same as {@link #build(String, String, NodeRegistry, HttpPool, Retrier)}, reporting every HTTP exchange
+     *
+     * @param listener Receiver of the measurements of the exchanges, null to not report them
+     */
+    public static OpenSearchClient build(String user, String password, NodeRegistry nodes, HttpPool pool,
+                                         Retrier retrier, MetricsListener listener) {
+        RestClientTransport transport = new RestClientTransport(buildRestClient(user, password, nodes, pool, listener),
+                new JacksonJsonpMapper());
+        // The transport is always wrapped, it marks the blocking requests for the node selector
+        return new OpenSearchClient(new ResilientTransport(transport, retrier != null ? retrier : Retrier.disabled()));
+    }
+
+    /**
+     * Builds the low-level client that carries the requests of the typed client, it can be shared with a
+     * {@link com.utmstack.opensearch_connector.clients.RestClient} so raw requests use the same connections
+     *
+     * @param pool Connection settings, null for the defaults of the low-level client
+     */
+    public static RestClient buildRestClient(String user, String password, NodeRegistry nodes, HttpPool pool) {
+        return buildRestClient(user, password, nodes, pool, null);
+    }
+
+    /**
+     * Same as {@link #buildRestClient(String, String, NodeRegistry, HttpPool)}, reporting every HTTP exchange
+     *
+     * @param listener Receiver of the measurements of the exchanges, null to not report them
+     */
+    public static RestClient buildRestClient(String user, String password, NodeRegistry nodes, HttpPool pool,
+                                             MetricsListener listener) {
+        final String ctx = CLASSNAME + ".buildRestClient";
         try {
-            if (Objects.isNull(host))
+            if (Objects.isNull(nodes))
                 throw new RuntimeException("No hosts definition were provided");
 
             SSLContextBuilder sslBuilder = SSLContexts.custom()
                     .loadTrustMaterial(null, (x509Certificates, s) -> true);
             final SSLContext sslContext = sslBuilder.build();
 
+            RestClientBuilder builder = RestClient.builder(nodes.getHosts().toArray(new HttpHost[0]))
+                    .setNodeSelector(new RegistryNodeSelector(nodes))
+                    .setFailureListener(new RestClient.FailureListener() {
+                        @Override
+                        public void onFailure(Node node) {
+                            NodeRegistry.Node failed = nodes.find(node.getHost());
+                            if (failed != null)
+                                failed.markDead();
+                        }
+                    });
+            if (pool != null)
+                pool.configure(builder);
+            Instrumentation metrics = Instrumentation.of(listener);
             RestClient restClient;
             if (!StringUtils.isEmpty(user) && !StringUtils.isEmpty(password)) {
                 CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
                 credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
-                restClient = RestClient.builder(host)
-                        .setHttpClientConfigCallback(builder -> builder
+                restClient = builder
+                        .setHttpClientConfigCallback(httpBuilder -> releasingFailures(configure(httpBuilder, nodes, pool, metrics)
                                 .setSSLContext(sslContext)
                                 .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                                .setDefaultCredentialsProvider(credentialsProvider))
+                                .setDefaultCredentialsProvider(credentialsProvider)))
                         .build();
             } else {
-                restClient = RestClient.builder(host)
-                        .setHttpClientConfigCallback(builder -> builder
+                restClient = builder
+                        .setHttpClientConfigCallback(httpBuilder -> releasingFailures(configure(httpBuilder, nodes, pool, metrics)
                                 .setSSLContext(sslContext)
-                                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE))
+                                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)))
                         .build();
             }
-            return new OpenSearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+            return restClient;
         } catch (Exception e) {
             throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
         }
     }
+
+    private static HttpAsyncClientBuilder configure(HttpAsyncClientBuilder builder, NodeRegistry nodes, HttpPool pool,
+                                                    Instrumentation metrics) {
+        // Counts the requests in flight per node, used by the least-outstanding selection and the concurrency limits.
+        // The node attribute is removed by whoever ends the request first, the response or the failure, so every
+        // request is released once.
+        builder.addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+            NodeRegistry.Node node = nodes.find(HttpClientContext.adapt(context).getTargetHost());
+            if (node != null) {
+                context.setAttribute(GENERATION_ATTRIBUTE, node.acquire());
+                context.setAttribute(NODE_ATTRIBUTE, node);
+                context.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            }
+        });
+        builder.addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+            NodeRegistry.Node node = (NodeRegistry.Node) context.removeAttribute(NODE_ATTRIBUTE);
+            Long start = (Long) context.removeAttribute(START_ATTRIBUTE);
+            Long generation = (Long) context.removeAttribute(GENERATION_ATTRIBUTE);
+            if (node != null) {
+                int status = response.getStatusLine().getStatusCode();
+                if (!NODE_FAILURE_STATUS.contains(status))
+                    node.markAlive();
+                Header retryAfter = response.getFirstHeader("Retry-After");
+                node.recordResponse(status, retryAfter != null ? OpenSearchException.retryAfter(retryAfter.getValue()) : null,
+                        start != null ? System.nanoTime() - start : 0, generation != null ? generation : -1);
+                node.release();
+            }
+        });
+        builder.setThreadFactory(IoThread::new);
+        if (metrics.isEnabled())
+            addMetricsInterceptors(builder, metrics);
+        return pool != null ? pool.configure(builder) : builder;
+    }
+
+    /**
+     * Wraps the client built by the low-level client, so the requests that fail or are cancelled without a
+     * response are released from their node too. The release happens before the low-level client sees the
+     * failure, so a node marked dead by it only counts the requests that are really still in flight.
+     */
+    private static HttpAsyncClientBuilder releasingFailures(HttpAsyncClientBuilder builder) {
+        return new HttpAsyncClientBuilder() {
+            @Override
+            public CloseableHttpAsyncClient build() {
+                return new ReleasingClient(builder.build());
+            }
+        };
+    }
+
+    /**
+     * Reports the endpoint, status, body sizes and time of every exchange. Exchanges that fail without a
+     * response are not reported here, the operations they belong to report the error.
+     */
+    private static void addMetricsInterceptors(HttpAsyncClientBuilder builder, Instrumentation metrics) {
+        builder.addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+            HttpEntity entity = request instanceof HttpEntityEnclosingRequest
+                    ? ((HttpEntityEnclosingRequest) request).getEntity()
+                    : null;
+            context.setAttribute(EXCHANGE_ATTRIBUTE, new Exchange(
+                    Instrumentation.endpoint(request.getRequestLine().getMethod(), request.getRequestLine().getUri()),
+                    entity != null ? entity.getContentLength() : 0, System.nanoTime()));
+        });
+        builder.addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+            Exchange exchange = (Exchange) context.removeAttribute(EXCHANGE_ATTRIBUTE);
+            if (exchange != null)
+                metrics.exchange(exchange.endpoint, response.getStatusLine().getStatusCode(), exchange.requestBytes,
+                        response.getEntity() != null ? response.getEntity().getContentLength() : 0,
+                        System.nanoTime() - exchange.start);
+        });
+    }
+
+    private static class ReleasingClient extends CloseableHttpAsyncClient {
+        private final CloseableHttpAsyncClient client;
+
+        ReleasingClient(CloseableHttpAsyncClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer, HttpAsyncResponseConsumer<T> responseConsumer,
+                                     HttpContext context, FutureCallback<T> callback) {
+            return client.execute(requestProducer, responseConsumer, context, new FutureCallback<>() {
+                @Override
+                public void completed(T result) {
+                    release(context);
+                    if (callback != null)
+                        callback.completed(result);
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    release(context);
+                    if (callback != null)
+                        callback.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    release(context);
+                    if (callback != null)
+                        callback.cancelled();
+                }
+            });
+        }
+
+        private static void release(HttpContext context) {
+            NodeRegistry.Node node = context != null ? (NodeRegistry.Node) context.removeAttribute(NODE_ATTRIBUTE) : null;
+            if (node != null)
+                node.release();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return client.isRunning();
+        }
+
+        @Override
+        public void start() {
+            client.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    /**
+     * Threads of the I/O reactor of the low-level client, recognized by the node selector so they are never parked
+     */
+    private static class IoThread extends Thread {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        IoThread(Runnable task) {
+            super(task, "I/O dispatcher " + COUNT.incrementAndGet());
+            setDaemon(true);
+        }
+    }
+
+    private static class Exchange {
+        private final String endpoint;
+        private final long requestBytes;
+        private final long start;
+
+        Exchange(String endpoint, long requestBytes, long start) {
+            this.endpoint = endpoint;
+            this.requestBytes = requestBytes;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Leaves to the low-level client only the nodes the registry considers alive, and with
+     * {@link LoadBalancing#LeastOutstanding} only the least loaded of them. If no node is left the
+     * list is not changed, so the low-level client falls back to its own resurrection logic.
+     * <br>
+     * Nodes with an open circuit breaker or at their concurrency limit are removed too, and if none is
+     * left the request is rejected here. When a breaker is half open the request is sent as its probe,
+     * to that node only. The concurrency limits are checked before the requests are
+     * counted, so concurrent callers can go over a limit by a few requests.
+     */
+    private static class RegistryNodeSelector implements NodeSelector {
+        private final NodeRegistry nodes;
+
+        RegistryNodeSelector(NodeRegistry nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public void select(Iterable<Node> candidates) {
+            List<Node> alive = new ArrayList<>();
+            for (Node node : candidates)
+                if (nodes.isAlive(node.getHost()))
+                    alive.add(node);
+            if (alive.isEmpty())
+                candidates.forEach(alive::add);
+
+            // Saturated nodes are skipped, and if all of them are saturated the request is shed here
+            long now = System.nanoTime();
+            long reopen = Long.MAX_VALUE;
+            List<Node> allowed = new ArrayList<>();
+            Node probe = null;
+            for (Node node : alive) {
+                NodeRegistry.Node known = nodes.find(node.getHost());
+                if (known == null || known.allowsRequests(now))
+                    allowed.add(node);
+                else if (probe == null && known.tryProbe(now))
+                    probe = node;
+                else
+                    reopen = Math.min(reopen, known.getCircuitBreaker().remainingNanos(now));
+            }
+            // A probe goes to its half open node only, the other requests keep away from it
+            if (probe != null) {
+                for (Iterator<Node> it = candidates.iterator(); it.hasNext(); )
+                    if (it.next() != probe)
+                        it.remove();
+                return;
+            }
+            if (allowed.isEmpty() && !alive.isEmpty())
+                throw new CircuitOpenException("The circuit breakers of the nodes " + alive + " are open",
+                        Duration.ofNanos(reopen));
+            if (nodes.getConcurrencyLimit() != null)
+                allowed = awaitCapacity(allowed);
+
+            int least = Integer.MAX_VALUE;
+            if (nodes.getLoadBalancing() == LoadBalancing.LeastOutstanding)
+                for (Node node : allowed)
+                    least = Math.min(least, outstanding(node));
+
+            for (Iterator<Node> it = candidates.iterator(); it.hasNext(); ) {
+                Node node = it.next();
+                if (!allowed.contains(node) || outstanding(node) > least)
+                    it.remove();
+            }
+        }
+
+        /**
+         * @return The nodes under their concurrency limit. If all of them are at their limit a blocking request
+         * waits for one, a non-blocking request fails at once so the thread that sent it is never parked
+         */
+        private List<Node> awaitCapacity(List<Node> allowed) {
+            long deadline = System.nanoTime() + nodes.getConcurrencyLimit().getMaxWait().toNanos();
+            boolean blocking = false;
+            while (true) {
+                long seen = nodes.releases();
+                List<Node> available = new ArrayList<>();
+                for (Node node : allowed) {
+                    NodeRegistry.Node known = nodes.find(node.getHost());
+                    if (known == null || known.hasCapacity())
+                        available.add(node);
+                }
+                if (!available.isEmpty() || allowed.isEmpty())
+                    return available;
+                if (!blocking) {
+                    if (!isBlockingRequest())
+                        throw new ConcurrencyLimitException("The nodes " + allowed + " are at their concurrency limit");
+                    blocking = true;
+                }
+                try {
+                    if (!nodes.awaitRelease(seen, deadline - System.nanoTime()))
+                        throw new ConcurrencyLimitException("The nodes " + allowed + " are at their concurrency limit");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ConcurrencyLimitException("Interrupted while waiting for the concurrency limit of the nodes " + allowed);
+                }
+            }
+        }
+
+        /**
+         * Only the requests sent through {@link NodeRegistry#blocking(Retrier.IOCallable)} can wait, and never
+         * from an I/O thread, where a completion callback may have sent a blocking request.
+         *
+         * @return True if the request being selected can park its thread
+         */
+        private static boolean isBlockingRequest() {
+            return NodeRegistry.isBlocking() && !(Thread.currentThread() instanceof IoThread);
+        }
+
+        private int outstanding(Node node) {
+            NodeRegistry.Node known = nodes.find(node.getHost());
+            return known != null ? known.getOutstanding() : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "REGISTRY_ALIVE";
+        }
+    }
 }
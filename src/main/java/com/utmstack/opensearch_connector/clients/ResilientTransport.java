@@ -0,0 +1,68 @@
+package com.utmstack.opensearch_connector.clients;
+
+import org.opensearch.client.RestClient;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.transport.Endpoint;
+import org.opensearch.client.transport.OpenSearchTransport;
+import org.opensearch.client.transport.TransportOptions;
+import org.opensearch.client.transport.rest_client.RestClientTransport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport of the typed client that retries the failed requests with the {@link Retrier} policy of
+ * their kind of operation. Blocking requests are sent through {@link NodeRegistry#blocking(Retrier.IOCallable)}
+ * so they can wait for the concurrency limits.
+ */
+public class ResilientTransport implements OpenSearchTransport {
+    private final RestClientTransport delegate;
+    private final Retrier retrier;
+
+    public ResilientTransport(RestClientTransport delegate, Retrier retrier) {
+        this.delegate = delegate;
+        this.retrier = retrier;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request,
+                                                                  Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        return retrier.execute(endpoint.method(request), endpoint.requestUrl(request),
+                () -> NodeRegistry.blocking(() -> delegate.performRequest(request, endpoint, options)));
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                         Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                         TransportOptions options) {
+        return retrier.executeAsync(endpoint.method(request), endpoint.requestUrl(request),
+                () -> delegate.performRequestAsync(request, endpoint, options));
+    }
+
+    /**
+     * @return The low-level client under this transport
+     */
+    public RestClient restClient() {
+        return delegate.restClient();
+    }
+
+    public Retrier getRetrier() {
+        return retrier;
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
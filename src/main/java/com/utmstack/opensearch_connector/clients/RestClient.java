@@ -1,58 +1,101 @@
 package com.utmstack.opensearch_connector.clients;
 
 import com.google.gson.Gson;
+import com.utmstack.opensearch_connector.enums.LoadBalancing;
 import com.utmstack.opensearch_connector.util.Constants;
 import okhttp3.*;
+import okio.Okio;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
-import org.jetbrains.annotations.NotNull;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.opensearch.client.Cancellable;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.ResponseException;
+import org.opensearch.client.ResponseListener;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.security.cert.X509Certificate;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class RestClient {
+/**
+ * Raw JSON requests to the cluster. They run over the same low-level client, and so the same connections,
+ * node selection and failover, as the typed client. The responses keep the OkHttp {@link Response} type of
+ * the previous versions, whatever their status, but OkHttp no longer opens connections.
+ */
+public class RestClient implements Closeable {
     private static final String CLASSNAME = "RestClient";
-    private final OkHttpClient client;
-    private static String BASEURL;
-    private static String USER;
-    private static String PASS;
+    private static final Gson GSON = new Gson();
+    private static final RequestOptions OPTIONS = RequestOptions.DEFAULT.toBuilder()
+            .addHeader(Constants.ACCEPT, Constants.APPLICATION_JSON_VALUE)
+            .build();
+    private final org.opensearch.client.RestClient client;
+    private final Retrier retrier;
+    private final boolean ownsClient;
 
     public RestClient(String user, String password, HttpHost host) {
-        BASEURL = host.toString();
-        USER = user;
-        PASS = password;
-        client = createTrustAllClient();
+        this(user, password, new NodeRegistry(List.of(host), LoadBalancing.RoundRobin));
     }
 
-    private OkHttpClient createTrustAllClient() {
+    /**
+     * Creates a client with its own connections that spreads the requests over the nodes of the registry
+     */
+    public RestClient(String user, String password, NodeRegistry nodes) {
+        this(user, password, nodes, null);
+    }
+
+    /**
+     * Creates a client with its own connections, configured with the pool settings
+     *
+     * @param pool Connection settings, null for the defaults
+     */
+    public RestClient(String user, String password, NodeRegistry nodes, HttpPool pool) {
+        this(OpensearchClient.buildRestClient(user, password, nodes, pool), Retrier.disabled(), true);
+    }
+
+    /**
+     * Creates a client over an existing low-level client, usually the one of the typed client.
+     * Closing this client doesn't close the low-level client.
+     */
+    public RestClient(org.opensearch.client.RestClient client) {
+        this(client, Retrier.disabled(), false);
+    }
+
+    /**
+     * Same as {@link #RestClient(org.opensearch.client.RestClient)}, retrying the failed requests. Responses
+     * with a retryable status are retried too, the response of the last attempt is returned.
+     */
+    public RestClient(org.opensearch.client.RestClient client, Retrier retrier) {
+        this(client, retrier, false);
+    }
+
+    private RestClient(org.opensearch.client.RestClient client, Retrier retrier, boolean ownsClient) {
+        this.client = client;
+        this.retrier = retrier;
+        this.ownsClient = ownsClient;
+    }
+
+    /**
+     * Releases the connections of this client if it created them
+     */
+    @Override
+    public void close() {
+        final String ctx = CLASSNAME + ".close";
+        if (!ownsClient)
+            return;
         try {
-            TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                }
-            };
-
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
-
-            return new OkHttpClient.Builder()
-                    .sslSocketFactory(sslContext.getSocketFactory(), (X509TrustManager) trustAllCerts[0])
-                    .hostnameVerifier((hostname, session) -> true)
-                    .addInterceptor(new RequestHandlerInterceptor())
-                    .readTimeout(30, TimeUnit.SECONDS)
-                    .build();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to create SSL client: " + e.getMessage());
+            client.close();
+        } catch (IOException e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
         }
     }
 
@@ -65,14 +108,7 @@ public class RestClient {
     public Response get(String uri, Map<String, String> queryParams) {
         final String ctx = CLASSNAME + ".get";
         try {
-            if (StringUtils.isNotBlank(uri) && !uri.startsWith("/"))
-                uri = "/" + uri;
-            HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(BASEURL + uri))
-                    .newBuilder();
-            if (!MapUtils.isEmpty(queryParams))
-                queryParams.forEach(urlBuilder::addEncodedQueryParameter);
-            Request request = new Request.Builder().url(urlBuilder.build()).build();
-            return client.newCall(request).execute();
+            return execute("GET", uri, queryParams, null);
         } catch (Exception e) {
             throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
         }
@@ -81,18 +117,7 @@ public class RestClient {
     public Response put(String uri, Map<String, String> queryParams, Object body) {
         final String ctx = CLASSNAME + ".put";
         try {
-            if (StringUtils.isNotBlank(uri) && !uri.startsWith("/"))
-                uri = "/" + uri;
-            HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(BASEURL + uri))
-                    .newBuilder();
-            if (!MapUtils.isEmpty(queryParams))
-                queryParams.forEach(urlBuilder::addEncodedQueryParameter);
-            MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-            Request request = new Request.Builder()
-                    .url(urlBuilder.build())
-                    .put(RequestBody.create(new Gson().toJson(body), JSON))
-                    .build();
-            return client.newCall(request).execute();
+            return execute("PUT", uri, queryParams, body);
         } catch (Exception e) {
             throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
         }
@@ -101,36 +126,160 @@ public class RestClient {
     public Response post(String uri, Map<String, String> queryParams, Object body) {
         final String ctx = CLASSNAME + ".post";
         try {
-            if (StringUtils.isNotBlank(uri) && !uri.startsWith("/"))
-                uri = "/" + uri;
-            HttpUrl.Builder urlBuilder = Objects.requireNonNull(HttpUrl.parse(BASEURL + uri))
-                    .newBuilder();
-            if (!MapUtils.isEmpty(queryParams))
-                queryParams.forEach(urlBuilder::addEncodedQueryParameter);
-            MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-            Request request = new Request.Builder()
-                    .url(urlBuilder.build())
-                    .post(RequestBody.create(new Gson().toJson(body), JSON))
-                    .build();
-            return client.newCall(request).execute();
+            return execute("POST", uri, queryParams, body);
         } catch (Exception e) {
             throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
         }
     }
 
-    private static class RequestHandlerInterceptor implements Interceptor {
-        @NotNull
-        @Override
-        public Response intercept(@NotNull Chain chain) throws IOException {
-            Request originalRequest = chain.request();
-            Request.Builder requestBuilder = originalRequest.newBuilder()
-                    .header(Constants.CONTENT_TYPE, Constants.APPLICATION_JSON_VALUE)
-                    .header(Constants.ACCEPT, Constants.APPLICATION_JSON_VALUE);
+    /**
+     * Execute a GET request without blocking the caller, the returned future is completed
+     * from the I/O threads of the low-level client
+     *
+     * @param uri         Uri of the request
+     * @param queryParams A map with the query parameters
+     */
+    public CompletableFuture<Response> getAsync(String uri, Map<String, String> queryParams) {
+        return enqueue(CLASSNAME + ".getAsync", "GET", uri, queryParams, null);
+    }
+
+    public CompletableFuture<Response> putAsync(String uri, Map<String, String> queryParams, Object body) {
+        return enqueue(CLASSNAME + ".putAsync", "PUT", uri, queryParams, body);
+    }
+
+    public CompletableFuture<Response> postAsync(String uri, Map<String, String> queryParams, Object body) {
+        return enqueue(CLASSNAME + ".postAsync", "POST", uri, queryParams, body);
+    }
+
+    private Response execute(String method, String uri, Map<String, String> queryParams, Object body)
+            throws IOException {
+        org.opensearch.client.Request request = buildRequest(method, uri, queryParams, body);
+        try {
+            return toResponse(method, retrier.execute(method, request.getEndpoint(),
+                    () -> NodeRegistry.blocking(() -> client.performRequest(request))));
+        } catch (ResponseException e) {
+            // Error statuses are returned as responses, the callers check them
+            return toResponse(method, e.getResponse());
+        }
+    }
+
+    private CompletableFuture<Response> enqueue(String ctx, String method, String uri,
+                                                Map<String, String> queryParams, Object body) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        try {
+            org.opensearch.client.Request request = buildRequest(method, uri, queryParams, body);
+            AtomicReference<Cancellable> current = new AtomicReference<>();
+            retrier.executeAsync(method, request.getEndpoint(), () -> perform(request, current))
+                    .whenComplete((response, error) -> {
+                        if (error == null)
+                            complete(ctx, method, response, future);
+                        else if (error instanceof ResponseException)
+                            complete(ctx, method, ((ResponseException) error).getResponse(), future);
+                        else
+                            future.completeExceptionally(new RuntimeException(ctx + ": " + error.getLocalizedMessage()));
+                    });
+            future.whenComplete((r, e) -> {
+                Cancellable cancellable = current.get();
+                if (future.isCancelled() && cancellable != null)
+                    cancellable.cancel();
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(new RuntimeException(ctx + ": " + e.getLocalizedMessage()));
+        }
+        return future;
+    }
+
+    /**
+     * Sends a request without blocking, error statuses fail the future with a {@link ResponseException}
+     */
+    private CompletableFuture<org.opensearch.client.Response> perform(org.opensearch.client.Request request,
+                                                                      AtomicReference<Cancellable> current) {
+        CompletableFuture<org.opensearch.client.Response> attempt = new CompletableFuture<>();
+        current.set(client.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(org.opensearch.client.Response response) {
+                attempt.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                attempt.completeExceptionally(exception);
+            }
+        }));
+        return attempt;
+    }
+
+    private static void complete(String ctx, String method, org.opensearch.client.Response response,
+                                 CompletableFuture<Response> future) {
+        try {
+            future.complete(toResponse(method, response));
+        } catch (Exception e) {
+            future.completeExceptionally(new RuntimeException(ctx + ": " + e.getLocalizedMessage()));
+        }
+    }
+
+    private static org.opensearch.client.Request buildRequest(String method, String uri, Map<String, String> queryParams,
+                                                              Object body) {
+        if (StringUtils.isBlank(uri))
+            uri = "/";
+        else if (!uri.startsWith("/"))
+            uri = "/" + uri;
+        org.opensearch.client.Request request = new org.opensearch.client.Request(method, uri);
+        if (!MapUtils.isEmpty(queryParams))
+            queryParams.forEach((name, value) -> request.addParameter(decode(name), decode(value)));
+        if (!"GET".equals(method))
+            request.setEntity(new StringEntity(GSON.toJson(body), ContentType.APPLICATION_JSON));
+        request.setOptions(OPTIONS);
+        return request;
+    }
+
+    /**
+     * The query parameters are received already encoded, as the OkHttp client took them, while the
+     * low-level client encodes them again
+     */
+    private static String decode(String value) {
+        if (value == null)
+            return null;
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // Not a valid encoding, the value is sent as it is
+            return value;
+        }
+    }
+
+    /**
+     * Wraps a low-level response in an OkHttp response, the body is streamed from the low-level entity
+     */
+    private static Response toResponse(String method, org.opensearch.client.Response response) throws IOException {
+        HttpUrl url = Objects.requireNonNull(HttpUrl.parse(response.getHost().toURI()
+                + response.getRequestLine().getUri()));
+        Request request = new Request.Builder()
+                .url(url)
+                .method(method, "GET".equals(method) || "HEAD".equals(method) ? null : RequestBody.create(new byte[0]))
+                .build();
 
-            if (!StringUtils.isEmpty(USER) && !StringUtils.isEmpty(PASS))
-                requestBuilder.header(Constants.AUTHORIZATION, Credentials.basic(USER, PASS, Charset.defaultCharset()));
+        Headers.Builder headers = new Headers.Builder();
+        for (Header header : response.getHeaders())
+            headers.addUnsafeNonAscii(header.getName(), header.getValue());
 
-            return chain.proceed(requestBuilder.build());
+        HttpEntity entity = response.getEntity();
+        ResponseBody body;
+        if (entity == null) {
+            body = ResponseBody.create(new byte[0], null);
+        } else {
+            MediaType mediaType = entity.getContentType() != null ? MediaType.parse(entity.getContentType().getValue()) : null;
+            body = ResponseBody.create(Okio.buffer(Okio.source(entity.getContent())), mediaType, entity.getContentLength());
         }
+
+        String message = response.getStatusLine().getReasonPhrase();
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(response.getStatusLine().getStatusCode())
+                .message(message != null ? message : "")
+                .headers(headers.build())
+                .body(body)
+                .build();
     }
 }
@@ -0,0 +1,201 @@
+package com.utmstack.opensearch_connector.clients;
+
+import com.utmstack.opensearch_connector.enums.OperationType;
+import com.utmstack.opensearch_connector.exceptions.CircuitOpenException;
+import com.utmstack.opensearch_connector.exceptions.ConcurrencyLimitException;
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import com.utmstack.opensearch_connector.metrics.Instrumentation;
+import com.utmstack.opensearch_connector.metrics.MetricsListener;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs requests with the retry policy of their kind of operation. Reads and writes have separate policies,
+ * so a read can be retried after a timeout while a write is retried here only when the cluster surely didn't
+ * run it. Blocking calls wait between attempts in the caller thread, non-blocking calls schedule the next
+ * attempt without holding a thread.
+ * <br>
+ * With several hosts the low level client still sends a request to the next node, in the same attempt, after
+ * a connection error, a socket timeout or a 502, 503 or 504, whatever the policy. So a write that timed out
+ * on a node can run twice; writes that must not be repeated need a single host or idempotent requests
+ * (explicit document ids, {@code if_seq_no} and {@code if_primary_term}).
+ */
+public class Retrier {
+    private static final List<String> READ_ENDPOINTS = List.of("/_search", "/_msearch", "/_count", "/_field_caps",
+            "/_mget", "/_validate/query", "/_search/scroll", "/_search/template", "/_msearch/template",
+            "/_search/point_in_time", "/_plugins/_sql", "/_plugins/_sql/close");
+    private final Map<OperationType, RetryPolicy> policies = new EnumMap<>(OperationType.class);
+    private final Instrumentation metrics;
+
+    /**
+     * @param reads  Policy of the searches and the other reads
+     * @param writes Policy of the operations that change data or settings
+     */
+    public Retrier(RetryPolicy reads, RetryPolicy writes) {
+        this(reads, writes, null);
+    }
+
+    /**
+     * @param listener Receiver of the retries, null to not report them
+     */
+    public Retrier(RetryPolicy reads, RetryPolicy writes, MetricsListener listener) {
+        policies.put(OperationType.Read, reads != null ? reads : RetryPolicy.none());
+        policies.put(OperationType.Write, writes != null ? writes : RetryPolicy.none());
+        this.metrics = Instrumentation.of(listener);
+    }
+
+    /**
+     * @return A retrier that never retries
+     */
+    public static Retrier disabled() {
+        return new Retrier(RetryPolicy.none(), RetryPolicy.none());
+    }
+
+    public RetryPolicy getPolicy(OperationType type) {
+        return policies.get(type);
+    }
+
+    /**
+     * Classifies a request. Every {@code GET} or {@code HEAD} is a read, and so are the searches, counts,
+     * multi-gets and SQL queries sent with {@code POST}. Everything else is a write.
+     *
+     * @param method HTTP method of the request
+     * @param path   Path of the request, the query string is ignored
+     */
+    public static OperationType operationType(String method, String path) {
+        if ("GET".equals(method) || "HEAD".equals(method))
+            return OperationType.Read;
+        if (!"POST".equals(method) || path == null)
+            return OperationType.Write;
+        int query = path.indexOf('?');
+        if (query >= 0)
+            path = path.substring(0, query);
+        if (!path.startsWith("/"))
+            path = "/" + path;
+        if (path.length() > 1 && path.endsWith("/"))
+            path = path.substring(0, path.length() - 1);
+        for (String endpoint : READ_ENDPOINTS)
+            if (path.endsWith(endpoint))
+                return OperationType.Read;
+        return OperationType.Write;
+    }
+
+    /**
+     * Runs a blocking request, retrying it while the policy of its kind of operation allows. The error of the
+     * last attempt is thrown as it is.
+     *
+     * @param method HTTP method of the request
+     * @param path   Path of the request
+     */
+    public <T> T execute(String method, String path, IOCallable<T> action) throws IOException {
+        RetryPolicy policy = policies.get(operationType(method, path));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.call();
+            } catch (IOException | RuntimeException e) {
+                long wait = waitMillis(policy, attempt, e);
+                if (wait < 0)
+                    throw e;
+                metrics.retry(method, path, attempt, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(wait);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a non-blocking request, retrying it while the policy of its kind of operation allows. The returned
+     * future fails with the error of the last attempt.
+     *
+     * @param method HTTP method of the request
+     * @param path   Path of the request
+     */
+    public <T> CompletableFuture<T> executeAsync(String method, String path, Supplier<CompletableFuture<T>> action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(method, path, policies.get(operationType(method, path)), action, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(String method, String path, RetryPolicy policy, Supplier<CompletableFuture<T>> action,
+                             int attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = action.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            long wait = result.isDone() ? -1 : waitMillis(policy, attempt, cause);
+            if (wait < 0) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            metrics.retry(method, path, attempt, cause);
+            CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(method, path, policy, action, attempt + 1, result));
+        });
+    }
+
+    /**
+     * @return Milliseconds to wait before the next attempt, -1 if the error must not be retried
+     */
+    private static long waitMillis(RetryPolicy policy, int attempt, Throwable error) {
+        if (attempt >= policy.getMaxAttempts())
+            return -1;
+        OpenSearchException info = OpenSearchException.of("", error);
+        boolean retry;
+        if (info.getStatus() > 0)
+            retry = policy.getRetryOnStatus().contains(info.getStatus());
+        else
+            retry = notSent(error) || (policy.isRetryOnIOError() && hasCause(error, IOException.class));
+        return retry ? policy.backoffMillis(attempt, info.getRetryAfter()) : -1;
+    }
+
+    /**
+     * @return True if the error happened before the request reached a node
+     */
+    private static boolean notSent(Throwable error) {
+        return hasCause(error, ConnectException.class) || hasCause(error, NoRouteToHostException.class)
+                || hasCause(error, UnknownHostException.class) || hasCause(error, CircuitOpenException.class)
+                || hasCause(error, ConcurrencyLimitException.class);
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable t = error; t != null; t = t.getCause())
+            if (type.isInstance(t))
+                return true;
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+            cause = cause.getCause();
+        return cause;
+    }
+
+    @FunctionalInterface
+    public interface IOCallable<T> {
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,187 @@
+package com.utmstack.opensearch_connector.clients;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a kind of operation is retried: number of attempts, exponential backoff with jitter and the
+ * errors that are worth another attempt. A {@code Retry-After} sent by the cluster is honored when
+ * it's longer than the backoff, unless it's longer than the maximum backoff, then the error is returned.
+ * <br>
+ * Example:
+ * <pre>{@code
+ * RetryPolicy reads = RetryPolicy.builder()
+ *         .withMaxAttempts(4)
+ *         .withBackoff(Duration.ofMillis(100), Duration.ofSeconds(5))
+ *         .build();
+ * }</pre>
+ */
+public class RetryPolicy {
+    private static final String CLASSNAME = "RetryPolicy";
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final Set<Integer> retryOnStatus;
+    private final boolean retryOnIOError;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.retryOnStatus = Set.copyOf(builder.retryOnStatus);
+        this.retryOnIOError = builder.retryOnIOError;
+    }
+
+    /**
+     * @return A policy that never retries
+     */
+    public static RetryPolicy none() {
+        return builder().withMaxAttempts(1).build();
+    }
+
+    /**
+     * @return A policy for reads: 3 attempts, from 100 ms to 5 s of backoff, retrying rejections (429),
+     * unavailable nodes (502, 503, 504) and connection errors
+     */
+    public static RetryPolicy reads() {
+        return builder().withMaxAttempts(3).build();
+    }
+
+    /**
+     * @return A policy for writes: 3 attempts, from 100 ms to 5 s of backoff, retrying only the requests the
+     * cluster didn't run: rejections (429, 503) and connections that couldn't be opened
+     */
+    public static RetryPolicy writes() {
+        return builder().withMaxAttempts(3).withRetryOnStatus(Set.of(429, 503)).withRetryOnIOError(false).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Maximum number of attempts, including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public Set<Integer> getRetryOnStatus() {
+        return retryOnStatus;
+    }
+
+    /**
+     * @return True if errors after the connection was opened, like timeouts, are retried.
+     * Connections that couldn't be opened are always retried.
+     */
+    public boolean isRetryOnIOError() {
+        return retryOnIOError;
+    }
+
+    /**
+     * Computes the wait before the next attempt
+     *
+     * @param attempt    Number of the attempt that failed, starting at 1
+     * @param retryAfter Delay asked by the cluster, null if none
+     * @return The wait in milliseconds, or -1 if the delay asked by the cluster is longer than the maximum backoff
+     */
+    long backoffMillis(int attempt, Duration retryAfter) {
+        if (retryAfter != null && retryAfter.compareTo(maxBackoff) > 0)
+            return -1;
+        double exponential = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        long backoff = (long) Math.min(exponential, maxBackoff.toMillis());
+        // Spreads the retries of concurrent callers, so they don't hit the cluster at the same time again
+        long jittered = backoff - (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+        return retryAfter != null ? Math.max(jittered, retryAfter.toMillis()) : jittered;
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+        private double multiplier = 2;
+        private double jitter = 0.5;
+        private Set<Integer> retryOnStatus = Set.of(429, 502, 503, 504);
+        private boolean retryOnIOError = true;
+
+        /**
+         * @param maxAttempts Maximum number of attempts including the first one (3 by default), 1 disables the retries
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param initialBackoff Wait before the second attempt (100 ms by default)
+         * @param maxBackoff     Maximum wait between two attempts (5 s by default)
+         */
+        public Builder withBackoff(Duration initialBackoff, Duration maxBackoff) {
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * @param multiplier Growth of the wait after every attempt (2 by default)
+         */
+        public Builder withMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * @param jitter Fraction of the wait that is random, from 0 to 1 (0.5 by default)
+         */
+        public Builder withJitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param retryOnStatus HTTP statuses that are retried (429, 502, 503 and 504 by default)
+         */
+        public Builder withRetryOnStatus(Set<Integer> retryOnStatus) {
+            this.retryOnStatus = retryOnStatus;
+            return this;
+        }
+
+        /**
+         * @param retryOnIOError If true (default), errors after the connection was opened are retried,
+         *                       use false for operations that must not run twice
+         */
+        public Builder withRetryOnIOError(boolean retryOnIOError) {
+            this.retryOnIOError = retryOnIOError;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            final String ctx = CLASSNAME + ".build";
+            if (maxAttempts < 1)
+                throw new RuntimeException(ctx + ": The maximum attempts must be greater than 0");
+            if (initialBackoff == null || maxBackoff == null || initialBackoff.isNegative()
+                    || maxBackoff.compareTo(initialBackoff) < 0)
+                throw new RuntimeException(ctx + ": The maximum backoff must be greater than the initial backoff");
+            if (multiplier < 1)
+                throw new RuntimeException(ctx + ": The multiplier must be 1 or greater");
+            if (jitter < 0 || jitter > 1)
+                throw new RuntimeException(ctx + ": The jitter must be between 0 and 1");
+            if (retryOnStatus == null)
+                throw new RuntimeException(ctx + ": The statuses to retry are required");
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.utmstack.opensearch_connector.enums;
+
+public enum ByQueryOperation {
+    UpdateByQuery("_update_by_query"),
+    DeleteByQuery("_delete_by_query");
+
+    private final String endpoint;
+
+    ByQueryOperation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String endpoint() {
+        return this.endpoint;
+    }
+}
@@ -0,0 +1,12 @@
+package com.utmstack.opensearch_connector.enums;
+
+public enum LoadBalancing {
+    /**
+     * Every request goes to the next live node
+     */
+    RoundRobin,
+    /**
+     * Every request goes to the live node with fewer requests in flight
+     */
+    LeastOutstanding
+}
@@ -0,0 +1,12 @@
+package com.utmstack.opensearch_connector.enums;
+
+public enum OperationType {
+    /**
+     * Searches, counts and reads of documents, mappings or cluster state, safe to repeat
+     */
+    Read,
+    /**
+     * Operations that change data or settings, repeated only when the cluster didn't run them
+     */
+    Write
+}
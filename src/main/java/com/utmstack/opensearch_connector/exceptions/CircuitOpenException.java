@@ -0,0 +1,24 @@
+package com.utmstack.opensearch_connector.exceptions;
+
+import java.time.Duration;
+
+/**
+ * Thrown without contacting the cluster when the circuit breakers of all the candidate nodes are open,
+ * because the nodes were rejecting requests
+ */
+public class CircuitOpenException extends RuntimeException {
+    public static final String TYPE = "node_circuit_open_exception";
+    private final Duration retryAfter;
+
+    public CircuitOpenException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return Time until the first circuit lets requests through again
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
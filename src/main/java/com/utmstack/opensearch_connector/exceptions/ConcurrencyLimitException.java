@@ -0,0 +1,13 @@
+package com.utmstack.opensearch_connector.exceptions;
+
+/**
+ * Thrown without contacting the cluster when all the candidate nodes have as many requests in flight as
+ * their concurrency limit allows, and no request finished in the allowed wait
+ */
+public class ConcurrencyLimitException extends RuntimeException {
+    public static final String TYPE = "node_concurrency_limit_exception";
+
+    public ConcurrencyLimitException(String message) {
+        super(message);
+    }
+}
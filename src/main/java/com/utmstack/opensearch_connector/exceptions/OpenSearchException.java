@@ -1,7 +1,160 @@
 package com.utmstack.opensearch_connector.exceptions;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.util.EntityUtils;
+import org.opensearch.client.ResponseException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Error of an operation. When the cluster answered, it carries the HTTP status, the OpenSearch error type
+ * (like {@code es_rejected_execution_exception}) and the delay asked by the {@code Retry-After} header, so
+ * callers can tell a rejected request from a bad one.
+ */
 public class OpenSearchException extends Exception {
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 502, 503, 504);
+    private final int status;
+    private final String type;
+    private final Duration retryAfter;
+
     public OpenSearchException(String message) {
+        this(message, 0, null, null);
+    }
+
+    /**
+     * @param status     HTTP status of the response, 0 if there was no response
+     * @param type       OpenSearch error type, null if unknown
+     * @param retryAfter Delay asked by the cluster before retrying, null if none
+     */
+    public OpenSearchException(String message, int status, String type, Duration retryAfter) {
         super(message);
+        this.status = status;
+        this.type = type;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Creates the exception of a failed operation, keeping the status, type and retry delay found in the error
+     *
+     * @param ctx   Context of the failed operation, the message is {@code ctx: error message}
+     * @param error The error of the operation
+     */
+    public static OpenSearchException of(String ctx, Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+            cause = cause.getCause();
+        String message = ctx + ": " + cause.getLocalizedMessage();
+
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof OpenSearchException) {
+                OpenSearchException e = (OpenSearchException) t;
+                if (e.status > 0)
+                    return new OpenSearchException(message, e.status, e.type, e.retryAfter);
+            } else if (t instanceof org.opensearch.client.opensearch._types.OpenSearchException) {
+                org.opensearch.client.opensearch._types.OpenSearchException e =
+                        (org.opensearch.client.opensearch._types.OpenSearchException) t;
+                return new OpenSearchException(message, e.status(), e.error() != null ? e.error().type() : null, null);
+            } else if (t instanceof ResponseException) {
+                org.opensearch.client.Response response = ((ResponseException) t).getResponse();
+                return new OpenSearchException(message, response.getStatusLine().getStatusCode(),
+                        errorType(response.getEntity()), retryAfter(response.getHeader("Retry-After")));
+            } else if (t instanceof CircuitOpenException) {
+                return new OpenSearchException(message, 503, CircuitOpenException.TYPE, ((CircuitOpenException) t).getRetryAfter());
+            } else if (t instanceof ConcurrencyLimitException) {
+                return new OpenSearchException(message, 503, ConcurrencyLimitException.TYPE, null);
+            }
+        }
+        return new OpenSearchException(message);
+    }
+
+    /**
+     * Creates the exception of an HTTP response with an error status
+     *
+     * @param status Status of the response
+     * @param header Value of its {@code Retry-After} header, in seconds or as an HTTP date
+     * @param body   Body of the response, used to read the error type
+     */
+    public static OpenSearchException fromResponse(String message, int status, String header, String body) {
+        String type = null;
+        try {
+            type = errorType(body);
+        } catch (Exception ignored) {
+            // The body is not an OpenSearch error
+        }
+        return new OpenSearchException(message, status, type, retryAfter(header));
+    }
+
+    /**
+     * @return HTTP status of the response, 0 if the cluster didn't answer
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return OpenSearch error type, like {@code es_rejected_execution_exception}, null if unknown
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return Delay asked by the cluster before retrying, null if none
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return True if the cluster rejected the request because it's busy or unavailable,
+     * so the same request may succeed later
+     */
+    public boolean isRetryable() {
+        return RETRYABLE_STATUS.contains(status);
+    }
+
+    /**
+     * Parses a {@code Retry-After} header
+     *
+     * @return The delay, null if the header is missing or not valid
+     */
+    public static Duration retryAfter(String header) {
+        if (header == null || header.isBlank())
+            return null;
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(header.trim())));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(header.trim());
+            return date != null ? Duration.ofMillis(Math.max(0, date.getTime() - System.currentTimeMillis())) : null;
+        }
+    }
+
+    private static String errorType(HttpEntity entity) {
+        try {
+            return entity != null ? errorType(EntityUtils.toString(entity)) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String errorType(String body) {
+        if (body == null || body.isBlank())
+            return null;
+        JsonElement json = JsonParser.parseString(body);
+        if (!json.isJsonObject())
+            return null;
+        JsonElement error = json.getAsJsonObject().get("error");
+        if (error == null || !error.isJsonObject())
+            return null;
+        JsonObject cause = error.getAsJsonObject();
+        return cause.has("type") ? cause.get("type").getAsString() : null;
     }
 }
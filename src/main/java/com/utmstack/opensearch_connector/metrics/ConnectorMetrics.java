@@ -0,0 +1,147 @@
+package com.utmstack.opensearch_connector.metrics;
+
+import com.utmstack.opensearch_connector.types.EndpointStats;
+import com.utmstack.opensearch_connector.types.OperationStats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in {@link MetricsListener} that keeps the measurements in memory, lock-free. Once an operation or
+ * endpoint has been seen, recording doesn't allocate. Read them with {@link #getOperations()} and
+ * {@link #getEndpoints()}, for example to publish them periodically.
+ * <br>
+ * Example:
+ * <pre>{@code
+ * ConnectorMetrics metrics = new ConnectorMetrics();
+ * OpenSearch openSearch = OpenSearch.builder()
+ *         .withHost("localhost", 9200, HttpScheme.https)
+ *         .withMetrics(metrics)
+ *         .build();
+ * long p99 = metrics.getOperations().get("search").getLatency().getP99();
+ * }</pre>
+ */
+public class ConnectorMetrics implements MetricsListener {
+    private static final String[] STATUS_CLASSES = {"other", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStart(String operation) {
+        operation(operation).inFlight.increment();
+    }
+
+    @Override
+    public void onSuccess(String operation, long nanos, long tookMillis) {
+        Operation metrics = operation(operation);
+        metrics.inFlight.decrement();
+        metrics.count.increment();
+        metrics.latency.record(nanos / 1000);
+        if (tookMillis >= 0)
+            metrics.took.record(tookMillis * 1000);
+    }
+
+    @Override
+    public void onFailure(String operation, long nanos, String errorClass) {
+        Operation metrics = operation(operation);
+        metrics.inFlight.decrement();
+        metrics.count.increment();
+        metrics.errors.increment();
+        counter(metrics.errorClasses, errorClass).increment();
+    }
+
+    @Override
+    public void onExchange(String endpoint, int status, long requestBytes, long responseBytes, long nanos) {
+        Endpoint metrics = endpoint(endpoint);
+        metrics.count.increment();
+        if (requestBytes > 0)
+            metrics.requestBytes.add(requestBytes);
+        if (responseBytes > 0)
+            metrics.responseBytes.add(responseBytes);
+        metrics.statuses.incrementAndGet(status >= 100 && status < 600 ? status / 100 : 0);
+        metrics.latency.record(nanos / 1000);
+    }
+
+    @Override
+    public void onRetry(String endpoint, int attempt, String errorClass) {
+        endpoint(endpoint).retries.increment();
+    }
+
+    /**
+     * @return The measurements of every operation by name, sorted
+     */
+    public Map<String, OperationStats> getOperations() {
+        Map<String, OperationStats> result = new TreeMap<>();
+        operations.forEach((name, metrics) -> {
+            Map<String, Long> errorClasses = new TreeMap<>();
+            metrics.errorClasses.forEach((type, count) -> errorClasses.put(type, count.sum()));
+            result.put(name, new OperationStats(name, metrics.count.sum(), metrics.errors.sum(),
+                    metrics.inFlight.sum(), Collections.unmodifiableMap(errorClasses),
+                    metrics.latency.snapshot(), metrics.took.snapshot()));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return The measurements of every endpoint by name, sorted
+     */
+    public Map<String, EndpointStats> getEndpoints() {
+        Map<String, EndpointStats> result = new TreeMap<>();
+        endpoints.forEach((name, metrics) -> {
+            Map<String, Long> statuses = new TreeMap<>();
+            for (int i = 0; i < STATUS_CLASSES.length; i++)
+                if (metrics.statuses.get(i) > 0)
+                    statuses.put(STATUS_CLASSES[i], metrics.statuses.get(i));
+            result.put(name, new EndpointStats(name, metrics.count.sum(), metrics.requestBytes.sum(),
+                    metrics.responseBytes.sum(), metrics.retries.sum(), Collections.unmodifiableMap(statuses),
+                    metrics.latency.snapshot()));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Forgets all the measurements
+     */
+    public void reset() {
+        operations.clear();
+        endpoints.clear();
+    }
+
+    private Operation operation(String name) {
+        // The lookup of an existing entry doesn't lock nor allocate, unlike computeIfAbsent
+        Operation metrics = operations.get(name);
+        return metrics != null ? metrics : operations.computeIfAbsent(name, k -> new Operation());
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint metrics = endpoints.get(name);
+        return metrics != null ? metrics : endpoints.computeIfAbsent(name, k -> new Endpoint());
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    private static class Operation {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final Map<String, LongAdder> errorClasses = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram took = new LatencyHistogram();
+    }
+
+    private static class Endpoint {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final AtomicLongArray statuses = new AtomicLongArray(STATUS_CLASSES.length);
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,169 @@
+package com.utmstack.opensearch_connector.metrics;
+
+import com.utmstack.opensearch_connector.exceptions.OpenSearchException;
+import org.opensearch.client.opensearch.core.MsearchResponse;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.UpdateByQueryResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports the measurements of the connector to a {@link MetricsListener}. Without a listener every method
+ * returns at once, without reading the clock, so the instrumentation costs a field check per call.
+ */
+public final class Instrumentation {
+    private static final Instrumentation DISABLED = new Instrumentation(null);
+    private static final List<String> ENDPOINTS = List.of("_search", "_msearch", "_bulk", "_doc", "_create",
+            "_update", "_count", "_mget", "_sql", "_field_caps", "_mapping", "_cat", "_nodes", "_cluster", "_tasks",
+            "_update_by_query", "_delete_by_query", "_rethrottle", "_resolve", "_scroll", "_pit", "_settings",
+            "_refresh", "_close", "_open", "_alias", "_aliases", "_template", "_index_template", "_stats");
+    private final MetricsListener listener;
+    private final Map<String, String> operations = new ConcurrentHashMap<>();
+
+    private Instrumentation(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param listener Receiver of the measurements, null to disable them
+     */
+    public static Instrumentation of(MetricsListener listener) {
+        return listener != null ? new Instrumentation(listener) : DISABLED;
+    }
+
+    public static Instrumentation disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return listener != null;
+    }
+
+    /**
+     * Reports the start of an operation
+     *
+     * @param ctx Context of the operation, {@code Class.method}, the method is the name of the operation
+     * @return The start time, to be passed to {@link #success} or {@link #failure}, 0 if disabled
+     */
+    public long start(String ctx) {
+        if (listener == null)
+            return 0;
+        listener.onStart(operation(ctx));
+        return System.nanoTime();
+    }
+
+    /**
+     * Reports the end of a successful operation, with the time reported by the cluster if the value has it
+     *
+     * @param start Value returned by {@link #start(String)}, nothing is reported if it's 0
+     * @return The value
+     */
+    public <R> R success(String ctx, long start, R value) {
+        if (listener != null && start != 0)
+            listener.onSuccess(operation(ctx), System.nanoTime() - start, took(value));
+        return value;
+    }
+
+    /**
+     * Reports the end of a failed operation
+     *
+     * @param start Value returned by {@link #start(String)}, nothing is reported if it's 0
+     * @return The error
+     */
+    public <E extends Throwable> E failure(String ctx, long start, E error) {
+        if (listener != null && start != 0)
+            listener.onFailure(operation(ctx), System.nanoTime() - start, errorClass(error));
+        return error;
+    }
+
+    /**
+     * Reports the operation of a future, from its start until it's completed
+     */
+    public <R> CompletableFuture<R> track(String ctx, CompletableFuture<R> future) {
+        if (listener == null)
+            return future;
+        long start = start(ctx);
+        return future.whenComplete((value, error) -> {
+            if (error == null)
+                success(ctx, start, value);
+            else
+                failure(ctx, start, error);
+        });
+    }
+
+    public void exchange(String endpoint, int status, long requestBytes, long responseBytes, long nanos) {
+        if (listener != null)
+            listener.onExchange(endpoint, status, requestBytes, responseBytes, nanos);
+    }
+
+    public void retry(String method, String path, int attempt, Throwable error) {
+        if (listener != null)
+            listener.onRetry(endpoint(method, path), attempt, errorClass(error));
+    }
+
+    /**
+     * Names the API called by a request: the last segment of its path that starts with {@code _}, as
+     * {@code _search} in {@code /logs-*}{@code /_search}, or the method for the requests to an index
+     */
+    public static String endpoint(String method, String path) {
+        if (path == null)
+            return method;
+        int end = path.indexOf('?');
+        if (end < 0)
+            end = path.length();
+        int segment = -1;
+        for (int i = 0; i < end; i++)
+            if (path.charAt(i) == '_' && (i == 0 || path.charAt(i - 1) == '/'))
+                segment = i;
+        if (segment < 0)
+            return method;
+        int segmentEnd = path.indexOf('/', segment);
+        if (segmentEnd < 0 || segmentEnd > end)
+            segmentEnd = end;
+        // Known endpoints are returned without allocating
+        for (String endpoint : ENDPOINTS)
+            if (endpoint.length() == segmentEnd - segment && path.startsWith(endpoint, segment))
+                return endpoint;
+        return path.substring(segment, segmentEnd);
+    }
+
+    /**
+     * @return The OpenSearch type of the error, {@code http_<status>} if it has no type, or the name of the
+     * exception if the cluster didn't answer
+     */
+    public static String errorClass(Throwable error) {
+        OpenSearchException info = error instanceof OpenSearchException
+                ? (OpenSearchException) error
+                : OpenSearchException.of("", error);
+        if (info.getType() != null)
+            return info.getType();
+        if (info.getStatus() > 0)
+            return "http_" + info.getStatus();
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root)
+            root = root.getCause();
+        return root.getClass().getSimpleName();
+    }
+
+    private String operation(String ctx) {
+        String operation = operations.get(ctx);
+        if (operation == null) {
+            operation = ctx.substring(ctx.lastIndexOf('.') + 1);
+            operations.put(ctx, operation);
+        }
+        return operation;
+    }
+
+    private static long took(Object value) {
+        if (value instanceof SearchResponse)
+            return ((SearchResponse<?>) value).took();
+        if (value instanceof MsearchResponse)
+            return ((MsearchResponse<?>) value).took();
+        if (value instanceof UpdateByQueryResponse && ((UpdateByQueryResponse) value).took() != null)
+            return ((UpdateByQueryResponse) value).took();
+        return -1;
+    }
+}
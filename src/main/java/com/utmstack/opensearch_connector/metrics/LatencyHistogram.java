@@ -0,0 +1,92 @@
+package com.utmstack.opensearch_connector.metrics;
+
+import com.utmstack.opensearch_connector.types.HistogramSnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with log-linear buckets, as HdrHistogram: every power of two is split in 32 buckets,
+ * so any value is kept with an error under 3.2%. Recording is a few atomic increments and never allocates,
+ * so it can be used on every request. Values are in any unit, the connector records microseconds.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value Value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        // Only written when the value is a new extreme, so concurrent recordings don't contend on them
+        long current = min.get();
+        while (value < current && !min.compareAndSet(current, value))
+            current = min.get();
+        current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * @return The values recorded until now, the histogram keeps counting
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        if (count == 0)
+            return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0);
+        long maximum = max.get();
+        return new HistogramSnapshot(count, min.get(), maximum, (double) sum.sum() / count,
+                percentile(copy, count, maximum, 50), percentile(copy, count, maximum, 90),
+                percentile(copy, count, maximum, 99), percentile(copy, count, maximum, 99.9));
+    }
+
+    private static long percentile(long[] counts, long count, long max, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Values under 32 have their own bucket, the others share it with the values that have the same
+     * 6 most significant bits
+     */
+    static int index(long value) {
+        if (value < SUB_COUNT)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+            return BUCKETS - 1;
+        int shift = exponent - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_COUNT)
+            return index;
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
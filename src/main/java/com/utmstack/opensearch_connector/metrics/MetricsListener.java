@@ -0,0 +1,57 @@
+package com.utmstack.opensearch_connector.metrics;
+
+/**
+ * Receives the measurements of the connector, implement it to send them to any metrics backend or use
+ * {@link ConnectorMetrics}. The methods are called from the threads of the callers and of the I/O of the
+ * client, so they must be thread-safe and fast: they run on every request.
+ * <br>
+ * Operations are the calls to the connector, named as its methods ({@code search}, {@code index},
+ * {@code getFieldValues}, {@code searchBySqlQuery}, {@code executeHttpRequest}...), the sync and async
+ * variants share the name. Endpoints are the HTTP exchanges with the nodes, named by the API they call
+ * ({@code _search}, {@code _msearch}, {@code _bulk}, {@code _sql}...), an operation can make many of them.
+ */
+public interface MetricsListener {
+    /**
+     * An operation started
+     */
+    default void onStart(String operation) {
+    }
+
+    /**
+     * An operation finished successfully
+     *
+     * @param nanos      Time observed by the client
+     * @param tookMillis Time reported by the cluster in the response, -1 if the response has none
+     */
+    default void onSuccess(String operation, long nanos, long tookMillis) {
+    }
+
+    /**
+     * An operation failed
+     *
+     * @param nanos      Time observed by the client
+     * @param errorClass OpenSearch error type (like {@code es_rejected_execution_exception}), {@code http_<status>}
+     *                   if the error has no type, or the name of the exception if the cluster didn't answer
+     */
+    default void onFailure(String operation, long nanos, String errorClass) {
+    }
+
+    /**
+     * An HTTP exchange with a node finished, whatever its status
+     *
+     * @param requestBytes  Size of the request body, -1 if unknown
+     * @param responseBytes Size of the response body, -1 if unknown
+     * @param nanos         Time from sending the request to receiving the response headers
+     */
+    default void onExchange(String endpoint, int status, long requestBytes, long responseBytes, long nanos) {
+    }
+
+    /**
+     * A failed request is going to be sent again
+     *
+     * @param attempt    Number of the attempt that failed, starting at 1
+     * @param errorClass Class of the error, as in {@link #onFailure(String, long, String)}
+     */
+    default void onRetry(String endpoint, int attempt, String errorClass) {
+    }
+}
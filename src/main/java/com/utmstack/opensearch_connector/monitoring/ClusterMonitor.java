@@ -0,0 +1,187 @@
+package com.utmstack.opensearch_connector.monitoring;
+
+import com.utmstack.opensearch_connector.types.ClusterSnapshot;
+import com.utmstack.opensearch_connector.types.ElasticCluster;
+import com.utmstack.opensearch_connector.types.NodeMetrics;
+import com.utmstack.opensearch_connector.types.NodeSample;
+import com.utmstack.opensearch_connector.types.NodeSeries;
+import com.utmstack.opensearch_connector.types.NodeStats;
+import org.opensearch.client.opensearch.cat.nodes.NodesRecord;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Samples the stats of the nodes ({@code _cat/nodes}) in the background at a fixed interval and keeps the
+ * latest sample and a short history of every node. Readers, such as a health widget polling the cluster,
+ * get them without calling the cluster and without locks: the latest sample is an immutable snapshot and
+ * the history is kept in {@link NodeHistory} ring buffers. Nodes that leave the cluster are forgotten at
+ * the next sample, a failed sample keeps the previous one.
+ * <br>
+ * With a source of {@code _nodes/stats}, every sample also reads the {@link NodeMetrics} of the nodes, with
+ * the rates since the previous sample. A failed read of the stats keeps the previous metrics and is counted
+ * on its own, the sample of the nodes is still published.
+ */
+public class ClusterMonitor implements Closeable {
+    private static final String CLASSNAME = "ClusterMonitor";
+    private final Callable<List<NodesRecord>> source;
+    private final Callable<List<NodeStats>> statsSource;
+    private final NodeStatsTracker tracker = new NodeStatsTracker();
+    private final int historySize;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, NodeHistory> histories = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder statsFailures = new LongAdder();
+    private volatile ClusterSnapshot latest;
+    private volatile ElasticCluster cluster;
+    private volatile List<NodeMetrics> nodeMetrics = Collections.emptyList();
+
+    /**
+     * @param source      Reads the nodes from {@code _cat/nodes}, with sizes in megabytes
+     * @param statsSource Reads the stats of the nodes from {@code _nodes/stats}, null to skip them
+     * @param interval    Time between two samples, the first one runs at once
+     * @param historySize Samples kept per node
+     */
+    public ClusterMonitor(Callable<List<NodesRecord>> source, Callable<List<NodeStats>> statsSource,
+                          Duration interval, int historySize) {
+        final String ctx = CLASSNAME + ".ClusterMonitor";
+        if (interval == null || interval.isNegative() || interval.isZero())
+            throw new RuntimeException(ctx + ": The sample interval must be greater than 0");
+        if (historySize < 1)
+            throw new RuntimeException(ctx + ": The history size must be greater than 0");
+        this.source = source;
+        this.statsSource = statsSource;
+        this.historySize = historySize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "opensearch-cluster-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::sampleQuietly, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Samples the nodes now, without waiting for the next scheduled sample
+     *
+     * @return The new snapshot
+     */
+    public synchronized ClusterSnapshot sample() {
+        final String ctx = CLASSNAME + ".sample";
+        ClusterSnapshot snapshot;
+        try {
+            List<NodesRecord> records = source.call();
+            long timestamp = System.currentTimeMillis();
+            List<NodeSample> samples = new ArrayList<>(records.size());
+            Set<String> names = new HashSet<>();
+            for (NodesRecord record : records) {
+                NodeSample sample = new NodeSample(record, timestamp);
+                samples.add(sample);
+                names.add(sample.getName());
+                // Only this method adds samples, it's synchronized so every history has a single writer
+                histories.computeIfAbsent(sample.getName(), name -> new NodeHistory(name, historySize)).add(sample);
+            }
+            histories.keySet().retainAll(names);
+
+            snapshot = new ClusterSnapshot(timestamp, Collections.unmodifiableList(samples));
+            cluster = records.isEmpty() ? null : new ElasticCluster(records);
+            latest = snapshot;
+        } catch (Exception e) {
+            failures.increment();
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+
+        if (statsSource != null) {
+            try {
+                nodeMetrics = tracker.update(statsSource.call());
+            } catch (Exception e) {
+                statsFailures.increment();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return The latest sample, empty until the first sample succeeds
+     */
+    public Optional<ClusterSnapshot> getLatest() {
+        return Optional.ofNullable(latest);
+    }
+
+    /**
+     * @return The latest sample as returned by {@code OpenSearch.getClusterNodesInfo()}, empty until the
+     * first sample with nodes succeeds
+     */
+    public Optional<ElasticCluster> getCluster() {
+        return Optional.ofNullable(cluster);
+    }
+
+    /**
+     * @return The metrics of every node in the latest sample, empty until the first sample succeeds or if
+     * the monitor has no source of {@code _nodes/stats}
+     */
+    public List<NodeMetrics> getNodeMetrics() {
+        return nodeMetrics;
+    }
+
+    /**
+     * @param node    Name of the node
+     * @param samples Maximum number of samples, the most recent ones
+     * @return The recent samples of the node, empty if it isn't in the cluster
+     */
+    public Optional<NodeSeries> getHistory(String node, int samples) {
+        NodeHistory history = histories.get(node);
+        return history != null ? Optional.of(history.read(samples)) : Optional.empty();
+    }
+
+    /**
+     * @param samples Maximum number of samples per node, the most recent ones
+     * @return The recent samples of every node by name, sorted
+     */
+    public Map<String, NodeSeries> getHistory(int samples) {
+        Map<String, NodeSeries> result = new TreeMap<>();
+        histories.forEach((name, history) -> result.put(name, history.read(samples)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return Samples that failed since the monitor started
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return Reads of {@code _nodes/stats} that failed since the monitor started, their samples of the nodes
+     * are not counted as failed
+     */
+    public long getStatsFailures() {
+        return statsFailures.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (Exception ignored) {
+            // The previous sample is kept until the next one succeeds
+        }
+    }
+}
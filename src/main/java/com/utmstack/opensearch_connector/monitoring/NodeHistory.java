@@ -0,0 +1,115 @@
+package com.utmstack.opensearch_connector.monitoring;
+
+import com.utmstack.opensearch_connector.types.NodeSample;
+import com.utmstack.opensearch_connector.types.NodeSeries;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Recent samples of a node in ring buffers of primitives, one per stat, so keeping the history doesn't
+ * allocate. A single thread adds the samples and any thread reads them without locks: the samples are
+ * written before the counter is published, and a reader that raced with the writer over the oldest slot
+ * copies them again.
+ */
+public class NodeHistory {
+    private final String name;
+    private final int capacity;
+    // One slot more than the capacity, the writer may be overwriting it while a full history is read
+    private final int slots;
+    private final long[] timestamps;
+    private final float[] cpuPercent;
+    private final float[] heapPercent;
+    private final float[] ramPercent;
+    private final float[] diskUsedPercent;
+    private final long[] heapUsed;
+    private final long[] ramUsed;
+    private final long[] diskUsed;
+    private volatile long count;
+
+    /**
+     * @param capacity Maximum number of samples kept, the oldest one is replaced when it's full
+     */
+    public NodeHistory(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+        this.slots = capacity + 1;
+        this.timestamps = new long[slots];
+        this.cpuPercent = new float[slots];
+        this.heapPercent = new float[slots];
+        this.ramPercent = new float[slots];
+        this.diskUsedPercent = new float[slots];
+        this.heapUsed = new long[slots];
+        this.ramUsed = new long[slots];
+        this.diskUsed = new long[slots];
+    }
+
+    /**
+     * Adds a sample, replacing the oldest one if the history is full. Only one thread may add samples.
+     */
+    void add(NodeSample sample) {
+        long next = count;
+        int slot = (int) (next % slots);
+        timestamps[slot] = sample.getTimestamp();
+        cpuPercent[slot] = sample.getCpuPercent();
+        heapPercent[slot] = sample.getHeapPercent();
+        ramPercent[slot] = sample.getRamPercent();
+        diskUsedPercent[slot] = sample.getDiskUsedPercent();
+        heapUsed[slot] = sample.getHeapUsed();
+        ramUsed[slot] = sample.getRamUsed();
+        diskUsed[slot] = sample.getDiskUsed();
+        // Publishes the slot, a reader that sees the new count sees its values
+        count = next + 1;
+    }
+
+    /**
+     * @param samples Maximum number of samples to read, the most recent ones
+     * @return The samples, oldest first, at most the capacity of the history
+     */
+    public NodeSeries read(int samples) {
+        while (true) {
+            long end = count;
+            int size = (int) Math.min(Math.min(Math.max(0, samples), capacity), end);
+            long first = end - size;
+            long[] timestamps = new long[size];
+            float[] cpuPercent = new float[size];
+            float[] heapPercent = new float[size];
+            float[] ramPercent = new float[size];
+            float[] diskUsedPercent = new float[size];
+            long[] heapUsed = new long[size];
+            long[] ramUsed = new long[size];
+            long[] diskUsed = new long[size];
+            for (int i = 0; i < size; i++) {
+                int slot = (int) ((first + i) % slots);
+                timestamps[i] = this.timestamps[slot];
+                cpuPercent[i] = this.cpuPercent[slot];
+                heapPercent[i] = this.heapPercent[slot];
+                ramPercent[i] = this.ramPercent[slot];
+                diskUsedPercent[i] = this.diskUsedPercent[slot];
+                heapUsed[i] = this.heapUsed[slot];
+                ramUsed[i] = this.ramUsed[slot];
+                diskUsed[i] = this.diskUsed[slot];
+            }
+            // The copies above must not be reordered after the second read of the counter
+            VarHandle.acquireFence();
+            // While the counter is n the writer may be writing sample n, over the slot of sample n - slots
+            if (first + slots > count)
+                return new NodeSeries(name, timestamps, cpuPercent, heapPercent, ramPercent, diskUsedPercent,
+                        heapUsed, ramUsed, diskUsed);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Samples added since the history was created, including the replaced ones
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,33 @@
+package com.utmstack.opensearch_connector.monitoring;
+
+import com.utmstack.opensearch_connector.types.NodeMetrics;
+import com.utmstack.opensearch_connector.types.NodeStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the latest stats of every node, to compute the rates of the next sample against them. Nodes
+ * missing from a sample are forgotten.
+ */
+public class NodeStatsTracker {
+    private Map<String, NodeStats> previous = new HashMap<>();
+
+    /**
+     * @param stats Stats of all the nodes of the cluster sampled at the same time
+     * @return The metrics of every node, with the rates since the previous sample
+     */
+    public synchronized List<NodeMetrics> update(List<NodeStats> stats) {
+        Map<String, NodeStats> latest = new HashMap<>();
+        List<NodeMetrics> result = new ArrayList<>(stats.size());
+        for (NodeStats node : stats) {
+            result.add(new NodeMetrics(node, previous.get(node.getId())));
+            latest.put(node.getId(), node);
+        }
+        previous = latest;
+        return Collections.unmodifiableList(result);
+    }
+}
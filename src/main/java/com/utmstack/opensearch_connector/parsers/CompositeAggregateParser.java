@@ -0,0 +1,71 @@
+package com.utmstack.opensearch_connector.parsers;
+
+import com.utmstack.opensearch_connector.types.BucketAggregation;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import org.apache.commons.collections4.MapUtils;
+import org.opensearch.client.json.JsonData;
+import org.opensearch.client.opensearch._types.aggregations.Aggregate;
+import org.opensearch.client.opensearch._types.aggregations.CompositeAggregate;
+
+import java.util.*;
+
+public class CompositeAggregateParser {
+    private static final String CLASSNAME = "CompositeAggregateParser";
+
+    /**
+     * Parses the buckets of a page of a composite aggregation
+     *
+     * @param aggregate The composite aggregate of the response
+     * @param source    Name of the source whose value is used as the bucket key
+     * @return A list of {@link BucketAggregation}
+     */
+    public static List<BucketAggregation> parse(Aggregate aggregate, String source) {
+        final String ctx = CLASSNAME + ".parse";
+        try {
+            if (Objects.isNull(aggregate) || !aggregate.isComposite())
+                return Collections.emptyList();
+
+            List<BucketAggregation> result = new ArrayList<>();
+            aggregate.composite().buckets().array()
+                    .forEach(bucket -> result.add(new BucketAggregation(toKey(bucket.key().get(source)),
+                            bucket.docCount(), bucket.aggregations())));
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Gets the key to request the next page of a composite aggregation
+     *
+     * @param aggregate The composite aggregate of the response
+     * @return The {@code after_key} as a map of source name and value, null if there are no more pages
+     */
+    public static Map<String, String> afterKey(Aggregate aggregate) {
+        final String ctx = CLASSNAME + ".afterKey";
+        try {
+            if (Objects.isNull(aggregate) || !aggregate.isComposite())
+                return null;
+
+            CompositeAggregate composite = aggregate.composite();
+            if (MapUtils.isEmpty(composite.afterKey()))
+                return null;
+
+            Map<String, String> result = new LinkedHashMap<>();
+            composite.afterKey().forEach((k, v) -> result.put(k, toKey(v)));
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private static String toKey(JsonData data) {
+        if (Objects.isNull(data))
+            return null;
+        JsonValue value = data.toJson();
+        if (value.getValueType() == JsonValue.ValueType.NULL)
+            return null;
+        return value.getValueType() == JsonValue.ValueType.STRING ? ((JsonString) value).getString() : value.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.utmstack.opensearch_connector.types;
+
+/**
+ * Execution options of the update-by-query and delete-by-query tasks
+ */
+public class ByQueryOptions {
+    private final Integer slices;
+    private final Float requestsPerSecond;
+    private final boolean proceedOnConflicts;
+    private final boolean refresh;
+    private final Integer batchSize;
+
+    private ByQueryOptions(Builder builder) {
+        this.slices = builder.slices;
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.proceedOnConflicts = builder.proceedOnConflicts;
+        this.refresh = builder.refresh;
+        this.batchSize = builder.batchSize;
+    }
+
+    public static ByQueryOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * @return Number of slices, null means {@code auto} (one slice per shard)
+     */
+    public Integer getSlices() {
+        return slices;
+    }
+
+    /**
+     * @return Throttle in documents per second, null means unlimited
+     */
+    public Float getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public boolean isProceedOnConflicts() {
+        return proceedOnConflicts;
+    }
+
+    public boolean isRefresh() {
+        return refresh;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Integer slices;
+        private Float requestsPerSecond;
+        private boolean proceedOnConflicts = true;
+        private boolean refresh = true;
+        private Integer batchSize;
+
+        /**
+         * @param slices Number of slices the task is split into, null (default) lets OpenSearch use one per shard
+         */
+        public Builder withSlices(Integer slices) {
+            this.slices = slices;
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond Maximum documents per second processed by the task, null (default) for unlimited
+         */
+        public Builder withRequestsPerSecond(Float requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param proceedOnConflicts If true (default), version conflicts are counted instead of aborting the task
+         */
+        public Builder withProceedOnConflicts(boolean proceedOnConflicts) {
+            this.proceedOnConflicts = proceedOnConflicts;
+            return this;
+        }
+
+        /**
+         * @param refresh If true (default), the affected indices are refreshed when the task completes
+         */
+        public Builder withRefresh(boolean refresh) {
+            this.refresh = refresh;
+            return this;
+        }
+
+        /**
+         * @param batchSize Number of documents per scroll batch (OpenSearch default is 1000)
+         */
+        public Builder withBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public ByQueryOptions build() {
+            if (slices != null && slices < 1)
+                throw new RuntimeException("The number of slices must be greater than 0");
+            if (requestsPerSecond != null && requestsPerSecond <= 0)
+                throw new RuntimeException("Requests per second must be greater than 0, use null for unlimited");
+            return new ByQueryOptions(this);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.utmstack.opensearch_connector.types;
+
+import com.utmstack.opensearch_connector.enums.ByQueryOperation;
+
+/**
+ * Handle of an update-by-query or delete-by-query running in background as a task of the cluster
+ */
+public class ByQueryTask {
+    private final String taskId;
+    private final ByQueryOperation operation;
+
+    public ByQueryTask(String taskId, ByQueryOperation operation) {
+        this.taskId = taskId;
+        this.operation = operation;
+    }
+
+    /**
+     * @return Task id in the form {@code nodeId:taskNumber}
+     */
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public ByQueryOperation getOperation() {
+        return operation;
+    }
+
+    @Override
+    public String toString() {
+        return operation.endpoint() + "[" + taskId + "]";
+    }
+}
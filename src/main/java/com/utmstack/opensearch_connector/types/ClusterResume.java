@@ -4,71 +4,95 @@ import java.util.List;
 import java.util.Locale;
 
 public class ClusterResume {
-    private Float diskTotal;
-    private Float diskUsed;
-    private Float ramMax;
-    private Float ramCurrent;
-    private Float heapMax;
-    private Float heapCurrent;
-    private final List<ElasticNode> nodes;
-
-        public ClusterResume(List<ElasticNode> nodes) {
-            this.nodes = nodes;
-            getDiskTotal();
-            getDiskUsed();
-            getRamMax();
-            getRamCurrent();
-            getHeapMax();
-            getHeapCurrent();
+    private final Float diskTotal;
+    private final Float diskUsed;
+    private final Float diskAvailable;
+    private final Float diskUsedPercent;
+    private final Float ramMax;
+    private final Float ramCurrent;
+    private final Float ramPercent;
+    private final Float cpuPercent;
+    private final Float heapMax;
+    private final Float heapCurrent;
+    private final Float heapPercent;
+
+    /**
+     * Computes every aggregate once, in a single pass over the nodes
+     */
+    public ClusterResume(List<ElasticNode> nodes) {
+        float diskTotal = 0, diskUsed = 0, diskAvailable = 0, ramMax = 0, ramCurrent = 0, cpu = 0, heapMax = 0,
+                heapCurrent = 0;
+        for (ElasticNode node : nodes) {
+            diskTotal += node.getDiskTotal();
+            diskUsed += node.getDiskUsed();
+            diskAvailable += node.getDiskAvailable();
+            ramMax += node.getRamMax();
+            ramCurrent += node.getRamCurrent();
+            cpu += node.getCpuPercent();
+            heapMax += node.getHeapMax();
+            heapCurrent += node.getHeapCurrent();
         }
+        heapMax /= nodes.size();
+        heapCurrent /= nodes.size();
+
+        this.diskTotal = round(diskTotal);
+        this.diskUsed = round(diskUsed);
+        this.diskAvailable = diskAvailable;
+        this.diskUsedPercent = round(diskUsed / diskTotal * 100);
+        this.ramMax = round(ramMax);
+        this.ramCurrent = round(ramCurrent);
+        this.ramPercent = round(ramCurrent / ramMax * 100);
+        this.cpuPercent = cpu / nodes.size();
+        this.heapMax = round(heapMax);
+        this.heapCurrent = round(heapCurrent);
+        this.heapPercent = round(heapCurrent / heapMax * 100);
+    }
+
+    private static Float round(float value) {
+        return Float.parseFloat(String.format(Locale.US, "%.2f", value));
+    }
 
     public Float getDiskTotal() {
-        this.diskTotal = nodes.stream().map(ElasticNode::getDiskTotal).reduce((float) 0, Float::sum);
-        return Float.parseFloat(String.format(Locale.US, "%.2f", this.diskTotal));
+        return diskTotal;
     }
 
     public Float getDiskUsed() {
-        this.diskUsed = nodes.stream().map(ElasticNode::getDiskUsed).reduce((float) 0, Float::sum);
-        return Float.parseFloat(String.format(Locale.US, "%.2f", this.diskUsed));
+        return diskUsed;
     }
 
     public Float getDiskAvailable() {
-        return nodes.stream().map(ElasticNode::getDiskAvailable).reduce((float) 0, Float::sum);
+        return diskAvailable;
     }
 
     public Float getDiskUsedPercent() {
-        return Float.parseFloat(String.format(Locale.US, "%.2f", (diskUsed / diskTotal * 100)));
+        return diskUsedPercent;
     }
 
     public Float getRamMax() {
-        this.ramMax = nodes.stream().map(ElasticNode::getRamMax).reduce((float) 0, Float::sum);
-        return Float.parseFloat(String.format(Locale.US, "%.2f", this.ramMax));
+        return ramMax;
     }
 
     public Float getRamCurrent() {
-        this.ramCurrent = nodes.stream().map(ElasticNode::getRamCurrent).reduce((float) 0, Float::sum);
-        return Float.parseFloat(String.format(Locale.US, "%.2f", this.ramCurrent));
+        return ramCurrent;
     }
 
     public Float getRamPercent() {
-        return Float.parseFloat(String.format(Locale.US, "%.2f", (ramCurrent / ramMax * 100)));
+        return ramPercent;
     }
 
     public Float getCpuPercent() {
-        return nodes.stream().map(ElasticNode::getCpuPercent).reduce((float) 0, Float::sum) / nodes.size();
+        return cpuPercent;
     }
 
     public Float getHeapMax() {
-        heapMax = nodes.stream().map(ElasticNode::getHeapMax).reduce((float) 0, Float::sum) / nodes.size();
-        return Float.parseFloat(String.format(Locale.US, "%.2f", this.heapMax));
+        return heapMax;
     }
 
     public Float getHeapCurrent() {
-        heapCurrent = nodes.stream().map(ElasticNode::getHeapCurrent).reduce((float) 0, Float::sum) / nodes.size();
-        return Float.parseFloat(String.format(Locale.US, "%.2f", this.heapCurrent));
+        return heapCurrent;
     }
 
     public Float getHeapPercent() {
-        return Float.parseFloat(String.format(Locale.US, "%.2f", (heapCurrent / heapMax * 100)));
+        return heapPercent;
     }
 }
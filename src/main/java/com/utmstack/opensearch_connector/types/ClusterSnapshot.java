@@ -0,0 +1,114 @@
+package com.utmstack.opensearch_connector.types;
+
+import java.util.List;
+
+/**
+ * Stats of all the nodes of the cluster sampled at the same time, with their totals. Sizes are in
+ * megabytes and percentages go from 0 to 100.
+ */
+public class ClusterSnapshot {
+    private final long timestamp;
+    private final List<NodeSample> nodes;
+    private final float cpuPercent;
+    private final long heapUsed;
+    private final long heapMax;
+    private final long ramUsed;
+    private final long ramMax;
+    private final long diskUsed;
+    private final long diskTotal;
+    private final long diskAvailable;
+
+    public ClusterSnapshot(long timestamp, List<NodeSample> nodes) {
+        this.timestamp = timestamp;
+        this.nodes = nodes;
+        float cpu = 0;
+        long heapUsed = 0, heapMax = 0, ramUsed = 0, ramMax = 0, diskUsed = 0, diskTotal = 0, diskAvailable = 0;
+        for (NodeSample node : nodes) {
+            cpu += node.getCpuPercent();
+            heapUsed += node.getHeapUsed();
+            heapMax += node.getHeapMax();
+            ramUsed += node.getRamUsed();
+            ramMax += node.getRamMax();
+            diskUsed += node.getDiskUsed();
+            diskTotal += node.getDiskTotal();
+            diskAvailable += node.getDiskAvailable();
+        }
+        this.cpuPercent = nodes.isEmpty() ? 0 : cpu / nodes.size();
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
+        this.ramUsed = ramUsed;
+        this.ramMax = ramMax;
+        this.diskUsed = diskUsed;
+        this.diskTotal = diskTotal;
+        this.diskAvailable = diskAvailable;
+    }
+
+    /**
+     * @return Time of the sample in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<NodeSample> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return Average CPU usage of the nodes
+     */
+    public float getCpuPercent() {
+        return cpuPercent;
+    }
+
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    public long getHeapMax() {
+        return heapMax;
+    }
+
+    public float getHeapPercent() {
+        return percent(heapUsed, heapMax);
+    }
+
+    public long getRamUsed() {
+        return ramUsed;
+    }
+
+    public long getRamMax() {
+        return ramMax;
+    }
+
+    public float getRamPercent() {
+        return percent(ramUsed, ramMax);
+    }
+
+    public long getDiskUsed() {
+        return diskUsed;
+    }
+
+    public long getDiskTotal() {
+        return diskTotal;
+    }
+
+    public long getDiskAvailable() {
+        return diskAvailable;
+    }
+
+    public float getDiskUsedPercent() {
+        return percent(diskUsed, diskTotal);
+    }
+
+    private static float percent(long used, long total) {
+        return total > 0 ? (float) used * 100 / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterSnapshot{timestamp=" + timestamp + ", nodes=" + nodes.size() + ", cpuPercent=" + cpuPercent
+                + ", heapUsed=" + heapUsed + ", heapMax=" + heapMax + ", ramUsed=" + ramUsed + ", ramMax=" + ramMax
+                + ", diskUsed=" + diskUsed + ", diskTotal=" + diskTotal + "}";
+    }
+}
@@ -0,0 +1,68 @@
+package com.utmstack.opensearch_connector.types;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the measurements of the HTTP exchanges with an endpoint of the cluster
+ */
+public class EndpointStats {
+    private final String endpoint;
+    private final long count;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long retries;
+    private final Map<String, Long> statuses;
+    private final HistogramSnapshot latency;
+
+    public EndpointStats(String endpoint, long count, long requestBytes, long responseBytes, long retries,
+                         Map<String, Long> statuses, HistogramSnapshot latency) {
+        this.endpoint = endpoint;
+        this.count = count;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.retries = retries;
+        this.statuses = statuses;
+        this.latency = latency;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return Exchanges with a response, whatever its status
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return Responses by class of status: {@code 2xx}, {@code 4xx}...
+     */
+    public Map<String, Long> getStatuses() {
+        return statuses;
+    }
+
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats{endpoint=" + endpoint + ", count=" + count + ", requestBytes=" + requestBytes
+                + ", responseBytes=" + responseBytes + ", retries=" + retries + ", statuses=" + statuses
+                + ", latency=" + latency + "}";
+    }
+}
@@ -0,0 +1,98 @@
+package com.utmstack.opensearch_connector.types;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Capabilities of a field across all the indices of a pattern, taken from {@code _field_caps}
+ */
+public class FieldCapabilities {
+    private final String name;
+    private final Map<String, List<String>> indicesByType;
+    private final boolean searchable;
+    private final boolean aggregatable;
+    private final List<String> nonSearchableIndices;
+    private final List<String> nonAggregatableIndices;
+    private final String keywordField;
+
+    public FieldCapabilities(String name, Map<String, List<String>> indicesByType, boolean searchable,
+                             boolean aggregatable, List<String> nonSearchableIndices,
+                             List<String> nonAggregatableIndices, String keywordField) {
+        this.name = name;
+        this.indicesByType = Collections.unmodifiableMap(indicesByType);
+        this.searchable = searchable;
+        this.aggregatable = aggregatable;
+        this.nonSearchableIndices = nonSearchableIndices;
+        this.nonAggregatableIndices = nonAggregatableIndices;
+        this.keywordField = keywordField;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The type of the field, or the first of them if the field has a conflict
+     */
+    public String getType() {
+        return indicesByType.keySet().iterator().next();
+    }
+
+    /**
+     * @return All the types the field has across the indices
+     */
+    public List<String> getTypes() {
+        return List.copyOf(indicesByType.keySet());
+    }
+
+    /**
+     * @return True if the field has different types in different indices
+     */
+    public boolean isConflict() {
+        return indicesByType.size() > 1;
+    }
+
+    /**
+     * @return The indices where the field has each type, only filled for fields with a conflict
+     */
+    public Map<String, List<String>> getIndicesByType() {
+        return indicesByType;
+    }
+
+    /**
+     * @return True if the field is searchable in all the indices
+     */
+    public boolean isSearchable() {
+        return searchable;
+    }
+
+    /**
+     * @return True if the field is aggregatable in all the indices
+     */
+    public boolean isAggregatable() {
+        return aggregatable;
+    }
+
+    public List<String> getNonSearchableIndices() {
+        return nonSearchableIndices;
+    }
+
+    public List<String> getNonAggregatableIndices() {
+        return nonAggregatableIndices;
+    }
+
+    /**
+     * @return True if the field is a text field with a {@code .keyword} sub-field
+     */
+    public boolean hasKeywordField() {
+        return keywordField != null;
+    }
+
+    /**
+     * @return Name of the {@code .keyword} sub-field to use in terms aggregations and sorts, null if it doesn't exist
+     */
+    public String getKeywordField() {
+        return keywordField;
+    }
+}
@@ -0,0 +1,130 @@
+package com.utmstack.opensearch_connector.types;
+
+import com.utmstack.opensearch_connector.enums.TermOrder;
+import org.apache.commons.lang3.StringUtils;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+
+/**
+ * One field of a batched field values search, see {@code OpenSearch.getFieldValues(String, Query, List)}
+ */
+public class FieldValuesRequest {
+    private final String name;
+    private final String field;
+    private final Integer top;
+    private final TermOrder termOrder;
+    private final SortOrder sortOrder;
+    private final Query query;
+
+    private FieldValuesRequest(Builder builder) {
+        this.name = builder.name != null ? builder.name : builder.field;
+        this.field = builder.field;
+        this.top = builder.top;
+        this.termOrder = builder.termOrder;
+        this.sortOrder = builder.sortOrder;
+        this.query = builder.query;
+    }
+
+    /**
+     * Shortcut for the most common case, the top values of a field by amount of documents
+     *
+     * @param field The name of the field to retrieve values from
+     * @param top   The maximum number of values to retrieve, use null for default
+     */
+    public static FieldValuesRequest of(String field, Integer top) {
+        return builder().withField(field).withTop(top).build();
+    }
+
+    /**
+     * @return Key of the values of this field in the result, the field name by default
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Integer getTop() {
+        return top;
+    }
+
+    public TermOrder getTermOrder() {
+        return termOrder;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * @return Query of this field, null to use the query shared by the batch
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String name;
+        private String field;
+        private Integer top;
+        private TermOrder termOrder = TermOrder.Count;
+        private SortOrder sortOrder = SortOrder.Desc;
+        private Query query;
+
+        /**
+         * @param field The name of the field to retrieve values from, text fields must be used as keyword
+         */
+        public Builder withField(String field) {
+            this.field = field;
+            return this;
+        }
+
+        /**
+         * @param name Key of the values in the result, needed only to request the same field twice
+         */
+        public Builder withName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @param top The maximum number of values to retrieve (default 5)
+         */
+        public Builder withTop(Integer top) {
+            this.top = top;
+            return this;
+        }
+
+        /**
+         * @param termOrder Order the values by name or by amount of documents (default)
+         * @param sortOrder The way that you want to sort the values (default Desc)
+         */
+        public Builder withOrder(TermOrder termOrder, SortOrder sortOrder) {
+            this.termOrder = termOrder;
+            this.sortOrder = sortOrder;
+            return this;
+        }
+
+        /**
+         * @param query Query for this field only, replaces the query shared by the batch
+         */
+        public Builder withQuery(Query query) {
+            this.query = query;
+            return this;
+        }
+
+        public FieldValuesRequest build() {
+            if (StringUtils.isBlank(field))
+                throw new RuntimeException("You need to define the field");
+            if (termOrder == null || sortOrder == null)
+                throw new RuntimeException("You need to define the order of the values");
+            return new FieldValuesRequest(this);
+        }
+    }
+}
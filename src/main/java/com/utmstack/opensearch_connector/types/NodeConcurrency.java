@@ -0,0 +1,36 @@
+package com.utmstack.opensearch_connector.types;
+
+/**
+ * Snapshot of the requests in flight to a node and its adaptive concurrency limit
+ */
+public class NodeConcurrency {
+    private final String host;
+    private final int inFlight;
+    private final int limit;
+
+    public NodeConcurrency(String host, int inFlight, int limit) {
+        this.host = host;
+        this.inFlight = inFlight;
+        this.limit = limit;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Current limit of requests in flight, 0 if the limiter is disabled
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeConcurrency{host=" + host + ", inFlight=" + inFlight + ", limit=" + limit + "}";
+    }
+}
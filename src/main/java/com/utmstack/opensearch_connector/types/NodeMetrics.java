@@ -0,0 +1,148 @@
+package com.utmstack.opensearch_connector.types;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stats of a node with the rates of its counters between the previous sample and this one: indexing and
+ * search throughput and latency, query cache hit ratio, time in GC and rejections of every thread pool.
+ * Use them to slow down writers before the cluster rejects their requests.
+ * <br>
+ * The rates are 0 in the first sample of a node, and a counter that went back, because the node restarted,
+ * has a rate of 0 until the next sample.
+ */
+public class NodeMetrics {
+    private final NodeStats stats;
+    private final long intervalMillis;
+    private final float indexingRate;
+    private final float indexingLatencyMillis;
+    private final float searchRate;
+    private final float searchLatencyMillis;
+    private final float queryCacheHitRatio;
+    private final float gcTimeRatio;
+    private final Map<String, Float> rejectionRates;
+
+    /**
+     * @param stats    Latest stats of the node
+     * @param previous Previous stats of the same node, null if this is the first sample
+     */
+    public NodeMetrics(NodeStats stats, NodeStats previous) {
+        this.stats = stats;
+        this.intervalMillis = previous != null ? Math.max(0, stats.getTimestamp() - previous.getTimestamp()) : 0;
+        float seconds = intervalMillis / 1000f;
+        if (previous == null || intervalMillis == 0) {
+            this.indexingRate = 0;
+            this.indexingLatencyMillis = 0;
+            this.searchRate = 0;
+            this.searchLatencyMillis = 0;
+            this.queryCacheHitRatio = 0;
+            this.gcTimeRatio = 0;
+            this.rejectionRates = Collections.emptyMap();
+            return;
+        }
+
+        long indexed = delta(stats.getIndexingTotal(), previous.getIndexingTotal());
+        long queries = delta(stats.getQueryTotal(), previous.getQueryTotal());
+        long hits = delta(stats.getQueryCacheHits(), previous.getQueryCacheHits());
+        long misses = delta(stats.getQueryCacheMisses(), previous.getQueryCacheMisses());
+        long gcMillis = delta(stats.getGcYoungMillis(), previous.getGcYoungMillis())
+                + delta(stats.getGcOldMillis(), previous.getGcOldMillis());
+        this.indexingRate = indexed / seconds;
+        this.indexingLatencyMillis = indexed > 0
+                ? (float) delta(stats.getIndexingMillis(), previous.getIndexingMillis()) / indexed : 0;
+        this.searchRate = queries / seconds;
+        this.searchLatencyMillis = queries > 0
+                ? (float) delta(stats.getQueryMillis(), previous.getQueryMillis()) / queries : 0;
+        this.queryCacheHitRatio = hits + misses > 0 ? (float) hits / (hits + misses) : 0;
+        this.gcTimeRatio = Math.min(1, (float) gcMillis / intervalMillis);
+
+        Map<String, Float> rejections = new TreeMap<>();
+        stats.getThreadPools().forEach((name, pool) -> {
+            ThreadPoolStats before = previous.getThreadPools().get(name);
+            if (before != null)
+                rejections.put(name, delta(pool.getRejected(), before.getRejected()) / seconds);
+        });
+        this.rejectionRates = Collections.unmodifiableMap(rejections);
+    }
+
+    private static long delta(long current, long previous) {
+        return current >= previous ? current - previous : 0;
+    }
+
+    public NodeStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return Time between the previous sample and this one, 0 in the first sample
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * @return Documents indexed per second
+     */
+    public float getIndexingRate() {
+        return indexingRate;
+    }
+
+    /**
+     * @return Average time to index a document
+     */
+    public float getIndexingLatencyMillis() {
+        return indexingLatencyMillis;
+    }
+
+    /**
+     * @return Query phases per second on the shards of the node
+     */
+    public float getSearchRate() {
+        return searchRate;
+    }
+
+    /**
+     * @return Average time of a query phase
+     */
+    public float getSearchLatencyMillis() {
+        return searchLatencyMillis;
+    }
+
+    /**
+     * @return Fraction of the query cache lookups that hit, from 0 to 1
+     */
+    public float getQueryCacheHitRatio() {
+        return queryCacheHitRatio;
+    }
+
+    /**
+     * @return Fraction of the time spent in garbage collection, from 0 to 1
+     */
+    public float getGcTimeRatio() {
+        return gcTimeRatio;
+    }
+
+    /**
+     * @return Rejections per second of every thread pool by name, sorted
+     */
+    public Map<String, Float> getRejectionRates() {
+        return rejectionRates;
+    }
+
+    /**
+     * @return Rejections per second of a thread pool, such as {@code write} or {@code search}
+     */
+    public float getRejectionRate(String threadPool) {
+        Float rate = rejectionRates.get(threadPool);
+        return rate != null ? rate : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeMetrics{node=" + stats.getName() + ", intervalMillis=" + intervalMillis + ", indexingRate="
+                + indexingRate + ", indexingLatencyMillis=" + indexingLatencyMillis + ", searchRate=" + searchRate
+                + ", searchLatencyMillis=" + searchLatencyMillis + ", queryCacheHitRatio=" + queryCacheHitRatio
+                + ", gcTimeRatio=" + gcTimeRatio + ", rejectionRates=" + rejectionRates + "}";
+    }
+}
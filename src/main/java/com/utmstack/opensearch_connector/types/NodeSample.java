@@ -0,0 +1,131 @@
+package com.utmstack.opensearch_connector.types;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opensearch.client.opensearch.cat.nodes.NodesRecord;
+
+/**
+ * Stats of a node at a point in time, taken from {@code _cat/nodes}. Sizes are in megabytes and
+ * percentages go from 0 to 100.
+ */
+public class NodeSample {
+    private final String name;
+    private final String ip;
+    private final boolean clusterManager;
+    private final long timestamp;
+    private final float cpuPercent;
+    private final long heapUsed;
+    private final long heapMax;
+    private final float heapPercent;
+    private final long ramUsed;
+    private final long ramMax;
+    private final float ramPercent;
+    private final long diskUsed;
+    private final long diskTotal;
+    private final long diskAvailable;
+    private final float diskUsedPercent;
+
+    /**
+     * @param node      Record of {@code _cat/nodes} read with sizes in megabytes
+     * @param timestamp Time of the sample in epoch milliseconds
+     */
+    public NodeSample(NodesRecord node, long timestamp) {
+        this.name = node.name();
+        this.ip = node.ip();
+        this.clusterManager = "*".equals(clusterManager(node));
+        this.timestamp = timestamp;
+        this.cpuPercent = (float) parse(node.cpu());
+        this.heapUsed = (long) parse(node.heapCurrent());
+        this.heapMax = (long) parse(node.heapMax());
+        this.heapPercent = (float) parse(node.heapPercent());
+        this.ramUsed = (long) parse(node.ramCurrent());
+        this.ramMax = (long) parse(node.ramMax());
+        this.ramPercent = (float) parse(node.ramPercent());
+        this.diskUsed = (long) parse(node.diskUsed());
+        this.diskTotal = (long) parse(node.diskTotal());
+        this.diskAvailable = (long) parse(node.diskAvail());
+        this.diskUsedPercent = (float) parse(node.diskUsedPercent());
+    }
+
+    /**
+     * @return The cluster manager column, or the master column sent by clusters older than 2.0
+     */
+    @SuppressWarnings("deprecation")
+    private static String clusterManager(NodesRecord node) {
+        return node.clusterManager() != null ? node.clusterManager() : node.master();
+    }
+
+    private static double parse(String value) {
+        return !StringUtils.isBlank(value) ? Double.parseDouble(value) : 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    /**
+     * @return True if the node is the elected cluster manager
+     */
+    public boolean isClusterManager() {
+        return clusterManager;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public float getCpuPercent() {
+        return cpuPercent;
+    }
+
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    public long getHeapMax() {
+        return heapMax;
+    }
+
+    public float getHeapPercent() {
+        return heapPercent;
+    }
+
+    public long getRamUsed() {
+        return ramUsed;
+    }
+
+    public long getRamMax() {
+        return ramMax;
+    }
+
+    public float getRamPercent() {
+        return ramPercent;
+    }
+
+    public long getDiskUsed() {
+        return diskUsed;
+    }
+
+    public long getDiskTotal() {
+        return diskTotal;
+    }
+
+    public long getDiskAvailable() {
+        return diskAvailable;
+    }
+
+    public float getDiskUsedPercent() {
+        return diskUsedPercent;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeSample{name=" + name + ", ip=" + ip + ", clusterManager=" + clusterManager
+                + ", timestamp=" + timestamp + ", cpuPercent=" + cpuPercent + ", heapUsed=" + heapUsed
+                + ", heapMax=" + heapMax + ", ramUsed=" + ramUsed + ", ramMax=" + ramMax + ", diskUsed=" + diskUsed
+                + ", diskTotal=" + diskTotal + "}";
+    }
+}
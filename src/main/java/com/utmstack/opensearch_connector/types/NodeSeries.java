@@ -0,0 +1,76 @@
+package com.utmstack.opensearch_connector.types;
+
+/**
+ * Recent samples of a node, oldest first, as parallel arrays: the values at an index belong to the sample
+ * taken at the timestamp of that index. Sizes are in megabytes and percentages go from 0 to 100.
+ */
+public class NodeSeries {
+    private final String name;
+    private final long[] timestamps;
+    private final float[] cpuPercent;
+    private final float[] heapPercent;
+    private final float[] ramPercent;
+    private final float[] diskUsedPercent;
+    private final long[] heapUsed;
+    private final long[] ramUsed;
+    private final long[] diskUsed;
+
+    public NodeSeries(String name, long[] timestamps, float[] cpuPercent, float[] heapPercent, float[] ramPercent,
+                      float[] diskUsedPercent, long[] heapUsed, long[] ramUsed, long[] diskUsed) {
+        this.name = name;
+        this.timestamps = timestamps;
+        this.cpuPercent = cpuPercent;
+        this.heapPercent = heapPercent;
+        this.ramPercent = ramPercent;
+        this.diskUsedPercent = diskUsedPercent;
+        this.heapUsed = heapUsed;
+        this.ramUsed = ramUsed;
+        this.diskUsed = diskUsed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Number of samples
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * @return Time of every sample in epoch milliseconds
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public float[] getCpuPercent() {
+        return cpuPercent;
+    }
+
+    public float[] getHeapPercent() {
+        return heapPercent;
+    }
+
+    public float[] getRamPercent() {
+        return ramPercent;
+    }
+
+    public float[] getDiskUsedPercent() {
+        return diskUsedPercent;
+    }
+
+    public long[] getHeapUsed() {
+        return heapUsed;
+    }
+
+    public long[] getRamUsed() {
+        return ramUsed;
+    }
+
+    public long[] getDiskUsed() {
+        return diskUsed;
+    }
+}
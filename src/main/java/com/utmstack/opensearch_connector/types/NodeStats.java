@@ -0,0 +1,487 @@
+package com.utmstack.opensearch_connector.types;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stats of a node from {@code _nodes/stats}, decoded token by token into primitive fields. Sizes are in
+ * bytes, times in milliseconds, and the counters (totals, rejections, collections...) grow from the start
+ * of the node, see {@link NodeMetrics} for their rates.
+ */
+public class NodeStats {
+    private final String id;
+    private String name;
+    private String host;
+    private String ip;
+    private List<String> roles = Collections.emptyList();
+    private long timestamp;
+    private float cpuPercent;
+    private long memUsed;
+    private long memTotal;
+    private long heapUsed;
+    private long heapMax;
+    private float heapPercent;
+    private long gcYoungCount;
+    private long gcYoungMillis;
+    private long gcOldCount;
+    private long gcOldMillis;
+    private long diskTotal;
+    private long diskAvailable;
+    private long indexingTotal;
+    private long indexingMillis;
+    private long indexingCurrent;
+    private long queryTotal;
+    private long queryMillis;
+    private long queryCurrent;
+    private long queryCacheHits;
+    private long queryCacheMisses;
+    private long queryCacheEvictions;
+    private long queryCacheBytes;
+    private Map<String, ThreadPoolStats> threadPools = Collections.emptyMap();
+
+    /**
+     * Reads the stats of a node, the reader must be at the start of the object of the node
+     *
+     * @param id Id of the node, the key of its object in {@code nodes}
+     */
+    public NodeStats(String id, JsonReader in) throws IOException {
+        this.id = id;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    name = in.nextString();
+                    break;
+                case "host":
+                    host = in.nextString();
+                    break;
+                case "ip":
+                    ip = in.nextString();
+                    break;
+                case "roles":
+                    roles = readStrings(in);
+                    break;
+                case "timestamp":
+                    timestamp = in.nextLong();
+                    break;
+                case "os":
+                    readOs(in);
+                    break;
+                case "jvm":
+                    readJvm(in);
+                    break;
+                case "fs":
+                    readFs(in);
+                    break;
+                case "thread_pool":
+                    threadPools = readThreadPools(in);
+                    break;
+                case "indices":
+                    readIndices(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void readOs(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "cpu":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("percent".equals(in.nextName()))
+                            cpuPercent = (float) in.nextDouble();
+                        else
+                            in.skipValue();
+                    }
+                    in.endObject();
+                    break;
+                case "mem":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "used_in_bytes":
+                                memUsed = in.nextLong();
+                                break;
+                            case "total_in_bytes":
+                                memTotal = in.nextLong();
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void readJvm(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "mem":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "heap_used_in_bytes":
+                                heapUsed = in.nextLong();
+                                break;
+                            case "heap_max_in_bytes":
+                                heapMax = in.nextLong();
+                                break;
+                            case "heap_used_percent":
+                                heapPercent = (float) in.nextDouble();
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                case "gc":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("collectors".equals(in.nextName()))
+                            readCollectors(in);
+                        else
+                            in.skipValue();
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void readCollectors(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String collector = in.nextName();
+            long count = 0;
+            long millis = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "collection_count":
+                        count = in.nextLong();
+                        break;
+                    case "collection_time_in_millis":
+                        millis = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            if ("young".equals(collector)) {
+                gcYoungCount = count;
+                gcYoungMillis = millis;
+            } else if ("old".equals(collector)) {
+                gcOldCount = count;
+                gcOldMillis = millis;
+            }
+        }
+        in.endObject();
+    }
+
+    private void readFs(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"total".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "total_in_bytes":
+                        diskTotal = in.nextLong();
+                        break;
+                    case "available_in_bytes":
+                        diskAvailable = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        in.endObject();
+    }
+
+    private void readIndices(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "indexing":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "index_total":
+                                indexingTotal = in.nextLong();
+                                break;
+                            case "index_time_in_millis":
+                                indexingMillis = in.nextLong();
+                                break;
+                            case "index_current":
+                                indexingCurrent = in.nextLong();
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                case "search":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "query_total":
+                                queryTotal = in.nextLong();
+                                break;
+                            case "query_time_in_millis":
+                                queryMillis = in.nextLong();
+                                break;
+                            case "query_current":
+                                queryCurrent = in.nextLong();
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                case "query_cache":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "hit_count":
+                                queryCacheHits = in.nextLong();
+                                break;
+                            case "miss_count":
+                                queryCacheMisses = in.nextLong();
+                                break;
+                            case "evictions":
+                                queryCacheEvictions = in.nextLong();
+                                break;
+                            case "memory_size_in_bytes":
+                                queryCacheBytes = in.nextLong();
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private static Map<String, ThreadPoolStats> readThreadPools(JsonReader in) throws IOException {
+        Map<String, ThreadPoolStats> pools = new TreeMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String pool = in.nextName();
+            int threads = 0, active = 0, queue = 0, largest = 0;
+            long rejected = 0, completed = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "threads":
+                        threads = in.nextInt();
+                        break;
+                    case "active":
+                        active = in.nextInt();
+                        break;
+                    case "queue":
+                        queue = in.nextInt();
+                        break;
+                    case "largest":
+                        largest = in.nextInt();
+                        break;
+                    case "rejected":
+                        rejected = in.nextLong();
+                        break;
+                    case "completed":
+                        completed = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            pools.put(pool, new ThreadPoolStats(pool, threads, active, queue, largest, rejected, completed));
+        }
+        in.endObject();
+        return Collections.unmodifiableMap(pools);
+    }
+
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext())
+            values.add(in.nextString());
+        in.endArray();
+        return Collections.unmodifiableList(values);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return Transport address of the node, as reported by the node
+     */
+    public String getIp() {
+        return ip;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return Time of the stats on the node in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public float getCpuPercent() {
+        return cpuPercent;
+    }
+
+    public long getMemUsed() {
+        return memUsed;
+    }
+
+    public long getMemTotal() {
+        return memTotal;
+    }
+
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    public long getHeapMax() {
+        return heapMax;
+    }
+
+    public float getHeapPercent() {
+        return heapPercent;
+    }
+
+    public long getGcYoungCount() {
+        return gcYoungCount;
+    }
+
+    public long getGcYoungMillis() {
+        return gcYoungMillis;
+    }
+
+    public long getGcOldCount() {
+        return gcOldCount;
+    }
+
+    public long getGcOldMillis() {
+        return gcOldMillis;
+    }
+
+    public long getDiskTotal() {
+        return diskTotal;
+    }
+
+    public long getDiskAvailable() {
+        return diskAvailable;
+    }
+
+    /**
+     * @return Documents indexed since the node started
+     */
+    public long getIndexingTotal() {
+        return indexingTotal;
+    }
+
+    public long getIndexingMillis() {
+        return indexingMillis;
+    }
+
+    /**
+     * @return Documents being indexed now
+     */
+    public long getIndexingCurrent() {
+        return indexingCurrent;
+    }
+
+    /**
+     * @return Query phases run on the shards of the node since it started
+     */
+    public long getQueryTotal() {
+        return queryTotal;
+    }
+
+    public long getQueryMillis() {
+        return queryMillis;
+    }
+
+    public long getQueryCurrent() {
+        return queryCurrent;
+    }
+
+    public long getQueryCacheHits() {
+        return queryCacheHits;
+    }
+
+    public long getQueryCacheMisses() {
+        return queryCacheMisses;
+    }
+
+    public long getQueryCacheEvictions() {
+        return queryCacheEvictions;
+    }
+
+    public long getQueryCacheBytes() {
+        return queryCacheBytes;
+    }
+
+    /**
+     * @return The thread pools of the node by name, sorted
+     */
+    public Map<String, ThreadPoolStats> getThreadPools() {
+        return threadPools;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeStats{id=" + id + ", name=" + name + ", timestamp=" + timestamp + ", cpuPercent=" + cpuPercent
+                + ", heapPercent=" + heapPercent + ", indexingTotal=" + indexingTotal + ", queryTotal=" + queryTotal
+                + ", threadPools=" + threadPools.size() + "}";
+    }
+}
@@ -0,0 +1,75 @@
+package com.utmstack.opensearch_connector.types;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the measurements of an operation of the connector
+ */
+public class OperationStats {
+    private final String operation;
+    private final long count;
+    private final long errors;
+    private final long inFlight;
+    private final Map<String, Long> errorClasses;
+    private final HistogramSnapshot latency;
+    private final HistogramSnapshot took;
+
+    public OperationStats(String operation, long count, long errors, long inFlight, Map<String, Long> errorClasses,
+                          HistogramSnapshot latency, HistogramSnapshot took) {
+        this.operation = operation;
+        this.count = count;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.errorClasses = errorClasses;
+        this.latency = latency;
+        this.took = took;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return Finished operations, failed or not
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Failures by error type, see {@link com.utmstack.opensearch_connector.metrics.MetricsListener#onFailure}
+     */
+    public Map<String, Long> getErrorClasses() {
+        return errorClasses;
+    }
+
+    /**
+     * @return Time observed by the client of the successful operations
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Time reported by the cluster of the successful operations that report it, as searches.
+     * The difference with {@link #getLatency()} is spent on the network, the queues and the (de)serialization.
+     */
+    public HistogramSnapshot getTook() {
+        return took;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationStats{operation=" + operation + ", count=" + count + ", errors=" + errors
+                + ", inFlight=" + inFlight + ", errorClasses=" + errorClasses + ", latency=" + latency
+                + ", took=" + took + "}";
+    }
+}
@@ -6,6 +6,7 @@ public class SearchSqlResponse<T> {
     private List<T> data;
     private Integer total;
     private Integer size;
+    private String cursor;
 
     public SearchSqlResponse() {
     }
@@ -39,5 +40,15 @@ public class SearchSqlResponse<T> {
     public void setSize(Integer size) {
         this.size = size;
     }
-}
 
+    /**
+     * @return The cursor to request the next page, null if this is the last page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+}
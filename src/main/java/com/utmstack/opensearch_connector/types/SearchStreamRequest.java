@@ -0,0 +1,180 @@
+package com.utmstack.opensearch_connector.types;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opensearch.client.opensearch._types.SortOptions;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.search.SourceConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Definition of a search that walks all the matching documents of an index using a Point-in-Time
+ * and {@code search_after}, see {@code OpenSearch.streamSearch}.
+ */
+public class SearchStreamRequest {
+    private final String index;
+    private final Query query;
+    private final List<SortOptions> sort;
+    private final SourceConfig source;
+    private final int pageSize;
+    private final String keepAlive;
+    private final String tiebreaker;
+    private final boolean prefetch;
+    private final Integer slices;
+
+    private SearchStreamRequest(Builder builder) {
+        this.index = builder.index;
+        this.query = builder.query;
+        this.sort = Collections.unmodifiableList(new ArrayList<>(builder.sort));
+        this.source = builder.source;
+        this.pageSize = builder.pageSize;
+        this.keepAlive = builder.keepAlive;
+        this.tiebreaker = builder.tiebreaker;
+        this.prefetch = builder.prefetch;
+        this.slices = builder.slices;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public List<SortOptions> getSort() {
+        return sort;
+    }
+
+    public SourceConfig getSource() {
+        return source;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    public String getTiebreaker() {
+        return tiebreaker;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * @return Number of slices for parallel scans, null to use the number of primary shards of the index
+     */
+    public Integer getSlices() {
+        return slices;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String index;
+        private Query query;
+        private final List<SortOptions> sort = new ArrayList<>();
+        private SourceConfig source;
+        private int pageSize = 1000;
+        private String keepAlive = "5m";
+        private String tiebreaker = "_id";
+        private boolean prefetch = true;
+        private Integer slices;
+
+        /**
+         * @param index Index or pattern to search
+         */
+        public Builder withIndex(String index) {
+            this.index = index;
+            return this;
+        }
+
+        /**
+         * @param query Query to filter the documents, all documents are returned if not defined
+         */
+        public Builder withQuery(Query query) {
+            this.query = query;
+            return this;
+        }
+
+        /**
+         * @param sort Sort criteria, the tiebreaker field is always added as the last criteria
+         */
+        public Builder withSort(SortOptions sort) {
+            this.sort.add(sort);
+            return this;
+        }
+
+        /**
+         * @param source Source filtering to retrieve only the fields you need
+         */
+        public Builder withSource(SourceConfig source) {
+            this.source = source;
+            return this;
+        }
+
+        /**
+         * @param pageSize Number of hits per request (default 1000)
+         */
+        public Builder withPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param keepAlive How long the Point-in-Time is kept between two pages (default 5m)
+         */
+        public Builder withKeepAlive(String keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * @param tiebreaker A field with an unique value per document used to resume the search
+         *                   without losing or repeating hits (default {@code _id}). A keyword field
+         *                   with doc values is cheaper for the cluster than {@code _id}
+         */
+        public Builder withTiebreaker(String tiebreaker) {
+            this.tiebreaker = tiebreaker;
+            return this;
+        }
+
+        /**
+         * @param prefetch If true (default), the next page is requested while the current one is consumed
+         */
+        public Builder withPrefetch(boolean prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * @param slices Number of slices the documents are split into by parallel scans,
+         *               by default the number of primary shards of the index
+         */
+        public Builder withSlices(Integer slices) {
+            this.slices = slices;
+            return this;
+        }
+
+        public SearchStreamRequest build() {
+            if (StringUtils.isBlank(index))
+                throw new RuntimeException("You need to define the index to search");
+            if (pageSize < 1)
+                throw new RuntimeException("The page size must be greater than 0");
+            if (StringUtils.isBlank(tiebreaker))
+                throw new RuntimeException("You need to define a tiebreaker field");
+            if (slices != null && slices < 1)
+                throw new RuntimeException("The number of slices must be greater than 0");
+            return new SearchStreamRequest(this);
+        }
+    }
+}
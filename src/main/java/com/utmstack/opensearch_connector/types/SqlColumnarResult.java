@@ -0,0 +1,300 @@
+package com.utmstack.opensearch_connector.types;
+
+import java.util.*;
+
+/**
+ * Column oriented result of a SQL query. Every column is stored in a primitive array chosen from
+ * the {@link SqlColumn#getType()} reported by OpenSearch:
+ * <ul>
+ *     <li>Integer types ({@code long, integer, short, byte}) in a {@code long[]}, see {@link LongColumn}</li>
+ *     <li>Decimal types ({@code double, float, half_float, scaled_float}) in a {@code double[]}, see {@link DoubleColumn}</li>
+ *     <li>Any other type in a dictionary encoded {@code int[]} plus a table of distinct strings, see {@link StringColumn}</li>
+ * </ul>
+ * Values can be read column by column with the typed accessors, or row by row with a {@link RowCursor}.
+ */
+public class SqlColumnarResult {
+    private final List<SqlColumn> schema;
+    private final Column[] columns;
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private final int rowCount;
+    private final Integer total;
+
+    public SqlColumnarResult(List<SqlColumn> schema, Column[] columns, int rowCount, Integer total) {
+        this.schema = Collections.unmodifiableList(schema);
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.total = total;
+        for (int i = 0; i < columns.length; i++)
+            columnIndex.putIfAbsent(columns[i].getName(), i);
+    }
+
+    public List<SqlColumn> getSchema() {
+        return schema;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * @return The total of rows reported by OpenSearch for the query
+     */
+    public Integer getTotal() {
+        return total;
+    }
+
+    /**
+     * @param name Alias of the column, or its name if it has no alias
+     * @return The position of the column, -1 if there is no column with that name
+     */
+    public int getColumnIndex(String name) {
+        return columnIndex.getOrDefault(name, -1);
+    }
+
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    public Column getColumn(String name) {
+        return columns[requireColumn(name)];
+    }
+
+    public LongColumn getLongColumn(String name) {
+        return as(getColumn(name), LongColumn.class);
+    }
+
+    public DoubleColumn getDoubleColumn(String name) {
+        return as(getColumn(name), DoubleColumn.class);
+    }
+
+    public StringColumn getStringColumn(String name) {
+        return as(getColumn(name), StringColumn.class);
+    }
+
+    /**
+     * @return A new cursor positioned before the first row
+     */
+    public RowCursor cursor() {
+        return new RowCursor();
+    }
+
+    private int requireColumn(String name) {
+        int index = getColumnIndex(name);
+        if (index < 0)
+            throw new IllegalArgumentException(String.format("Column %1$s not found", name));
+        return index;
+    }
+
+    private static <C extends Column> C as(Column column, Class<C> type) {
+        if (!type.isInstance(column))
+            throw new IllegalArgumentException(String.format("Column %1$s of type %2$s is not a %3$s",
+                    column.getName(), column.getType(), type.getSimpleName()));
+        return type.cast(column);
+    }
+
+    public abstract static class Column {
+        private final String name;
+        private final String type;
+        private final BitSet nulls;
+
+        protected Column(String name, String type, BitSet nulls) {
+            this.name = name;
+            this.type = type;
+            this.nulls = nulls;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The type reported by OpenSearch for the column
+         */
+        public String getType() {
+            return type;
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * @return The value of the row boxed, or null. Prefer the typed accessors of each column
+         */
+        public abstract Object getObject(int row);
+    }
+
+    public static final class LongColumn extends Column {
+        private final long[] values;
+
+        public LongColumn(String name, String type, long[] values, BitSet nulls) {
+            super(name, type, nulls);
+            this.values = values;
+        }
+
+        /**
+         * @return The value of the row, 0 if the value is null
+         */
+        public long get(int row) {
+            return values[row];
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (long value : values)
+                sum += value;
+            return sum;
+        }
+
+        /**
+         * @return A copy of the values of the column
+         */
+        public long[] toArray() {
+            return values.clone();
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    public static final class DoubleColumn extends Column {
+        private final double[] values;
+
+        public DoubleColumn(String name, String type, double[] values, BitSet nulls) {
+            super(name, type, nulls);
+            this.values = values;
+        }
+
+        /**
+         * @return The value of the row, 0 if the value is null
+         */
+        public double get(int row) {
+            return values[row];
+        }
+
+        public double sum() {
+            double sum = 0;
+            for (double value : values)
+                sum += value;
+            return sum;
+        }
+
+        /**
+         * @return A copy of the values of the column
+         */
+        public double[] toArray() {
+            return values.clone();
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    public static final class StringColumn extends Column {
+        private final int[] codes;
+        private final String[] dictionary;
+
+        public StringColumn(String name, String type, int[] codes, String[] dictionary, BitSet nulls) {
+            super(name, type, nulls);
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * @return The value of the row, null if the value is null
+         */
+        public String get(int row) {
+            return isNull(row) ? null : dictionary[codes[row]];
+        }
+
+        /**
+         * @return The position of the value of the row in the dictionary, -1 if the value is null.
+         * Rows with the same value have the same code, so codes can be used to group rows.
+         */
+        public int getCode(int row) {
+            return isNull(row) ? -1 : codes[row];
+        }
+
+        public int getDictionarySize() {
+            return dictionary.length;
+        }
+
+        public String getDictionaryValue(int code) {
+            return dictionary[code];
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return get(row);
+        }
+    }
+
+    /**
+     * Iterates over the rows of the result without creating an object per row
+     */
+    public class RowCursor {
+        private int row = -1;
+
+        public boolean next() {
+            return ++row < rowCount;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public boolean isNull(int column) {
+            return columns[column].isNull(row);
+        }
+
+        public long getLong(int column) {
+            Column c = columns[column];
+            if (c instanceof LongColumn)
+                return ((LongColumn) c).get(row);
+            if (c instanceof DoubleColumn)
+                return (long) ((DoubleColumn) c).get(row);
+            throw new IllegalArgumentException(String.format("Column %1$s is not numeric", c.getName()));
+        }
+
+        public double getDouble(int column) {
+            Column c = columns[column];
+            if (c instanceof DoubleColumn)
+                return ((DoubleColumn) c).get(row);
+            if (c instanceof LongColumn)
+                return ((LongColumn) c).get(row);
+            throw new IllegalArgumentException(String.format("Column %1$s is not numeric", c.getName()));
+        }
+
+        public String getString(int column) {
+            Column c = columns[column];
+            if (c instanceof StringColumn)
+                return ((StringColumn) c).get(row);
+            Object value = c.getObject(row);
+            return value == null ? null : String.valueOf(value);
+        }
+
+        public Object getObject(int column) {
+            return columns[column].getObject(row);
+        }
+
+        public long getLong(String column) {
+            return getLong(requireColumn(column));
+        }
+
+        public double getDouble(String column) {
+            return getDouble(requireColumn(column));
+        }
+
+        public String getString(String column) {
+            return getString(requireColumn(column));
+        }
+    }
+}
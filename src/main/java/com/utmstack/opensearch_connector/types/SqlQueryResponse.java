@@ -8,6 +8,7 @@ public class SqlQueryResponse {
     private Integer total;
     private Integer size;
     private Integer status;
+    private String cursor;
 
     public SqlQueryResponse() {
     }
@@ -59,5 +60,12 @@ public class SqlQueryResponse {
     public void setStatus(Integer status) {
         this.status = status;
     }
-}
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+}
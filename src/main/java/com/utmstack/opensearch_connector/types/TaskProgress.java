@@ -0,0 +1,177 @@
+package com.utmstack.opensearch_connector.types;
+
+/**
+ * Progress of a by-query task, taken from the status of the running task or from
+ * the final response when the task is completed
+ */
+public class TaskProgress {
+    private String taskId;
+    private String action;
+    private String description;
+    private boolean completed;
+    private boolean cancelled;
+    private long total;
+    private long created;
+    private long updated;
+    private long deleted;
+    private long batches;
+    private long versionConflicts;
+    private long noops;
+    private long failures;
+    private float requestsPerSecond;
+    private long throttledMillis;
+    private long runningTimeNanos;
+    private String error;
+
+    /**
+     * @return Processed documents over the total, between 0 and 1
+     */
+    public double getProgress() {
+        if (total <= 0)
+            return completed ? 1 : 0;
+        long done = created + updated + deleted + versionConflicts + noops;
+        return Math.min(1d, (double) done / total);
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(long created) {
+        this.created = created;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(long deleted) {
+        this.deleted = deleted;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public void setBatches(long batches) {
+        this.batches = batches;
+    }
+
+    public long getVersionConflicts() {
+        return versionConflicts;
+    }
+
+    public void setVersionConflicts(long versionConflicts) {
+        this.versionConflicts = versionConflicts;
+    }
+
+    public long getNoops() {
+        return noops;
+    }
+
+    public void setNoops(long noops) {
+        this.noops = noops;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    /**
+     * @return Current throttle of the task, -1 when it is unlimited
+     */
+    public float getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(float requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public long getThrottledMillis() {
+        return throttledMillis;
+    }
+
+    public void setThrottledMillis(long throttledMillis) {
+        this.throttledMillis = throttledMillis;
+    }
+
+    public long getRunningTimeNanos() {
+        return runningTimeNanos;
+    }
+
+    public void setRunningTimeNanos(long runningTimeNanos) {
+        this.runningTimeNanos = runningTimeNanos;
+    }
+
+    /**
+     * @return Error that stopped the task, null if it is running or finished successfully
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,65 @@
+package com.utmstack.opensearch_connector.types;
+
+/**
+ * Counters of a thread pool of a node, such as {@code write} or {@code search}, from {@code _nodes/stats}
+ */
+public class ThreadPoolStats {
+    private final String name;
+    private final int threads;
+    private final int active;
+    private final int queue;
+    private final int largest;
+    private final long rejected;
+    private final long completed;
+
+    public ThreadPoolStats(String name, int threads, int active, int queue, int largest, long rejected,
+                           long completed) {
+        this.name = name;
+        this.threads = threads;
+        this.active = active;
+        this.queue = queue;
+        this.largest = largest;
+        this.rejected = rejected;
+        this.completed = completed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return Tasks waiting for a thread
+     */
+    public int getQueue() {
+        return queue;
+    }
+
+    public int getLargest() {
+        return largest;
+    }
+
+    /**
+     * @return Tasks rejected since the node started, because the queue was full
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadPoolStats{name=" + name + ", threads=" + threads + ", active=" + active + ", queue=" + queue
+                + ", rejected=" + rejected + ", completed=" + completed + "}";
+    }
+}
@@ -0,0 +1,51 @@
+package com.utmstack.opensearch_connector.util;
+
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.JsonpSerializable;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+
+public class JsonpUtils {
+    private static final String CLASSNAME = "JsonpUtils";
+
+    /**
+     * Serializes a request or any object of the OpenSearch client to JSON, the same way the transport does
+     *
+     * @param value  The object to serialize
+     * @param mapper The mapper of the transport
+     * @return The JSON representation of the object
+     */
+    public static String toJson(JsonpSerializable value, JsonpMapper mapper) {
+        final String ctx = CLASSNAME + ".toJson";
+        try {
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator generator = mapper.jsonProvider().createGenerator(writer)) {
+                value.serialize(generator, mapper);
+            }
+            return writer.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Deserializes an object of the OpenSearch client from JSON, the same way the transport does
+     *
+     * @param in           The JSON to read, it is closed once read
+     * @param deserializer The deserializer of the object
+     * @param mapper       The mapper of the transport
+     * @return The deserialized object
+     */
+    public static <T> T fromJson(InputStream in, JsonpDeserializer<T> deserializer, JsonpMapper mapper) {
+        final String ctx = CLASSNAME + ".fromJson";
+        try (JsonParser parser = mapper.jsonProvider().createParser(in)) {
+            return deserializer.deserialize(parser, mapper);
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+}
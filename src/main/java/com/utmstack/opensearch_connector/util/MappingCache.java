@@ -0,0 +1,164 @@
+package com.utmstack.opensearch_connector.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the flattened field maps of index mappings by index pattern.
+ * <br>
+ * Entries expire after a TTL counted from the moment the mapping is loaded, and when the cache is full the
+ * least recently read entry is evicted. Concurrent misses for the same pattern share one fetch, and a failed
+ * fetch is not cached so the next call retries it. The cached maps are immutable.
+ */
+public class MappingCache {
+    private static final String CLASSNAME = "MappingCache";
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttl        How long a loaded mapping is served from the cache
+     * @param maxEntries Maximum number of patterns kept in the cache
+     */
+    public MappingCache(Duration ttl, int maxEntries) {
+        final String ctx = CLASSNAME + ".MappingCache";
+        if (ttl == null || ttl.isNegative() || ttl.isZero())
+            throw new RuntimeException(ctx + ": The TTL must be greater than 0");
+        if (maxEntries < 1)
+            throw new RuntimeException(ctx + ": The maximum number of entries must be greater than 0");
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Gets the field map of a pattern, loading it if it's not cached or it's expired
+     *
+     * @param pattern Index or pattern
+     * @param loader  Starts the fetch of the field map of a pattern, it's called at most once per miss
+     * @return A future with the immutable field map
+     */
+    public CompletableFuture<Map<String, String>> get(String pattern, Function<String, CompletableFuture<Map<String, String>>> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(pattern);
+        if (entry == null || entry.isExpired(now)) {
+            Entry created = new Entry();
+            entry = entries.compute(pattern, (k, current) ->
+                    current != null && !current.isExpired(now) ? current : created);
+            // The fetch is started out of compute, so a loader that completes at once can't update the map inside it
+            if (entry == created) {
+                load(pattern, created, loader);
+                if (entries.size() > maxEntries)
+                    evict(pattern);
+            }
+        }
+        entry.lastAccess = now;
+        // A copy, so a caller can't complete or cancel the future shared by the other callers
+        return entry.value.copy();
+    }
+
+    /**
+     * Removes the cached mapping of a pattern
+     *
+     * @param pattern Index or pattern exactly as it was requested
+     */
+    public void invalidate(String pattern) {
+        entries.remove(pattern);
+    }
+
+    /**
+     * Removes every cached pattern that includes the index, call it after creating or changing an index.
+     * Patterns that reference aliases can't be matched, use {@link #invalidateAll()} when aliases change.
+     *
+     * @param index Name of the created or changed index
+     */
+    public void invalidateMatching(String index) {
+        entries.keySet().removeIf(pattern -> matches(pattern, index));
+    }
+
+    /**
+     * Removes all the cached mappings, call it after creating or changing index templates
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void load(String pattern, Entry entry, Function<String, CompletableFuture<Map<String, String>>> loader) {
+        CompletableFuture<Map<String, String>> future;
+        try {
+            future = loader.apply(pattern);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.thenApply(map -> Collections.unmodifiableMap(new TreeMap<>(map)))
+                .whenComplete((map, error) -> {
+                    if (error != null) {
+                        entries.remove(pattern, entry);
+                        entry.value.completeExceptionally(error);
+                    } else {
+                        entry.expiresAt = System.nanoTime() + ttlNanos;
+                        entry.loaded = true;
+                        entry.value.complete(map);
+                    }
+                });
+    }
+
+    private void evict(String keep) {
+        while (entries.size() > maxEntries) {
+            String oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getKey().equals(keep))
+                    continue;
+                if (oldest == null || e.getValue().lastAccess - oldestAccess < 0) {
+                    oldest = e.getKey();
+                    oldestAccess = e.getValue().lastAccess;
+                }
+            }
+            if (oldest == null)
+                return;
+            entries.remove(oldest);
+        }
+    }
+
+    private static boolean matches(String pattern, String index) {
+        if (StringUtils.isBlank(pattern) || "*".equals(pattern) || "_all".equals(pattern))
+            return true;
+        for (String part : pattern.split(",")) {
+            part = part.trim();
+            if (part.isEmpty() || part.startsWith("-"))
+                continue;
+            StringBuilder regex = new StringBuilder();
+            for (String literal : part.split("\\*", -1)) {
+                if (regex.length() > 0)
+                    regex.append(".*");
+                regex.append(Pattern.quote(literal));
+            }
+            if (Pattern.matches(regex.toString(), index))
+                return true;
+        }
+        return false;
+    }
+
+    private static class Entry {
+        final CompletableFuture<Map<String, String>> value = new CompletableFuture<>();
+        volatile long expiresAt;
+        volatile long lastAccess = System.nanoTime();
+        volatile boolean loaded;
+
+        boolean isExpired(long now) {
+            return loaded && now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.utmstack.opensearch_connector.util;
+
+import com.google.gson.stream.JsonReader;
+import com.utmstack.opensearch_connector.types.NodeStats;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes {@code _nodes/stats} responses token by token into {@link NodeStats}, without building a tree
+ * of the response. Only the stats read by {@link NodeStats} are kept, the rest is skipped.
+ */
+public class NodeStatsDecoder {
+    /**
+     * Metrics and index metrics requested, the path of the {@code _nodes/stats} request
+     */
+    public static final String ENDPOINT = "/_nodes/stats/os,jvm,fs,thread_pool,indices/indexing,search,query_cache";
+    /**
+     * Fields returned by the cluster, the {@code filter_path} of the request
+     */
+    public static final String FILTER_PATH = String.join(",",
+            "nodes.*.name", "nodes.*.host", "nodes.*.ip", "nodes.*.roles", "nodes.*.timestamp",
+            "nodes.*.os.cpu.percent", "nodes.*.os.mem.used_in_bytes", "nodes.*.os.mem.total_in_bytes",
+            "nodes.*.jvm.mem.heap_used_in_bytes", "nodes.*.jvm.mem.heap_max_in_bytes",
+            "nodes.*.jvm.mem.heap_used_percent", "nodes.*.jvm.gc.collectors",
+            "nodes.*.fs.total.total_in_bytes", "nodes.*.fs.total.available_in_bytes",
+            "nodes.*.thread_pool.*.threads", "nodes.*.thread_pool.*.active", "nodes.*.thread_pool.*.queue",
+            "nodes.*.thread_pool.*.largest", "nodes.*.thread_pool.*.rejected", "nodes.*.thread_pool.*.completed",
+            "nodes.*.indices.indexing.index_total", "nodes.*.indices.indexing.index_time_in_millis",
+            "nodes.*.indices.indexing.index_current", "nodes.*.indices.search.query_total",
+            "nodes.*.indices.search.query_time_in_millis", "nodes.*.indices.search.query_current",
+            "nodes.*.indices.query_cache.hit_count", "nodes.*.indices.query_cache.miss_count",
+            "nodes.*.indices.query_cache.evictions", "nodes.*.indices.query_cache.memory_size_in_bytes");
+
+    private NodeStatsDecoder() {
+    }
+
+    /**
+     * Decodes a {@code _nodes/stats} response. The reader is consumed but not closed.
+     *
+     * @param reader Reader over the response body
+     * @return The stats of every node of the response
+     */
+    public static List<NodeStats> decode(Reader reader) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        List<NodeStats> nodes = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"nodes".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginObject();
+            while (in.hasNext())
+                nodes.add(new NodeStats(in.nextName(), in));
+            in.endObject();
+        }
+        in.endObject();
+        return nodes;
+    }
+}
@@ -0,0 +1,208 @@
+package com.utmstack.opensearch_connector.util;
+
+import com.utmstack.opensearch_connector.types.CacheStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches serialized responses by a hash of the canonical request.
+ * <br>
+ * Entries expire after a TTL and the total size of the cached responses is bounded, when a new
+ * response doesn't fit the least recently used entries are evicted. Responses are kept as bytes and
+ * decoded on every hit, so every caller gets its own copy. With off-heap storage the bytes live in
+ * direct buffers, out of the heap and out of the work of the garbage collector.
+ */
+public class ResultCache {
+    private static final String CLASSNAME = "ResultCache";
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long bytes;
+
+    /**
+     * @param ttl      How long a response is served from the cache
+     * @param maxBytes Maximum size of all the cached responses
+     * @param offHeap  If true, the responses are kept in direct buffers instead of the heap
+     */
+    public ResultCache(Duration ttl, long maxBytes, boolean offHeap) {
+        final String ctx = CLASSNAME + ".ResultCache";
+        if (ttl == null || ttl.isNegative() || ttl.isZero())
+            throw new RuntimeException(ctx + ": The TTL must be greater than 0");
+        if (maxBytes < 1)
+            throw new RuntimeException(ctx + ": The maximum size must be greater than 0");
+        this.ttlNanos = ttl.toNanos();
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Gets a cached response
+     *
+     * @param key Canonical representation of the request
+     * @return A stream over the serialized response, null if it's not cached or it's expired
+     */
+    public InputStream get(String key) {
+        String hash = hash(key);
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(hash);
+            if (entry != null && now - entry.expiresAt >= 0) {
+                remove(hash);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.open();
+    }
+
+    /**
+     * Caches a response, evicting the least recently used responses if needed.
+     * Responses bigger than the maximum size of the cache are not cached.
+     *
+     * @param key   Canonical representation of the request
+     * @param value The serialized response
+     */
+    public void put(String key, byte[] value) {
+        if (value.length > maxBytes)
+            return;
+        String hash = hash(key);
+        Entry entry = new Entry(value, offHeap, System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            remove(hash);
+            if (bytes + value.length > maxBytes)
+                evictExpired();
+            Iterator<Map.Entry<String, Entry>> lru = entries.entrySet().iterator();
+            while (bytes + value.length > maxBytes && lru.hasNext()) {
+                bytes -= lru.next().getValue().size;
+                lru.remove();
+                evictions.increment();
+            }
+            entries.put(hash, entry);
+            bytes += value.length;
+        }
+    }
+
+    /**
+     * Removes a cached response
+     *
+     * @param key Canonical representation of the request
+     */
+    public void invalidate(String key) {
+        synchronized (entries) {
+            remove(hash(key));
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    public CacheStats stats() {
+        synchronized (entries) {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), bytes);
+        }
+    }
+
+    private void remove(String hash) {
+        Entry removed = entries.remove(hash);
+        if (removed != null)
+            bytes -= removed.size;
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> {
+            boolean expired = now - e.expiresAt >= 0;
+            if (expired)
+                bytes -= e.size;
+            return expired;
+        });
+    }
+
+    private static String hash(String key) {
+        final String ctx = CLASSNAME + ".hash";
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(ctx + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private static class Entry {
+        private final byte[] heap;
+        private final ByteBuffer direct;
+        private final int size;
+        private final long expiresAt;
+
+        Entry(byte[] value, boolean offHeap, long expiresAt) {
+            this.size = value.length;
+            this.expiresAt = expiresAt;
+            if (offHeap) {
+                this.heap = null;
+                this.direct = ByteBuffer.allocateDirect(value.length).put(value).flip().asReadOnlyBuffer();
+            } else {
+                this.heap = value;
+                this.direct = null;
+            }
+        }
+
+        InputStream open() {
+            return heap != null ? new ByteArrayInputStream(heap) : new BufferInputStream(direct.duplicate());
+        }
+    }
+
+    /**
+     * Reads a direct buffer without copying it to the heap first
+     */
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.utmstack.opensearch_connector.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical calls into one execution. While a call with a key is in flight, every
+ * other call with the same key waits on it and gets its result, or its error. Nothing is kept once the
+ * call completes, so a later call with the same key runs again: this is not a cache.
+ */
+public class SingleFlight {
+    private final ConcurrentHashMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the action, or joins the execution in flight with the same key
+     *
+     * @param key    Canonical representation of the call, identical calls must have the same key
+     * @param action Starts the call, it's only invoked when there is no execution in flight for the key
+     * @return A future with the result shared by all the callers of the execution
+     */
+    @SuppressWarnings("unchecked")
+    public <R> CompletableFuture<R> execute(String key, Supplier<CompletableFuture<R>> action) {
+        CompletableFuture<R> created = new CompletableFuture<>();
+        CompletableFuture<R> current = (CompletableFuture<R>) inFlight.putIfAbsent(key, created);
+        if (current != null)
+            return current.copy();
+
+        try {
+            action.get().whenComplete((result, error) -> {
+                // Released before completing, so callers that see the result never join a finished execution
+                inFlight.remove(key, created);
+                if (error != null)
+                    created.completeExceptionally(error);
+                else
+                    created.complete(result);
+            });
+        } catch (Exception e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    /**
+     * @return Number of executions in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
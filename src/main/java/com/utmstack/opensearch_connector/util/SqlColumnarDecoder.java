@@ -0,0 +1,267 @@
+package com.utmstack.opensearch_connector.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.utmstack.opensearch_connector.types.SqlColumn;
+import com.utmstack.opensearch_connector.types.SqlColumnarResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Decodes one or more pages of a {@code _plugins/_sql} response (jdbc format) into the primitive
+ * column arrays of a {@link SqlColumnarResult}, without creating an object per row or per numeric value.
+ * <br>
+ * Feed every page with {@link #decode(Reader)} and build the result with {@link #toResult()}.
+ */
+public class SqlColumnarDecoder {
+    private static final String CLASSNAME = "SqlColumnarDecoder";
+    private static final Set<String> LONG_TYPES = Set.of("long", "integer", "short", "byte");
+    private static final Set<String> DOUBLE_TYPES = Set.of("double", "float", "half_float", "scaled_float");
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Gson gson;
+    private final TypeAdapter<List<SqlColumn>> schemaAdapter;
+    private List<SqlColumn> schema;
+    private ColumnBuffer[] buffers;
+    private int rowCount;
+    private Integer total;
+
+    public SqlColumnarDecoder(Gson gson) {
+        this.gson = gson;
+        this.schemaAdapter = gson.getAdapter(new TypeToken<List<SqlColumn>>() {
+        });
+    }
+
+    /**
+     * Decodes a page and appends its rows to the columns. The reader is consumed but not closed.
+     *
+     * @param reader Reader over the response body
+     * @return The cursor to request the next page, null if this is the last page
+     */
+    public String decode(Reader reader) throws IOException {
+        final String ctx = CLASSNAME + ".decode";
+        JsonReader in = gson.newJsonReader(reader);
+        String cursor = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "schema":
+                    bind(schemaAdapter.read(in));
+                    break;
+                case "datarows":
+                    if (buffers == null)
+                        throw new IOException(ctx + ": Response rows without schema");
+                    readRows(in);
+                    break;
+                case "total":
+                    if (in.peek() == JsonToken.NULL)
+                        in.nextNull();
+                    else
+                        total = in.nextInt();
+                    break;
+                case "cursor":
+                    if (in.peek() == JsonToken.NULL)
+                        in.nextNull();
+                    else
+                        cursor = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return cursor;
+    }
+
+    /**
+     * @return The columnar result with all the rows decoded so far
+     */
+    public SqlColumnarResult toResult() {
+        if (buffers == null)
+            return new SqlColumnarResult(Collections.emptyList(), new SqlColumnarResult.Column[0], 0, total);
+
+        SqlColumnarResult.Column[] columns = new SqlColumnarResult.Column[buffers.length];
+        for (int i = 0; i < buffers.length; i++)
+            columns[i] = buffers[i].build(rowCount);
+        return new SqlColumnarResult(schema, columns, rowCount, total);
+    }
+
+    private void bind(List<SqlColumn> columns) {
+        if (buffers != null || columns == null)
+            return;
+        schema = columns;
+        buffers = new ColumnBuffer[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            SqlColumn col = columns.get(i);
+            String name = (col.getAlias() != null && !col.getAlias().isEmpty()) ? col.getAlias() : col.getName();
+            String type = col.getType() == null ? "" : col.getType().toLowerCase(Locale.ROOT);
+            if (LONG_TYPES.contains(type))
+                buffers[i] = new LongBuffer(name, col.getType());
+            else if (DOUBLE_TYPES.contains(type))
+                buffers[i] = new DoubleBuffer(name, col.getType());
+            else
+                buffers[i] = new KeywordBuffer(name, col.getType());
+        }
+    }
+
+    private void readRows(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            in.beginArray();
+            int column = 0;
+            for (; in.hasNext(); column++) {
+                if (column >= buffers.length) {
+                    in.skipValue();
+                } else if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    buffers[column].appendNull(rowCount);
+                } else {
+                    buffers[column].append(in, rowCount);
+                }
+            }
+            for (; column < buffers.length; column++)
+                buffers[column].appendNull(rowCount);
+            in.endArray();
+            rowCount++;
+        }
+        in.endArray();
+    }
+
+    private abstract static class ColumnBuffer {
+        final String name;
+        final String type;
+        final BitSet nulls = new BitSet();
+
+        ColumnBuffer(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        abstract void append(JsonReader in, int row) throws IOException;
+
+        void appendNull(int row) {
+            nulls.set(row);
+            ensureCapacity(row + 1);
+        }
+
+        abstract void ensureCapacity(int size);
+
+        abstract SqlColumnarResult.Column build(int rowCount);
+
+        static int grow(int current, int required) {
+            return Math.max(required, Math.max(INITIAL_CAPACITY, current + (current >> 1)));
+        }
+    }
+
+    private static class LongBuffer extends ColumnBuffer {
+        private long[] values = new long[0];
+
+        LongBuffer(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        void append(JsonReader in, int row) throws IOException {
+            ensureCapacity(row + 1);
+            String literal = in.nextString();
+            try {
+                values[row] = Long.parseLong(literal);
+            } catch (NumberFormatException e) {
+                values[row] = (long) Double.parseDouble(literal);
+            }
+        }
+
+        @Override
+        void ensureCapacity(int size) {
+            if (size > values.length)
+                values = Arrays.copyOf(values, grow(values.length, size));
+        }
+
+        @Override
+        SqlColumnarResult.Column build(int rowCount) {
+            return new SqlColumnarResult.LongColumn(name, type, Arrays.copyOf(values, rowCount), (BitSet) nulls.clone());
+        }
+    }
+
+    private static class DoubleBuffer extends ColumnBuffer {
+        private double[] values = new double[0];
+
+        DoubleBuffer(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        void append(JsonReader in, int row) throws IOException {
+            ensureCapacity(row + 1);
+            values[row] = Double.parseDouble(in.nextString());
+        }
+
+        @Override
+        void ensureCapacity(int size) {
+            if (size > values.length)
+                values = Arrays.copyOf(values, grow(values.length, size));
+        }
+
+        @Override
+        SqlColumnarResult.Column build(int rowCount) {
+            return new SqlColumnarResult.DoubleColumn(name, type, Arrays.copyOf(values, rowCount), (BitSet) nulls.clone());
+        }
+    }
+
+    private static class KeywordBuffer extends ColumnBuffer {
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] codes = new int[0];
+
+        KeywordBuffer(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        void append(JsonReader in, int row) throws IOException {
+            ensureCapacity(row + 1);
+            String value;
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    value = JsonParser.parseReader(in).toString();
+                    break;
+                case BOOLEAN:
+                    value = String.valueOf(in.nextBoolean());
+                    break;
+                default:
+                    value = in.nextString();
+            }
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codesByValue.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        void ensureCapacity(int size) {
+            if (size > codes.length)
+                codes = Arrays.copyOf(codes, grow(codes.length, size));
+        }
+
+        @Override
+        SqlColumnarResult.Column build(int rowCount) {
+            return new SqlColumnarResult.StringColumn(name, type, Arrays.copyOf(codes, rowCount),
+                    dictionary.toArray(new String[0]), (BitSet) nulls.clone());
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.utmstack.opensearch_connector.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.utmstack.opensearch_connector.types.SearchSqlResponse;
+import com.utmstack.opensearch_connector.types.SqlColumn;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Decodes {@code _plugins/_sql} responses (jdbc format) token by token, writing every value of
+ * {@code datarows} straight into the field of {@code T} bound to its column.
+ * <br>
+ * The column to field binding is resolved once, from the first {@code schema} received, and reused
+ * for every row and for the following cursor pages, which don't include the schema.
+ * Fields are matched the same way Gson does it, by {@link SerializedName} or by field name,
+ * columns are identified by alias or by name. Columns without a matching field are skipped.
+ * Records, classes that use {@link JsonAdapter} and maps other than {@link HashMap} and {@link LinkedHashMap}
+ * are mapped by Gson from a json object per row instead.
+ * <br>
+ * Instances keep the binding state, so use one instance per query.
+ */
+public class SqlResponseDecoder<T> {
+    private static final String CLASSNAME = "SqlResponseDecoder";
+    private final Gson gson;
+    private final Class<T> responseType;
+    private final boolean mapRows;
+    private final boolean reflectiveRows;
+    private final Supplier<T> instantiator;
+    private final Map<String, FieldBinding> fieldsByName;
+    private final TypeAdapter<List<SqlColumn>> schemaAdapter;
+    private final TypeAdapter<Object> objectAdapter;
+
+    private List<SqlColumn> schema;
+    private String[] columnNames;
+    private FieldBinding[] bindings;
+
+    public SqlResponseDecoder(Gson gson, Class<T> responseType) {
+        this.gson = gson;
+        this.responseType = responseType;
+        this.mapRows = Map.class.equals(responseType) || HashMap.class.equals(responseType)
+                || LinkedHashMap.class.equals(responseType) || Object.class.equals(responseType);
+        this.reflectiveRows = !mapRows && isPlainClass(responseType);
+        this.instantiator = reflectiveRows ? instantiator(gson, responseType) : null;
+        this.fieldsByName = reflectiveRows ? fieldsByName(gson, responseType) : Collections.emptyMap();
+        this.schemaAdapter = gson.getAdapter(new TypeToken<List<SqlColumn>>() {
+        });
+        this.objectAdapter = gson.getAdapter(Object.class);
+    }
+
+    /**
+     * Decodes a page of a SQL response. The reader is consumed but not closed.
+     *
+     * @param reader Reader over the response body
+     * @return A {@link SearchSqlResponse} with the decoded rows, the cursor of the next page if any
+     */
+    public SearchSqlResponse<T> decode(Reader reader) throws IOException {
+        final String ctx = CLASSNAME + ".decode";
+        JsonReader in = gson.newJsonReader(reader);
+        SearchSqlResponse<T> result = new SearchSqlResponse<>();
+        List<T> rows = new ArrayList<>();
+        JsonArray pendingRows = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "schema":
+                    bind(schemaAdapter.read(in));
+                    break;
+                case "datarows":
+                    if (columnNames == null)
+                        pendingRows = JsonParser.parseReader(in).getAsJsonArray();
+                    else
+                        readRows(in, rows);
+                    break;
+                case "total":
+                    result.setTotal(nextInteger(in));
+                    break;
+                case "size":
+                    result.setSize(nextInteger(in));
+                    break;
+                case "cursor":
+                    result.setCursor(in.peek() == JsonToken.NULL ? skipNull(in) : in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (pendingRows != null) {
+            // datarows came before schema, uncommon but valid json, decode them from the buffered tree
+            if (columnNames == null)
+                throw new IOException(ctx + ": Response rows without schema");
+            for (JsonElement row : pendingRows)
+                rows.add(readRow(gson.newJsonReader(new StringReader(row.toString()))));
+        }
+
+        result.setData(rows);
+        return result;
+    }
+
+    /**
+     * @return The schema of the query, null if no page with schema has been decoded yet
+     */
+    public List<SqlColumn> getSchema() {
+        return schema;
+    }
+
+    private void bind(List<SqlColumn> columns) {
+        if (columnNames != null || columns == null)
+            return;
+        schema = columns;
+        columnNames = new String[columns.size()];
+        bindings = new FieldBinding[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            SqlColumn col = columns.get(i);
+            columnNames[i] = (col.getAlias() != null && !col.getAlias().isEmpty()) ? col.getAlias() : col.getName();
+            bindings[i] = fieldsByName.get(columnNames[i]);
+        }
+    }
+
+    private void readRows(JsonReader in, List<T> rows) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext())
+            rows.add(readRow(in));
+        in.endArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readRow(JsonReader in) throws IOException {
+        if (mapRows) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            in.beginArray();
+            for (int i = 0; in.hasNext(); i++) {
+                Object value = objectAdapter.read(in);
+                if (i < columnNames.length)
+                    row.put(columnNames[i], value);
+            }
+            in.endArray();
+            return (T) row;
+        }
+
+        if (!reflectiveRows) {
+            JsonObject row = new JsonObject();
+            in.beginArray();
+            for (int i = 0; in.hasNext(); i++) {
+                JsonElement value = JsonParser.parseReader(in);
+                if (i < columnNames.length && !value.isJsonNull())
+                    row.add(columnNames[i], value);
+            }
+            in.endArray();
+            return gson.fromJson(row, responseType);
+        }
+
+        T row = instantiator.get();
+        in.beginArray();
+        for (int i = 0; in.hasNext(); i++) {
+            FieldBinding binding = i < bindings.length ? bindings[i] : null;
+            if (binding == null || in.peek() == JsonToken.NULL) {
+                in.skipValue();
+                continue;
+            }
+            binding.read(in, row);
+        }
+        in.endArray();
+        return row;
+    }
+
+    private static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL)
+            return skipNull(in);
+        return in.nextInt();
+    }
+
+    private static <V> V skipNull(JsonReader in) throws IOException {
+        in.nextNull();
+        return null;
+    }
+
+    /**
+     * @return True if the rows can be written field by field, false for the types Gson maps on its own terms
+     */
+    private static boolean isPlainClass(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || JsonElement.class.isAssignableFrom(type)
+                || type.getName().startsWith("java.") || Map.class.isAssignableFrom(type))
+            return false;
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            // Records have final components and a canonical constructor, compared by name since the target is Java 11
+            if (c.getSuperclass() != null && c.getSuperclass().getName().equals("java.lang.Record"))
+                return false;
+            if (c.isAnnotationPresent(JsonAdapter.class))
+                return false;
+            for (Field field : c.getDeclaredFields())
+                if (field.isAnnotationPresent(JsonAdapter.class))
+                    return false;
+        }
+        return true;
+    }
+
+    private static <T> Supplier<T> instantiator(Gson gson, Class<T> type) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (Exception e) {
+                    throw new RuntimeException(CLASSNAME + ".instantiator: " + e.getLocalizedMessage());
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            // Let Gson allocate classes without a no-args constructor, as it does when mapping the rows itself
+            return () -> gson.fromJson("{}", type);
+        }
+    }
+
+    private static Map<String, FieldBinding> fieldsByName(Gson gson, Class<?> type) {
+        Map<String, FieldBinding> result = new HashMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+                    continue;
+                field.setAccessible(true);
+                FieldBinding binding = new FieldBinding(field, gson.getAdapter(TypeToken.get(field.getGenericType())));
+
+                SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                if (serializedName != null) {
+                    result.putIfAbsent(serializedName.value(), binding);
+                    for (String alternate : serializedName.alternate())
+                        result.putIfAbsent(alternate, binding);
+                } else {
+                    result.putIfAbsent(gson.fieldNamingStrategy().translateName(field), binding);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class FieldBinding {
+        private final Field field;
+        private final TypeAdapter<?> adapter;
+
+        private FieldBinding(Field field, TypeAdapter<?> adapter) {
+            this.field = field;
+            this.adapter = adapter;
+        }
+
+        private void read(JsonReader in, Object target) throws IOException {
+            try {
+                field.set(target, adapter.read(in));
+            } catch (IllegalAccessException e) {
+                throw new IOException(CLASSNAME + ".read: " + e.getLocalizedMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.utmstack.opensearch_connector.clients;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker(CircuitBreaker.Settings.builder()
+                .withWindow(4, 4)
+                .withOpenDuration(Duration.ofSeconds(1), Duration.ofSeconds(4))
+                .build());
+    }
+
+    private static void open(CircuitBreaker breaker, long now) {
+        for (int i = 0; i < 4; i++)
+            breaker.record(true, null, breaker.getGeneration(), now);
+    }
+
+    @Test
+    void opensWhenTooManyRequestsAreRejected() {
+        CircuitBreaker breaker = breaker();
+        long now = System.nanoTime();
+        breaker.record(true, null, breaker.getGeneration(), now);
+        breaker.record(false, null, breaker.getGeneration(), now);
+        breaker.record(true, null, breaker.getGeneration(), now);
+        assertTrue(breaker.allowsRequests(now));
+
+        breaker.record(true, null, breaker.getGeneration(), now);
+        assertEquals(CircuitBreaker.State.Open, breaker.getState());
+        assertFalse(breaker.allowsRequests(now));
+        assertEquals(SECOND, breaker.remainingNanos(now));
+    }
+
+    @Test
+    void admitsOneProbeWhenHalfOpen() {
+        CircuitBreaker breaker = breaker();
+        long now = System.nanoTime();
+        open(breaker, now);
+
+        long later = now + SECOND;
+        assertFalse(breaker.allowsRequests(later));
+        assertEquals(CircuitBreaker.State.HalfOpen, breaker.getState());
+        assertTrue(breaker.tryProbe(later));
+        assertFalse(breaker.tryProbe(later));
+        assertFalse(breaker.allowsRequests(later));
+
+        // A probe without a response is replaced after the open time
+        assertTrue(breaker.tryProbe(later + SECOND));
+    }
+
+    @Test
+    void closesWhenTheProbeSucceeds() {
+        CircuitBreaker breaker = breaker();
+        long now = System.nanoTime();
+        open(breaker, now);
+
+        long later = now + SECOND;
+        assertTrue(breaker.tryProbe(later));
+        breaker.record(false, null, breaker.getGeneration(), later);
+        assertEquals(CircuitBreaker.State.Closed, breaker.getState());
+        assertTrue(breaker.allowsRequests(later));
+    }
+
+    @Test
+    void doublesTheOpenTimeWhenTheProbeIsRejected() {
+        CircuitBreaker breaker = breaker();
+        long now = System.nanoTime();
+        open(breaker, now);
+
+        long later = now + SECOND;
+        assertTrue(breaker.tryProbe(later));
+        breaker.record(true, null, breaker.getGeneration(), later);
+        assertEquals(CircuitBreaker.State.Open, breaker.getState());
+        assertEquals(2 * SECOND, breaker.remainingNanos(later));
+    }
+
+    @Test
+    void ignoresResponsesSentBeforeItOpened() {
+        CircuitBreaker breaker = breaker();
+        long now = System.nanoTime();
+        long sentWhileClosed = breaker.getGeneration();
+        open(breaker, now);
+
+        long later = now + SECOND;
+        assertTrue(breaker.tryProbe(later));
+        breaker.record(false, null, sentWhileClosed, later);
+        assertEquals(CircuitBreaker.State.HalfOpen, breaker.getState());
+        assertFalse(breaker.allowsRequests(later));
+    }
+
+    @Test
+    void opensForTheRetryAfterOfARejection() {
+        CircuitBreaker breaker = breaker();
+        long now = System.nanoTime();
+        breaker.record(true, Duration.ofSeconds(3), breaker.getGeneration(), now);
+
+        assertEquals(CircuitBreaker.State.Open, breaker.getState());
+        assertEquals(3 * SECOND, breaker.remainingNanos(now));
+    }
+}
@@ -0,0 +1,53 @@
+package com.utmstack.opensearch_connector.clients;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConcurrencyLimiterTest {
+    private static final long RTT = Duration.ofMillis(5).toNanos();
+
+    private static ConcurrencyLimiter limiter(int initialLimit, int minLimit) {
+        return new ConcurrencyLimiter(ConcurrencyLimiter.Settings.builder()
+                .withLimits(initialLimit, minLimit, 100)
+                .withBackoffRatio(0.5)
+                .build());
+    }
+
+    @Test
+    void growsByOneAfterAboutAFullLimitOfResponses() {
+        ConcurrencyLimiter limiter = limiter(10, 1);
+        for (int i = 0; i < 11; i++)
+            limiter.record(RTT, false, 10);
+
+        assertEquals(11, limiter.getLimit());
+    }
+
+    @Test
+    void keepsTheLimitOfAnIdleNode() {
+        ConcurrencyLimiter limiter = limiter(10, 1);
+        for (int i = 0; i < 100; i++)
+            limiter.record(RTT, false, 1);
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void shrinksWhenTheNodeRejectsRequests() {
+        ConcurrencyLimiter limiter = limiter(10, 1);
+        limiter.record(1, true, 10);
+
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void neverGoesBelowTheMinimum() {
+        ConcurrencyLimiter limiter = limiter(10, 4);
+        for (int i = 0; i < 5; i++)
+            limiter.record(1, true, 10);
+
+        assertEquals(4, limiter.getLimit());
+    }
+}
@@ -0,0 +1,96 @@
+package com.utmstack.opensearch_connector.clients;
+
+import com.utmstack.opensearch_connector.enums.OperationType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetrierTest {
+
+    private static RetryPolicy policy(double jitter) {
+        return RetryPolicy.builder()
+                .withMaxAttempts(3)
+                .withBackoff(Duration.ofMillis(100), Duration.ofMillis(1000))
+                .withJitter(jitter)
+                .build();
+    }
+
+    @Test
+    void backsOffExponentiallyUpToTheMaximum() {
+        RetryPolicy policy = policy(0);
+
+        assertEquals(100, policy.backoffMillis(1, null));
+        assertEquals(200, policy.backoffMillis(2, null));
+        assertEquals(400, policy.backoffMillis(3, null));
+        assertEquals(1000, policy.backoffMillis(5, null));
+    }
+
+    @Test
+    void keepsTheJitterWithinItsFraction() {
+        RetryPolicy policy = policy(0.5);
+        for (int i = 0; i < 100; i++) {
+            long backoff = policy.backoffMillis(2, null);
+            assertTrue(backoff >= 100 && backoff <= 200, "backoff " + backoff);
+        }
+    }
+
+    @Test
+    void honorsTheRetryAfterOfTheCluster() {
+        RetryPolicy policy = policy(0);
+
+        assertEquals(700, policy.backoffMillis(1, Duration.ofMillis(700)));
+        assertEquals(200, policy.backoffMillis(2, Duration.ofMillis(50)));
+        assertEquals(-1, policy.backoffMillis(1, Duration.ofSeconds(2)));
+    }
+
+    @Test
+    void retriesReadsUntilTheMaximumAttempts() {
+        Retrier retrier = new Retrier(policy(0), RetryPolicy.none());
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(SocketTimeoutException.class, () -> retrier.execute("GET", "/index/_search", () -> {
+            attempts.incrementAndGet();
+            throw new SocketTimeoutException("timeout");
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void retriesWritesOnlyWhenTheyWereNotSent() throws IOException {
+        Retrier retrier = new Retrier(RetryPolicy.none(), RetryPolicy.builder()
+                .withBackoff(Duration.ZERO, Duration.ZERO)
+                .withRetryOnIOError(false)
+                .build());
+        AtomicInteger timeouts = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        assertThrows(SocketTimeoutException.class, () -> retrier.execute("PUT", "/index/_doc/1", () -> {
+            timeouts.incrementAndGet();
+            throw new SocketTimeoutException("timeout");
+        }));
+        String result = retrier.execute("PUT", "/index/_doc/1", () -> {
+            if (refused.incrementAndGet() < 3)
+                throw new ConnectException("refused");
+            return "ok";
+        });
+        assertEquals(1, timeouts.get());
+        assertEquals("ok", result);
+        assertEquals(3, refused.get());
+    }
+
+    @Test
+    void classifiesTheOperations() {
+        assertEquals(OperationType.Read, Retrier.operationType("POST", "/index/_search?size=0"));
+        assertEquals(OperationType.Read, Retrier.operationType("GET", "/index/_doc/1"));
+        assertEquals(OperationType.Write, Retrier.operationType("POST", "/index/_doc"));
+        assertEquals(OperationType.Write, Retrier.operationType("DELETE", "/index"));
+    }
+}
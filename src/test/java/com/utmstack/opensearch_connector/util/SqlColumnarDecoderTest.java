@@ -0,0 +1,65 @@
+package com.utmstack.opensearch_connector.util;
+
+import com.google.gson.Gson;
+import com.utmstack.opensearch_connector.types.SqlColumnarResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlColumnarDecoderTest {
+
+    @Test
+    void decodesBooleanColumns() throws IOException {
+        SqlColumnarDecoder decoder = new SqlColumnarDecoder(new Gson());
+        decoder.decode(new StringReader("{\"schema\":[{\"name\":\"blocked\",\"type\":\"boolean\"}],"
+                + "\"datarows\":[[true],[false],[null],[true]],\"total\":4,\"size\":4,\"status\":200}"));
+        SqlColumnarResult result = decoder.toResult();
+
+        SqlColumnarResult.StringColumn blocked = result.getStringColumn("blocked");
+        assertEquals(4, result.getRowCount());
+        assertEquals("true", blocked.get(0));
+        assertEquals("false", blocked.get(1));
+        assertTrue(blocked.isNull(2));
+        assertEquals("true", blocked.get(3));
+        assertEquals(2, blocked.getDictionarySize());
+    }
+
+    @Test
+    void decodesMixedTypeRows() throws IOException {
+        SqlColumnarDecoder decoder = new SqlColumnarDecoder(new Gson());
+        String cursor = decoder.decode(new StringReader("{\"schema\":["
+                + "{\"name\":\"host.name\",\"type\":\"keyword\"},"
+                + "{\"name\":\"event.severity\",\"type\":\"integer\"},"
+                + "{\"name\":\"score\",\"type\":\"double\"},"
+                + "{\"name\":\"blocked\",\"type\":\"boolean\"},"
+                + "{\"name\":\"geo\",\"type\":\"object\"},"
+                + "{\"name\":\"tags\",\"type\":\"keyword\"}],"
+                + "\"datarows\":["
+                + "[\"fw-edge-01\",3,0.5,true,{\"lat\":1.5},[\"a\",\"b\"]],"
+                + "[null,null,null,false,null,null]],"
+                + "\"cursor\":\"next\",\"total\":2}"));
+        SqlColumnarResult result = decoder.toResult();
+
+        assertEquals("next", cursor);
+        assertEquals(2, result.getRowCount());
+        assertEquals(Integer.valueOf(2), result.getTotal());
+        assertEquals("fw-edge-01", result.getStringColumn("host.name").get(0));
+        assertEquals(3, result.getLongColumn("event.severity").get(0));
+        assertEquals(0.5, result.getDoubleColumn("score").get(0));
+        assertEquals("true", result.getStringColumn("blocked").get(0));
+        assertEquals("false", result.getStringColumn("blocked").get(1));
+        assertEquals("{\"lat\":1.5}", result.getStringColumn("geo").get(0));
+        assertEquals("[\"a\",\"b\"]", result.getStringColumn("tags").get(0));
+        assertTrue(result.getStringColumn("host.name").isNull(1));
+        assertTrue(result.getLongColumn("event.severity").isNull(1));
+        assertTrue(result.getDoubleColumn("score").isNull(1));
+        assertFalse(result.getStringColumn("blocked").isNull(1));
+        assertNull(result.getStringColumn("geo").get(1));
+    }
+}
@@ -0,0 +1,123 @@
+package com.utmstack.opensearch_connector.util;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.utmstack.opensearch_connector.types.SearchSqlResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SqlResponseDecoderTest {
+    private static final String RESPONSE = "{\"schema\":["
+            + "{\"name\":\"host.name\",\"type\":\"keyword\"},"
+            + "{\"name\":\"severity\",\"type\":\"integer\"}],"
+            + "\"datarows\":[[\"fw-edge-01\",3],[\"fw-edge-02\",null]],\"total\":2,\"size\":2,\"status\":200}";
+
+    @Test
+    void decodesPlainClasses() throws IOException {
+        SearchSqlResponse<Event> response = new SqlResponseDecoder<>(new Gson(), Event.class)
+                .decode(new StringReader(RESPONSE));
+
+        assertEquals(2, response.getData().size());
+        assertEquals("fw-edge-01", response.getData().get(0).host);
+        assertEquals(Integer.valueOf(3), response.getData().get(0).severity);
+        assertNull(response.getData().get(1).severity);
+    }
+
+    @Test
+    void decodesFieldsWithJsonAdapter() throws IOException {
+        SearchSqlResponse<AdaptedField> response = new SqlResponseDecoder<>(new Gson(), AdaptedField.class)
+                .decode(new StringReader(RESPONSE));
+
+        assertEquals("FW-EDGE-01", response.getData().get(0).host);
+        assertEquals("FW-EDGE-02", response.getData().get(1).host);
+    }
+
+    @Test
+    void decodesClassesWithJsonAdapter() throws IOException {
+        SearchSqlResponse<AdaptedClass> response = new SqlResponseDecoder<>(new Gson(), AdaptedClass.class)
+                .decode(new StringReader(RESPONSE));
+
+        assertEquals("fw-edge-01/3", response.getData().get(0).value);
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void decodesMapSubtypes() throws IOException {
+        SearchSqlResponse<TreeMap> response = new SqlResponseDecoder<>(new Gson(), TreeMap.class)
+                .decode(new StringReader(RESPONSE));
+
+        Map<?, ?> row = response.getData().get(0);
+        assertEquals(TreeMap.class, row.getClass());
+        assertEquals("fw-edge-01", row.get("host.name"));
+        assertEquals(3.0, row.get("severity"));
+    }
+
+    static class Event {
+        @SerializedName("host.name")
+        String host;
+        Integer severity;
+    }
+
+    static class AdaptedField {
+        @SerializedName("host.name")
+        @JsonAdapter(UpperCaseAdapter.class)
+        String host;
+    }
+
+    @JsonAdapter(AdaptedClassAdapter.class)
+    static class AdaptedClass {
+        final String value;
+
+        AdaptedClass(String value) {
+            this.value = value;
+        }
+    }
+
+    static class UpperCaseAdapter extends TypeAdapter<String> {
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return in.nextString().toUpperCase();
+        }
+    }
+
+    static class AdaptedClassAdapter extends TypeAdapter<AdaptedClass> {
+        @Override
+        public void write(JsonWriter out, AdaptedClass value) throws IOException {
+            out.nullValue();
+        }
+
+        @Override
+        public AdaptedClass read(JsonReader in) throws IOException {
+            String host = null;
+            String severity = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("host.name"))
+                    host = in.nextString();
+                else if (name.equals("severity"))
+                    severity = String.valueOf(in.nextInt());
+                else
+                    in.skipValue();
+            }
+            in.endObject();
+            return new AdaptedClass(host + "/" + severity);
+        }
+    }
+}